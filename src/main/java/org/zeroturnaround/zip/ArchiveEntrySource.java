@@ -0,0 +1,88 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.commons.IOUtils;
+
+/**
+ * ZIP entry stored in an existing archive.
+ * <p>
+ * The archive is opened only while the contents are read, so many instances can exist at once.
+ */
+final class ArchiveEntrySource implements ZipEntrySource {
+
+  private final File file;
+  private final ZipArchiveEntry entry;
+
+  ArchiveEntrySource(File file, ZipArchiveEntry entry) {
+    this.file = file;
+    this.entry = entry;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  ZipArchiveEntry getArchiveEntry() {
+    return entry;
+  }
+
+  public String getPath() {
+    return entry.name;
+  }
+
+  public ZipEntry getEntry() {
+    return entry.toZipEntry();
+  }
+
+  public InputStream getInputStream() throws IOException {
+    if (entry.isDirectory()) {
+      return null;
+    }
+    final ZipArchive archive = ZipArchive.open(file);
+    try {
+      return new FilterInputStream(archive.getInputStream(entry)) {
+        public void close() throws IOException {
+          try {
+            super.close();
+          }
+          finally {
+            archive.close();
+          }
+        }
+      };
+    }
+    catch (IOException e) {
+      IOUtils.closeQuietly(archive);
+      throw e;
+    }
+    catch (RuntimeException e) {
+      IOUtils.closeQuietly(archive);
+      throw e;
+    }
+  }
+
+  public String toString() {
+    return file + "!" + entry.name;
+  }
+
+}
@@ -0,0 +1,179 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * ZIP entry with its contents in a {@link ByteBuffer}.
+ * <p>
+ * Unlike {@link ByteSource} the contents are not copied. The remaining bytes of the given buffer are used as they
+ * are, so the buffer may be a heap, direct or memory mapped buffer but must not be modified while the entry is being
+ * written. The CRC is only calculated when the entry is STORED and the first time it is needed.
+ * </p>
+ */
+public class ByteBufferSource implements ZipEntrySource {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final String path;
+  private final ByteBuffer buffer;
+  private final long time;
+  private final int compressionMethod;
+  private volatile long crc = -1;
+
+  public ByteBufferSource(String path, ByteBuffer buffer) {
+    this(path, buffer, System.currentTimeMillis());
+  }
+
+  public ByteBufferSource(String path, ByteBuffer buffer, long time) {
+    this(path, buffer, time, -1);
+  }
+
+  public ByteBufferSource(String path, ByteBuffer buffer, int compressionMethod) {
+    this(path, buffer, System.currentTimeMillis(), compressionMethod);
+  }
+
+  /**
+   * @param path entry path.
+   * @param buffer contents of the entry between the position and the limit of the buffer (not copied).
+   * @param time last modification time of the entry.
+   * @param compressionMethod {@link ZipEntry#STORED}, {@link ZipEntry#DEFLATED} or <code>-1</code> for the default.
+   */
+  public ByteBufferSource(String path, ByteBuffer buffer, long time, int compressionMethod) {
+    this.path = path;
+    this.buffer = buffer.slice();
+    this.time = time;
+    this.compressionMethod = compressionMethod;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public ZipEntry getEntry() {
+    ZipEntry entry = new ZipEntry(path);
+    entry.setSize(buffer.capacity());
+    if (compressionMethod != -1) {
+      entry.setMethod(compressionMethod);
+    }
+    if (compressionMethod == ZipEntry.STORED) {
+      entry.setCrc(getCrc());
+    }
+    entry.setTime(time);
+    return entry;
+  }
+
+  private long getCrc() {
+    long result = crc;
+    if (result == -1) {
+      CRC32 crc32 = new CRC32();
+      ByteBuffer buf = buffer.duplicate();
+      if (buf.hasArray()) {
+        crc32.update(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+      }
+      else {
+        byte[] chunk = new byte[Math.min(BUFFER_SIZE, buf.remaining())];
+        while (buf.hasRemaining()) {
+          int n = Math.min(chunk.length, buf.remaining());
+          buf.get(chunk, 0, n);
+          crc32.update(chunk, 0, n);
+        }
+      }
+      result = crc32.getValue();
+      crc = result;
+    }
+    return result;
+  }
+
+  /**
+   * @return read-only view of the contents with its own position.
+   */
+  public ByteBuffer getByteBuffer() {
+    return buffer.asReadOnlyBuffer();
+  }
+
+  public InputStream getInputStream() {
+    return new ByteBufferInputStream(getByteBuffer());
+  }
+
+  /**
+   * Writes the contents to the given stream. A heap buffer is written in one call without copying it.
+   *
+   * @param out target stream.
+   * @throws IOException if writing fails.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    // a read-only buffer does not expose its array
+    ByteBuffer buf = buffer.duplicate();
+    if (buf.hasArray()) {
+      out.write(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+      return;
+    }
+    byte[] chunk = new byte[Math.min(BUFFER_SIZE, buf.remaining())];
+    while (buf.hasRemaining()) {
+      int n = Math.min(chunk.length, buf.remaining());
+      buf.get(chunk, 0, n);
+      out.write(chunk, 0, n);
+    }
+  }
+
+  public String toString() {
+    return "ByteBufferSource[" + path + "]";
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buf;
+
+    ByteBufferInputStream(ByteBuffer buf) {
+      this.buf = buf;
+    }
+
+    public int read() {
+      return buf.hasRemaining() ? buf.get() & 0xff : -1;
+    }
+
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buf.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buf.remaining());
+      buf.get(b, off, n);
+      return n;
+    }
+
+    public long skip(long n) {
+      int skipped = (int) Math.max(0, Math.min(n, buf.remaining()));
+      buf.position(buf.position() + skipped);
+      return skipped;
+    }
+
+    public int available() {
+      return buf.remaining();
+    }
+
+  }
+
+}
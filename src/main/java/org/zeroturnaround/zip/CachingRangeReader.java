@@ -0,0 +1,206 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the data of another {@link RangeReader} in fixed size blocks.
+ * <p>
+ * Every read is rounded up to whole blocks and the blocks missing from the cache are fetched from the underlying
+ * reader with a single read for each run of adjacent blocks. The least recently used blocks are evicted when the
+ * cache is full. Reads larger than the whole cache bypass it.
+ * </p>
+ */
+public final class CachingRangeReader implements RangeReader {
+
+  /**
+   * Default size of a block.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+  /**
+   * Default number of blocks in the cache.
+   */
+  public static final int DEFAULT_MAX_BLOCKS = 64;
+
+  private final RangeReader reader;
+  private final int blockSize;
+  private final int maxBlocks;
+  private final Map<Long, byte[]> blocks;
+
+  private long length = -1;
+  private long hitCount;
+  private long missCount;
+  private long fetchCount;
+
+  /**
+   * Creates a cache with the default block size and number of blocks.
+   *
+   * @param reader underlying reader.
+   */
+  public CachingRangeReader(RangeReader reader) {
+    this(reader, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_BLOCKS);
+  }
+
+  /**
+   * @param reader underlying reader.
+   * @param blockSize size of a block in bytes.
+   * @param maxBlocks maximum number of blocks in the cache.
+   */
+  public CachingRangeReader(RangeReader reader, int blockSize, final int maxBlocks) {
+    if (blockSize <= 0 || maxBlocks <= 0) {
+      throw new IllegalArgumentException("Block size and number of blocks must be positive");
+    }
+    this.reader = reader;
+    this.blockSize = blockSize;
+    this.maxBlocks = maxBlocks;
+    this.blocks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+        return size() > maxBlocks;
+      }
+    };
+  }
+
+  public synchronized long length() throws IOException {
+    if (length == -1) {
+      length = reader.length();
+    }
+    return length;
+  }
+
+  public int read(long position, byte[] b, int off, int len) throws IOException {
+    long total = length();
+    if (position >= total) {
+      return -1;
+    }
+    len = (int) Math.min(len, total - position);
+    if (len == 0) {
+      return 0;
+    }
+    long first = position / blockSize;
+    long last = (position + len - 1) / blockSize;
+    if (last - first >= maxBlocks) {
+      return reader.read(position, b, off, len);
+    }
+
+    byte[][] data = getBlocks(first, (int) (last - first + 1));
+    int done = 0;
+    for (int i = 0; i < data.length; i++) {
+      int start = i == 0 ? (int) (position - first * blockSize) : 0;
+      int n = Math.min(data[i].length - start, len - done);
+      System.arraycopy(data[i], start, b, off + done, n);
+      done += n;
+    }
+    return done;
+  }
+
+  /**
+   * @return the given blocks fetching the missing ones.
+   */
+  private byte[][] getBlocks(long first, int count) throws IOException {
+    byte[][] result = new byte[count][];
+    synchronized (this) {
+      for (int i = 0; i < count; i++) {
+        result[i] = blocks.get(first + i);
+        if (result[i] == null) {
+          missCount++;
+        }
+        else {
+          hitCount++;
+        }
+      }
+    }
+    // coalesce adjacent missing blocks into a single read
+    int i = 0;
+    while (i < count) {
+      if (result[i] != null) {
+        i++;
+        continue;
+      }
+      int j = i;
+      while (j + 1 < count && result[j + 1] == null) {
+        j++;
+      }
+      fetch(first + i, j - i + 1, result, i);
+      i = j + 1;
+    }
+    return result;
+  }
+
+  private void fetch(long firstBlock, int count, byte[][] result, int index) throws IOException {
+    long start = firstBlock * blockSize;
+    long end = Math.min(length(), (firstBlock + count) * blockSize);
+    byte[] buf = new byte[(int) (end - start)];
+    int done = 0;
+    while (done < buf.length) {
+      int n = reader.read(start + done, buf, done, buf.length - done);
+      if (n < 0) {
+        throw new EOFException("Unexpected end of " + reader);
+      }
+      done += n;
+    }
+    synchronized (this) {
+      fetchCount++;
+      for (int i = 0; i < count; i++) {
+        int from = i * blockSize;
+        byte[] block = new byte[Math.min(blockSize, buf.length - from)];
+        System.arraycopy(buf, from, block, 0, block.length);
+        blocks.put(firstBlock + i, block);
+        result[index + i] = block;
+      }
+    }
+  }
+
+  /**
+   * @return number of blocks found in the cache.
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return number of blocks not found in the cache.
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return number of reads made from the underlying reader for filling the cache.
+   */
+  public synchronized long getFetchCount() {
+    return fetchCount;
+  }
+
+  /**
+   * Clears the cache and closes the underlying reader.
+   */
+  public void close() throws IOException {
+    synchronized (this) {
+      blocks.clear();
+    }
+    reader.close();
+  }
+
+  public String toString() {
+    return reader.toString();
+  }
+
+}
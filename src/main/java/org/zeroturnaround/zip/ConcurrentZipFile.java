@@ -0,0 +1,309 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.commons.IOUtils;
+
+/**
+ * ZIP file handle to be shared by many threads.
+ * <p>
+ * {@link java.util.zip.ZipFile} serializes the reads of all threads using the same instance. Here the central
+ * directory is read once into an immutable index and each reader reads the entry data with its own positional reads
+ * so concurrent readers do not block each other. Inflaters are taken from a pool instead of being created for each
+ * entry.
+ * </p>
+ * <p>
+ * Interrupting a thread while it is reading fails only the read of that thread. The file channel which is closed
+ * by the interrupt is opened again for the other readers.
+ * </p>
+ *
+ * <pre>
+ * ConcurrentZipFile zf = new ConcurrentZipFile(zip);
+ * try {
+ *   // from any number of threads
+ *   byte[] bytes = zf.unpackEntry("foo/bar.txt");
+ * }
+ * finally {
+ *   zf.close();
+ * }
+ * </pre>
+ */
+public final class ConcurrentZipFile implements Closeable {
+
+  private final File file;
+  private final ZipArchive archive;
+  private final InflaterPool inflaters;
+
+  /**
+   * Opens the given ZIP file. Entry names which are not flagged as UTF-8 are decoded using UTF-8.
+   *
+   * @param file ZIP file.
+   */
+  public ConcurrentZipFile(File file) {
+    this(file, null);
+  }
+
+  /**
+   * Opens the given ZIP file.
+   *
+   * @param file ZIP file.
+   * @param charset charset for entry names which are not flagged as UTF-8, <code>null</code> means UTF-8.
+   */
+  public ConcurrentZipFile(File file, Charset charset) {
+    this.file = file;
+    try {
+      this.archive = ZipArchive.open(new ReopeningFileReader(file), charset, true);
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    this.inflaters = new InflaterPool(Runtime.getRuntime().availableProcessors() * 2);
+  }
+
+  /**
+   * @return the ZIP file.
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * @return number of entries in the ZIP file.
+   */
+  public int size() {
+    return archive.size();
+  }
+
+  /**
+   * @return names of all entries in their original order.
+   */
+  public List<String> getEntryNames() {
+    List<String> result = new ArrayList<String>(archive.size());
+    for (ZipArchiveEntry e : archive.entries()) {
+      result.add(e.name);
+    }
+    return result;
+  }
+
+  /**
+   * @param name entry name.
+   * @return <code>true</code> if the ZIP file contains the given entry.
+   */
+  public boolean containsEntry(String name) {
+    return archive.getEntry(name) != null;
+  }
+
+  /**
+   * @param name entry name.
+   * @return meta-data of the given entry or <code>null</code> if it was not found.
+   */
+  public ZipEntry getEntry(String name) {
+    ZipArchiveEntry e = archive.getEntry(name);
+    return e == null ? null : e.toZipEntry();
+  }
+
+  /**
+   * Opens a stream of the decompressed contents of the given entry.
+   *
+   * @param name entry name.
+   * @return stream to be closed by the caller or <code>null</code> if the entry was not found.
+   */
+  public InputStream getInputStream(String name) {
+    ZipArchiveEntry e = archive.getEntry(name);
+    if (e == null) {
+      return null;
+    }
+    try {
+      return archive.getInputStream(e, inflaters);
+    }
+    catch (IOException ex) {
+      throw ZipExceptionUtil.rethrow(ex);
+    }
+  }
+
+  /**
+   * Unpacks a single entry.
+   *
+   * @param name entry name.
+   * @return contents of the entry or <code>null</code> if it was not found.
+   */
+  public byte[] unpackEntry(String name) {
+    ZipArchiveEntry e = archive.getEntry(name);
+    if (e == null) {
+      return null; // entry not found
+    }
+    try {
+      InputStream in = archive.getInputStream(e, inflaters);
+      try {
+        if (e.size < 0 || e.size > Integer.MAX_VALUE) {
+          return IOUtils.toByteArray(in);
+        }
+        // the size is known so read directly into the result
+        byte[] result = new byte[(int) e.size];
+        int off = 0;
+        while (off < result.length) {
+          int n = in.read(result, off, result.length - off);
+          if (n == -1) {
+            throw new EOFException("Unexpected end of entry " + name + " in " + file);
+          }
+          off += n;
+        }
+        return result;
+      }
+      finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+    catch (IOException ex) {
+      throw ZipExceptionUtil.rethrow(ex);
+    }
+  }
+
+  /**
+   * Unpacks a single entry to a file.
+   *
+   * @param name entry name.
+   * @param target target file to be created or overwritten.
+   * @return <code>true</code> if the entry was found and unpacked,
+   *         <code>false</code> if the entry was not found.
+   */
+  public boolean unpackEntry(String name, File target) {
+    ZipArchiveEntry e = archive.getEntry(name);
+    if (e == null) {
+      return false; // entry not found
+    }
+    try {
+      if (e.isDirectory()) {
+        if (target.isDirectory()) {
+          return true;
+        }
+        if (target.exists()) {
+          FileUtils.forceDelete(target);
+        }
+        return target.mkdirs();
+      }
+      InputStream in = new BufferedInputStream(archive.getInputStream(e, inflaters));
+      try {
+        FileUtils.copy(in, target);
+      }
+      finally {
+        IOUtils.closeQuietly(in);
+      }
+      return true;
+    }
+    catch (IOException ex) {
+      throw ZipExceptionUtil.rethrow(ex);
+    }
+  }
+
+  /**
+   * Closes the ZIP file and releases the pooled inflaters. Streams which are still open fail on their next read.
+   */
+  public void close() throws IOException {
+    try {
+      archive.close();
+    }
+    finally {
+      inflaters.close();
+    }
+  }
+
+  public String toString() {
+    return "ConcurrentZipFile[" + file + "]";
+  }
+
+  /**
+   * Reads a local file using positional reads and opens it again if the channel was closed by interrupting another
+   * reader.
+   */
+  private static final class ReopeningFileReader implements RangeReader {
+
+    private final File file;
+    private volatile FileChannel channel;
+    private volatile boolean closed;
+
+    ReopeningFileReader(File file) throws IOException {
+      this.file = file;
+      this.channel = new RandomAccessFile(file, "r").getChannel();
+    }
+
+    public long length() throws IOException {
+      while (true) {
+        FileChannel current = channel;
+        try {
+          return current.size();
+        }
+        catch (ClosedChannelException e) {
+          reopen(current, e);
+        }
+      }
+    }
+
+    public int read(long position, byte[] b, int off, int len) throws IOException {
+      while (true) {
+        FileChannel current = channel;
+        try {
+          return current.read(ByteBuffer.wrap(b, off, len), position);
+        }
+        catch (ClosedChannelException e) {
+          reopen(current, e);
+        }
+      }
+    }
+
+    /**
+     * Replaces the given closed channel unless the reader was closed or the current thread was interrupted.
+     *
+     * @param failed channel which was found closed.
+     * @param e exception thrown by the channel, including ClosedByInterruptException of the interrupted reader.
+     */
+    private synchronized void reopen(FileChannel failed, ClosedChannelException e) throws IOException {
+      if (closed || Thread.currentThread().isInterrupted()) {
+        throw e;
+      }
+      if (channel == failed) {
+        channel = new RandomAccessFile(file, "r").getChannel();
+      }
+    }
+
+    public synchronized void close() throws IOException {
+      closed = true;
+      channel.close();
+    }
+
+    public String toString() {
+      return file.toString();
+    }
+
+  }
+
+}
@@ -0,0 +1,70 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a local file using positional reads.
+ */
+public final class FileRangeReader implements RangeReader {
+
+  private final String description;
+  private final RandomAccessFile raf;
+  private final FileChannel channel;
+
+  /**
+   * @param file file to read.
+   * @throws IOException if the file could not be opened.
+   */
+  public FileRangeReader(File file) throws IOException {
+    this.description = file.toString();
+    this.raf = new RandomAccessFile(file, "r");
+    this.channel = raf.getChannel();
+  }
+
+  /**
+   * Reads the given channel which is not closed by this reader.
+   */
+  FileRangeReader(FileChannel channel) {
+    this.description = channel.toString();
+    this.raf = null;
+    this.channel = channel;
+  }
+
+  public long length() throws IOException {
+    return channel.size();
+  }
+
+  public int read(long position, byte[] b, int off, int len) throws IOException {
+    return channel.read(ByteBuffer.wrap(b, off, len), position);
+  }
+
+  public void close() throws IOException {
+    if (raf != null) {
+      raf.close();
+    }
+  }
+
+  public String toString() {
+    return description;
+  }
+
+}
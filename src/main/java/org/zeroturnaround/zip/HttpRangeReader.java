@@ -0,0 +1,120 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.zeroturnaround.zip.commons.IOUtils;
+
+/**
+ * Reads a remote file using HTTP range requests.
+ * <p>
+ * Each read is a separate request so it should be wrapped into a {@link CachingRangeReader} for reading archives.
+ * </p>
+ *
+ * <pre>
+ * RangeReader reader = new CachingRangeReader(new HttpRangeReader(url));
+ * byte[] bytes = ZipUtil.unpackEntry(reader, "META-INF/MANIFEST.MF");
+ * </pre>
+ */
+public final class HttpRangeReader implements RangeReader {
+
+  private final URL url;
+  private volatile long length = -1;
+
+  /**
+   * @param url HTTP URL of the file.
+   */
+  public HttpRangeReader(URL url) {
+    this.url = url;
+  }
+
+  public long length() throws IOException {
+    if (length == -1) {
+      HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+      try {
+        conn.setRequestMethod("HEAD");
+        int code = conn.getResponseCode();
+        if (code != HttpURLConnection.HTTP_OK) {
+          throw new IOException("Request to " + url + " failed with status " + code);
+        }
+        String value = conn.getHeaderField("Content-Length");
+        if (value == null) {
+          throw new IOException("Length of " + url + " is unknown");
+        }
+        length = Long.parseLong(value.trim());
+      }
+      finally {
+        conn.disconnect();
+      }
+    }
+    return length;
+  }
+
+  public int read(long position, byte[] b, int off, int len) throws IOException {
+    long total = length();
+    if (position >= total) {
+      return -1;
+    }
+    len = (int) Math.min(len, total - position);
+    if (len == 0) {
+      return 0;
+    }
+    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    conn.setRequestProperty("Range", "bytes=" + position + "-" + (position + len - 1));
+    int code = conn.getResponseCode();
+    if (code != HttpURLConnection.HTTP_PARTIAL) {
+      conn.disconnect();
+      throw new IOException("Range request to " + url + " failed with status " + code);
+    }
+    String range = conn.getHeaderField("Content-Range");
+    if (range == null || !range.startsWith("bytes " + position + "-")) {
+      conn.disconnect();
+      throw new IOException("Unexpected range '" + range + "' returned by " + url);
+    }
+    InputStream in = conn.getInputStream();
+    try {
+      int done = 0;
+      while (done < len) {
+        int n = in.read(b, off + done, len - done);
+        if (n == -1) {
+          break;
+        }
+        done += n;
+      }
+      if (done == 0) {
+        throw new EOFException("Unexpected end of " + url);
+      }
+      return done;
+    }
+    finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  public void close() {
+    // nothing to release, each request uses its own connection
+  }
+
+  public String toString() {
+    return url.toString();
+  }
+
+}
@@ -0,0 +1,498 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeroturnaround.zip.commons.IOUtils;
+import org.zeroturnaround.zip.transform.ZipEntryTransformer;
+import org.zeroturnaround.zip.transform.ZipEntryTransformerEntry;
+
+/**
+ * ZIP archive kept entirely in memory.
+ * <p>
+ * Supports the same adding, removing, replacing, transforming and iterating as {@link ZipUtil} without any temporary
+ * files. The archive is stored in a chain of fixed-size direct buffers outside the heap. Each change writes a new
+ * chain copying the unchanged entries without decompressing them. The result can be handed over as a
+ * {@link ByteBuffer} or written to a channel without copying.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ *
+ * <pre>
+ * InMemoryZip zip = new InMemoryZip(bytes);
+ * zip.replaceEntry(new ByteSource("config.properties", config));
+ * zip.removeEntry("META-INF/INDEX.LIST");
+ * zip.writeTo(socketChannel);
+ * </pre>
+ */
+public final class InMemoryZip {
+
+  /** Default size of each buffer in the chain. */
+  public static final int DEFAULT_SLAB_SIZE = 64 * 1024;
+
+  // Use / instead of . to work around an issue with Maven Shade Plugin
+  private static final Logger log = LoggerFactory.getLogger("org/zeroturnaround/zip/InMemoryZip".replace('/', '.')); // NOSONAR
+
+  private final int slabSize;
+  private final boolean direct;
+
+  private SlabBuffer data;
+  private ZipArchive archive;
+
+  /**
+   * Creates an empty archive.
+   */
+  public InMemoryZip() {
+    this(DEFAULT_SLAB_SIZE, true);
+  }
+
+  /**
+   * Creates an empty archive.
+   *
+   * @param slabSize size of each buffer in the chain.
+   * @param direct <code>true</code> for direct buffers outside the heap, <code>false</code> for heap buffers.
+   */
+  public InMemoryZip(int slabSize, boolean direct) {
+    this.slabSize = slabSize;
+    this.direct = direct;
+    rewrite(null, null, null, null, false);
+  }
+
+  /**
+   * Reads an archive from the given buffer without copying it. The buffer must not be modified afterwards.
+   *
+   * @param zip contents of a ZIP file between the position and the limit of the buffer.
+   */
+  public InMemoryZip(ByteBuffer zip) {
+    this.slabSize = DEFAULT_SLAB_SIZE;
+    this.direct = true;
+    open(SlabBuffer.wrap(zip));
+  }
+
+  /**
+   * Reads an archive from the given bytes without copying them.
+   *
+   * @param zip contents of a ZIP file.
+   */
+  public InMemoryZip(byte[] zip) {
+    this(ByteBuffer.wrap(zip));
+  }
+
+  /**
+   * Reads an archive from the given stream. The stream is not closed.
+   *
+   * @param is stream of a ZIP file.
+   */
+  public InMemoryZip(InputStream is) {
+    this.slabSize = DEFAULT_SLAB_SIZE;
+    this.direct = true;
+    SlabBuffer buffer = new SlabBuffer(slabSize, direct);
+    try {
+      IOUtils.copy(is, buffer);
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    open(buffer);
+  }
+
+  /**
+   * Reads an archive from the given file.
+   *
+   * @param zip ZIP file (only read).
+   */
+  public InMemoryZip(File zip) {
+    this.slabSize = DEFAULT_SLAB_SIZE;
+    this.direct = true;
+    SlabBuffer buffer = new SlabBuffer(slabSize, direct);
+    InputStream in = null;
+    try {
+      in = new FileInputStream(zip);
+      IOUtils.copy(in, buffer);
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    finally {
+      IOUtils.closeQuietly(in);
+    }
+    open(buffer);
+  }
+
+  private void open(SlabBuffer buffer) {
+    try {
+      archive = ZipArchive.open(buffer, null);
+      data = buffer;
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+  }
+
+  /* Reading */
+
+  /**
+   * @return number of entries.
+   */
+  public int size() {
+    return archive.size();
+  }
+
+  /**
+   * @return size of the archive in bytes.
+   */
+  public long length() {
+    return data.length();
+  }
+
+  /**
+   * @return names of all entries in their original order.
+   */
+  public List<String> getEntryNames() {
+    List<String> result = new ArrayList<String>(archive.size());
+    for (ZipArchiveEntry e : archive.entries()) {
+      result.add(e.name);
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  /**
+   * @param name entry name.
+   * @return <code>true</code> if the archive contains the given entry.
+   */
+  public boolean containsEntry(String name) {
+    return archive.getEntry(name) != null;
+  }
+
+  /**
+   * @param name entry name.
+   * @return contents of the entry or <code>null</code> if it was not found.
+   */
+  public byte[] unpackEntry(String name) {
+    ZipArchiveEntry e = archive.getEntry(name);
+    if (e == null) {
+      return null; // entry not found
+    }
+    try {
+      InputStream in = archive.getInputStream(e);
+      try {
+        return IOUtils.toByteArray(in);
+      }
+      finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+    catch (IOException ex) {
+      throw ZipExceptionUtil.rethrow(ex);
+    }
+  }
+
+  /**
+   * Invokes the action for each entry. Stops when the action throws {@link ZipBreakException}.
+   *
+   * @param action action to be called for each entry.
+   */
+  public void iterate(ZipEntryCallback action) {
+    for (ZipArchiveEntry e : archive.entries()) {
+      InputStream in = null;
+      try {
+        in = new BufferedInputStream(archive.getInputStream(e));
+        action.process(in, e.toZipEntry());
+      }
+      catch (IOException ex) {
+        throw new ZipException("Failed to process zip entry '" + e.name + "' with action " + action, ex);
+      }
+      catch (ZipBreakException ex) {
+        break;
+      }
+      finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+  }
+
+  /* Changing */
+
+  /**
+   * Appends a new entry.
+   *
+   * @param entry new entry.
+   */
+  public void addEntry(ZipEntrySource entry) {
+    addEntries(new ZipEntrySource[] { entry });
+  }
+
+  /**
+   * Appends new entries.
+   *
+   * @param entries new entries.
+   */
+  public void addEntries(ZipEntrySource[] entries) {
+    if (log.isDebugEnabled()) {
+      log.debug("Adding " + Arrays.asList(entries) + " to " + this + ".");
+    }
+    rewrite(null, null, null, entries, false);
+  }
+
+  /**
+   * Removes an entry. Removing a directory removes all entries under it.
+   *
+   * @param path path of the entry to remove.
+   */
+  public void removeEntry(String path) {
+    removeEntries(new String[] { path });
+  }
+
+  /**
+   * Removes entries. Removing a directory removes all entries under it.
+   *
+   * @param paths paths of the entries to remove.
+   */
+  public void removeEntries(String[] paths) {
+    if (log.isDebugEnabled()) {
+      log.debug("Removing paths " + Arrays.asList(paths) + " from " + this + ".");
+    }
+    rewrite(new HashSet<String>(Arrays.asList(paths)), null, null, null, false);
+  }
+
+  /**
+   * Replaces an existing entry keeping its position.
+   *
+   * @param entry new entry.
+   * @return <code>true</code> if the entry was replaced.
+   */
+  public boolean replaceEntry(ZipEntrySource entry) {
+    return replaceEntries(new ZipEntrySource[] { entry });
+  }
+
+  /**
+   * Replaces existing entries keeping their positions. Entries which do not exist are ignored.
+   *
+   * @param entries new entries.
+   * @return <code>true</code> if at least one entry was replaced.
+   */
+  public boolean replaceEntries(ZipEntrySource[] entries) {
+    if (log.isDebugEnabled()) {
+      log.debug("Replacing entries " + Arrays.asList(entries) + " in " + this + ".");
+    }
+    Map<String, ZipEntrySource> entryByPath = ZipUtil.entriesByPath(entries);
+    int entryCount = entryByPath.size();
+    rewrite(null, entryByPath, null, null, false);
+    return entryByPath.size() < entryCount;
+  }
+
+  /**
+   * Replaces existing entries keeping their positions and appends the rest.
+   *
+   * @param entries new entries.
+   */
+  public void addOrReplaceEntries(ZipEntrySource[] entries) {
+    if (log.isDebugEnabled()) {
+      log.debug("Adding or replacing entries " + Arrays.asList(entries) + " in " + this + ".");
+    }
+    Map<String, ZipEntrySource> entryByPath = ZipUtil.entriesByPath(entries);
+    rewrite(null, entryByPath, null, null, true);
+  }
+
+  /**
+   * Transforms an existing entry.
+   *
+   * @param path entry path.
+   * @param transformer transformer for the entry.
+   * @return <code>true</code> if the entry was found.
+   */
+  public boolean transformEntry(String path, ZipEntryTransformer transformer) {
+    return transformEntries(new ZipEntryTransformerEntry[] { new ZipEntryTransformerEntry(path, transformer) });
+  }
+
+  /**
+   * Transforms existing entries.
+   *
+   * @param entries transformers by entry path.
+   * @return <code>true</code> if at least one entry was found.
+   */
+  public boolean transformEntries(ZipEntryTransformerEntry[] entries) {
+    if (log.isDebugEnabled()) {
+      log.debug("Transforming entries " + Arrays.asList(entries) + " in " + this + ".");
+    }
+    TransformerIndex transformers = new TransformerIndex(Arrays.asList(entries));
+    rewrite(null, null, transformers, null, false);
+    return transformers.found();
+  }
+
+  /**
+   * Writes a new chain of buffers from the current one. Entries which are neither removed, replaced nor transformed
+   * are copied without decompressing them. Replaced entries are removed from the given map.
+   *
+   * @param removed paths of the entries to remove or <code>null</code>.
+   * @param replaced new entries by the paths of the entries they replace or <code>null</code>.
+   * @param transformed transformers of the entries or <code>null</code>.
+   * @param added new entries to append or <code>null</code>.
+   * @param appendNotReplaced <code>true</code> for appending the new entries which did not replace anything.
+   */
+  private void rewrite(Set<String> removed, Map<String, ZipEntrySource> replaced,
+      TransformerIndex transformed, ZipEntrySource[] added, boolean appendNotReplaced) {
+    SlabBuffer buffer = new SlabBuffer(slabSize, direct);
+    RawZipOutputStream out = new RawZipOutputStream(buffer);
+    out.setSource(archive);
+    try {
+      if (archive != null) {
+        Set<String> removedDirs = new HashSet<String>();
+        if (removed != null) {
+          for (String path : removed) {
+            ZipArchiveEntry e = archive.getEntry(path);
+            if (e != null && e.isDirectory()) {
+              removedDirs.add(e.name);
+            }
+          }
+        }
+
+        NameSet names = new NameSet();
+        for (ZipArchiveEntry e : archive.entries()) {
+          if (!names.add(e.name)) {
+            log.debug("Duplicate entry: {}", e.name);
+            continue;
+          }
+          if (removed != null && (removed.contains(e.name) || startsWithAny(e.name, removedDirs))) {
+            continue;
+          }
+          ZipEntrySource source = replaced == null ? null : replaced.remove(e.name);
+          ZipEntryTransformer transformer = transformed == null ? null : transformed.get(e.name);
+          if (source != null) {
+            ZipUtil.addEntry(source, out);
+          }
+          else if (transformer != null) {
+            InputStream in = new BufferedInputStream(archive.getInputStream(e));
+            try {
+              transformer.transform(in, e.toZipEntry(), out);
+            }
+            finally {
+              IOUtils.closeQuietly(in);
+            }
+          }
+          else {
+            out.putRawEntry(archive, e);
+          }
+        }
+        out.setComment(archive.getComment());
+      }
+      if (added != null) {
+        for (int i = 0; i < added.length; i++) {
+          ZipUtil.addEntry(added[i], out);
+        }
+      }
+      if (appendNotReplaced) {
+        for (ZipEntrySource source : replaced.values()) {
+          ZipUtil.addEntry(source, out);
+        }
+      }
+      out.finish();
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    open(buffer);
+  }
+
+  private static boolean startsWithAny(String name, Set<String> prefixes) {
+    for (String prefix : prefixes) {
+      if (name.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /* Output */
+
+  /**
+   * Returns the archive as a single read-only buffer. If the archive spans more than one buffer of the chain they
+   * are joined once. The archive can still be read and changed afterwards.
+   *
+   * @return contents of the ZIP file.
+   */
+  public ByteBuffer toByteBuffer() {
+    return data.toByteBuffer();
+  }
+
+  /**
+   * @return contents of the ZIP file as read-only buffers to be written e.g. with a gathering channel.
+   */
+  public ByteBuffer[] toByteBuffers() {
+    return data.toByteBuffers();
+  }
+
+  /**
+   * @return contents of the ZIP file as a new array.
+   */
+  public byte[] toByteArray() {
+    ByteBuffer buf = data.toByteBuffer();
+    byte[] result = new byte[buf.remaining()];
+    buf.get(result);
+    return result;
+  }
+
+  /**
+   * Writes the ZIP file to the given stream. The stream is not closed.
+   *
+   * @param out target stream.
+   */
+  public void writeTo(OutputStream out) {
+    try {
+      data.writeTo(out);
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+  }
+
+  /**
+   * Writes the ZIP file to the given channel without copying it. The channel is not closed.
+   *
+   * @param channel target channel.
+   */
+  public void writeTo(WritableByteChannel channel) {
+    try {
+      data.writeTo(channel);
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+  }
+
+  public String toString() {
+    return "InMemoryZip[" + archive.size() + " entries, " + data.length() + " bytes]";
+  }
+
+}
@@ -0,0 +1,87 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
+
+/**
+ * Bounded pool of raw {@link Inflater}s shared by concurrent readers.
+ * <p>
+ * An inflater holds native memory so creating one for each entry is relatively expensive. Released inflaters are
+ * reset and kept for the next reader up to the given limit, the rest are ended.
+ */
+final class InflaterPool {
+
+  private final Queue<Inflater> idle = new ConcurrentLinkedQueue<Inflater>();
+  private final AtomicInteger idleCount = new AtomicInteger();
+  private final int maxIdle;
+  private volatile boolean closed;
+
+  /**
+   * @param maxIdle maximum number of inflaters kept in the pool.
+   */
+  InflaterPool(int maxIdle) {
+    this.maxIdle = maxIdle;
+  }
+
+  /**
+   * @return an inflater for raw DEFLATE data to be released by the caller.
+   */
+  Inflater acquire() {
+    Inflater inf = idle.poll();
+    if (inf == null) {
+      return new Inflater(true);
+    }
+    idleCount.decrementAndGet();
+    return inf;
+  }
+
+  /**
+   * Returns the inflater to the pool or ends it if the pool is full.
+   */
+  void release(Inflater inf) {
+    if (closed) {
+      inf.end();
+    }
+    else if (idleCount.incrementAndGet() <= maxIdle) {
+      inf.reset();
+      idle.offer(inf);
+      if (closed) {
+        close(); // closed meanwhile
+      }
+    }
+    else {
+      idleCount.decrementAndGet();
+      inf.end();
+    }
+  }
+
+  /**
+   * Ends all inflaters in the pool and those released later.
+   */
+  void close() {
+    closed = true;
+    Inflater inf;
+    while ((inf = idle.poll()) != null) {
+      idleCount.decrementAndGet();
+      inf.end();
+    }
+  }
+
+}
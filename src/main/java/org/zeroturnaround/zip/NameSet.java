@@ -0,0 +1,209 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+/**
+ * Compact set of entry names for detecting duplicates.
+ * <p>
+ * Unlike a <code>HashSet&lt;String&gt;</code> it keeps no objects per name. A 64-bit hash of each name is kept in an
+ * open-addressing table and the name itself is packed into a shared byte array, one byte per ASCII character. The
+ * packed names are only read when two names have the same hash, so a collision never makes different names equal.
+ * </p>
+ * <p>
+ * The set is not thread-safe.
+ * </p>
+ */
+final class NameSet {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  /** Hashes of the names, <code>0</code> for an empty slot. */
+  private long[] hashes;
+  /** Offsets of the packed names in {@link #data}, by slot. */
+  private int[] offsets;
+  /** Packed names, each preceded by its length in bytes. */
+  private byte[] data;
+  private int dataLength;
+  private int size;
+
+  NameSet() {
+    hashes = new long[INITIAL_CAPACITY];
+    offsets = new int[INITIAL_CAPACITY];
+    data = new byte[INITIAL_CAPACITY * 16];
+  }
+
+  /**
+   * @return <code>true</code> if the name was added, <code>false</code> if it was already in the set.
+   */
+  boolean add(String name) {
+    long hash = hash(name);
+    int mask = hashes.length - 1;
+    int slot = (int) hash & mask;
+    while (hashes[slot] != 0) {
+      if (hashes[slot] == hash && matches(offsets[slot], name)) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    hashes[slot] = hash;
+    offsets[slot] = pack(name);
+    if (++size > hashes.length * 3 / 4) {
+      grow();
+    }
+    return true;
+  }
+
+  /**
+   * @return <code>true</code> if the name is in the set.
+   */
+  boolean contains(String name) {
+    long hash = hash(name);
+    int mask = hashes.length - 1;
+    int slot = (int) hash & mask;
+    while (hashes[slot] != 0) {
+      if (hashes[slot] == hash && matches(offsets[slot], name)) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Doubles the table. Only the stored hashes are used, the names are not read again.
+   */
+  private void grow() {
+    long[] oldHashes = hashes;
+    int[] oldOffsets = offsets;
+    hashes = new long[oldHashes.length * 2];
+    offsets = new int[oldHashes.length * 2];
+    int mask = hashes.length - 1;
+    for (int i = 0; i < oldHashes.length; i++) {
+      long hash = oldHashes[i];
+      if (hash != 0) {
+        int slot = (int) hash & mask;
+        while (hashes[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        offsets[slot] = oldOffsets[i];
+      }
+    }
+  }
+
+  /**
+   * Appends the packed name to {@link #data}.
+   * ASCII characters take one byte, others three bytes with the high bit set.
+   *
+   * @return offset of the packed name.
+   */
+  private int pack(String name) {
+    int length = packedLength(name);
+    ensureData(4 + length);
+    int offset = dataLength;
+    data[dataLength++] = (byte) (length >>> 24);
+    data[dataLength++] = (byte) (length >>> 16);
+    data[dataLength++] = (byte) (length >>> 8);
+    data[dataLength++] = (byte) length;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c < 0x80) {
+        data[dataLength++] = (byte) c;
+      }
+      else {
+        data[dataLength++] = (byte) (0x80 | (c >>> 14));
+        data[dataLength++] = (byte) (0x80 | ((c >>> 7) & 0x7f));
+        data[dataLength++] = (byte) (0x80 | (c & 0x7f));
+      }
+    }
+    return offset;
+  }
+
+  /**
+   * @return <code>true</code> if the name packed at the given offset equals the given name.
+   */
+  private boolean matches(int offset, String name) {
+    int length = (data[offset] & 0xff) << 24 | (data[offset + 1] & 0xff) << 16 | (data[offset + 2] & 0xff) << 8
+        | (data[offset + 3] & 0xff);
+    if (length != packedLength(name)) {
+      return false;
+    }
+    int pos = offset + 4;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c < 0x80) {
+        if (data[pos++] != (byte) c) {
+          return false;
+        }
+      }
+      else if (data[pos++] != (byte) (0x80 | (c >>> 14))
+          || data[pos++] != (byte) (0x80 | ((c >>> 7) & 0x7f))
+          || data[pos++] != (byte) (0x80 | (c & 0x7f))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int packedLength(String name) {
+    int length = name.length();
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) >= 0x80) {
+        length += 2;
+      }
+    }
+    return length;
+  }
+
+  private void ensureData(int extra) {
+    if (dataLength + extra > data.length) {
+      long capacity = Math.max((long) data.length * 2, (long) dataLength + extra);
+      if (capacity > Integer.MAX_VALUE - 8) {
+        capacity = Integer.MAX_VALUE - 8;
+        if (dataLength + extra > capacity) {
+          throw new IllegalStateException("Too many names: " + size);
+        }
+      }
+      byte[] copy = new byte[(int) capacity];
+      System.arraycopy(data, 0, copy, 0, dataLength);
+      data = copy;
+    }
+  }
+
+  /**
+   * @return 64-bit FNV-1a hash of the characters mixed for using its lower bits as a slot, never <code>0</code>.
+   */
+  static long hash(String name) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < name.length(); i++) {
+      h ^= name.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return h == 0 ? 1 : h;
+  }
+
+  public String toString() {
+    return "NameSet[size=" + size + "]";
+  }
+
+}
@@ -0,0 +1,379 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.commons.IOUtils;
+
+/**
+ * Bounded cache of inflated archives nested inside other archives.
+ * <p>
+ * DEFLATED inner archives are inflated when an entry inside them is read with e.g.
+ * {@link ZipUtil#unpackEntry(File, String)}. They are identified by the outer file, its modification time and length
+ * and the names and CRCs of the archives on the path. Inflated archives up to half of the memory limit are kept in
+ * memory, larger ones in temporary files. The least recently used archives are evicted when the total size in memory
+ * or on disk exceeds its limit. A limit of zero disables caching in memory or on disk respectively.
+ * </p>
+ * <p>
+ * The cache is safe for concurrent use.
+ * </p>
+ *
+ * <pre>
+ * NestedArchiveCache.setDefault(new NestedArchiveCache(0, 0)); // inflate on every use
+ * </pre>
+ */
+public final class NestedArchiveCache {
+
+  /**
+   * Default maximum total size of the inflated archives kept in memory.
+   */
+  public static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+
+  /**
+   * Default maximum total size of the inflated archives kept in temporary files.
+   */
+  public static final long DEFAULT_MAX_DISK_SIZE = 256 * 1024 * 1024;
+
+  // Use / instead of . to work around an issue with Maven Shade Plugin
+  private static final Logger log = LoggerFactory.getLogger("org/zeroturnaround/zip/NestedArchiveCache".replace('/', '.')); // NOSONAR
+
+  private static volatile NestedArchiveCache defaultCache = new NestedArchiveCache(DEFAULT_MAX_SIZE, DEFAULT_MAX_DISK_SIZE);
+
+  private final long maxSize;
+  private final long maxDiskSize;
+
+  /** Inflated archives in memory by key, least recently used first. */
+  private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+  /** Inflated archives on disk by key, least recently used first. */
+  private final LinkedHashMap<String, TempFile> files = new LinkedHashMap<String, TempFile>(16, 0.75f, true);
+
+  private long size;
+  private long diskSize;
+  private long hitCount;
+  private long missCount;
+
+  /**
+   * @param maxSize maximum total size of the inflated archives kept in memory in bytes.
+   * @param maxDiskSize maximum total size of the inflated archives kept in temporary files in bytes.
+   */
+  public NestedArchiveCache(long maxSize, long maxDiskSize) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("Negative cache size: " + maxSize);
+    }
+    if (maxDiskSize < 0) {
+      throw new IllegalArgumentException("Negative disk cache size: " + maxDiskSize);
+    }
+    this.maxSize = maxSize;
+    this.maxDiskSize = maxDiskSize;
+  }
+
+  /**
+   * @return cache used by {@link ZipUtil} for reading nested archives.
+   */
+  public static NestedArchiveCache getDefault() {
+    return defaultCache;
+  }
+
+  /**
+   * Replaces the cache used by {@link ZipUtil} for reading nested archives and clears the previous one.
+   *
+   * @param cache new default cache.
+   */
+  public static void setDefault(NestedArchiveCache cache) {
+    if (cache == null) {
+      throw new IllegalArgumentException("Cache must not be null");
+    }
+    NestedArchiveCache old = defaultCache;
+    defaultCache = cache;
+    if (old != cache) {
+      old.clear();
+    }
+  }
+
+  /**
+   * @param archive outer archive.
+   * @param entry DEFLATED inner archive.
+   * @param key identifier of the inner archive.
+   * @return reader of the inflated contents of the given entry.
+   */
+  RangeReader open(ZipArchive archive, ZipArchiveEntry entry, String key) throws IOException {
+    TempFile temp;
+    synchronized (this) {
+      byte[] bytes = entries.get(key);
+      if (bytes != null) {
+        hitCount++;
+        return new ByteArrayRangeReader(bytes, key);
+      }
+      temp = files.get(key);
+      if (temp != null) {
+        hitCount++;
+        temp.users++;
+      }
+      else {
+        missCount++;
+      }
+    }
+    if (temp != null) {
+      return open(temp);
+    }
+
+    InputStream in = archive.getInputStream(entry);
+    try {
+      if (entry.size <= maxSize / 2) {
+        byte[] bytes = IOUtils.toByteArray(in);
+        put(key, bytes);
+        return new ByteArrayRangeReader(bytes, key);
+      }
+      log.debug("Inflating {} into a temporary file.", key);
+      File file = File.createTempFile("zt-zip-nested", ".zip");
+      try {
+        OutputStream out = new FileOutputStream(file);
+        try {
+          IOUtils.copy(in, out);
+        }
+        finally {
+          IOUtils.closeQuietly(out);
+        }
+      }
+      catch (IOException e) {
+        FileUtils.deleteQuietly(file);
+        throw e;
+      }
+      return open(put(key, file));
+    }
+    finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  private RangeReader open(TempFile temp) throws IOException {
+    try {
+      return new TempFileRangeReader(temp);
+    }
+    catch (IOException e) {
+      release(temp);
+      throw e;
+    }
+  }
+
+  private synchronized void put(String key, byte[] bytes) {
+    if (bytes.length > maxSize) {
+      return;
+    }
+    byte[] old = entries.put(key, bytes);
+    if (old != null) {
+      size -= old.length;
+    }
+    size += bytes.length;
+    Iterator<byte[]> it = entries.values().iterator();
+    while (size > maxSize && it.hasNext()) {
+      size -= it.next().length;
+      it.remove();
+    }
+  }
+
+  /**
+   * @return the given file used once, it is deleted when no longer used if it was not cached.
+   */
+  private synchronized TempFile put(String key, File file) {
+    TempFile temp = new TempFile(file);
+    temp.users++;
+    if (temp.length > maxDiskSize) {
+      temp.evicted = true;
+      return temp;
+    }
+    file.deleteOnExit();
+    TempFile old = files.put(key, temp);
+    if (old != null) {
+      diskSize -= old.length;
+      evict(old);
+    }
+    diskSize += temp.length;
+    Iterator<TempFile> it = files.values().iterator();
+    while (diskSize > maxDiskSize && it.hasNext()) {
+      TempFile t = it.next();
+      diskSize -= t.length;
+      it.remove();
+      evict(t);
+    }
+    return temp;
+  }
+
+  /**
+   * Deletes the given file once it is no longer used.
+   */
+  private void evict(TempFile temp) {
+    temp.evicted = true;
+    if (temp.users == 0) {
+      FileUtils.deleteQuietly(temp.file);
+    }
+  }
+
+  private synchronized void release(TempFile temp) {
+    temp.users--;
+    if (temp.evicted && temp.users == 0) {
+      FileUtils.deleteQuietly(temp.file);
+    }
+  }
+
+  /**
+   * Removes all inflated archives. Temporary files which are still being read are deleted once closed.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    size = 0;
+    for (TempFile temp : files.values()) {
+      evict(temp);
+    }
+    files.clear();
+    diskSize = 0;
+  }
+
+  /**
+   * @return total size of the inflated archives in memory in bytes.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * @return total size of the inflated archives in temporary files in bytes.
+   */
+  public synchronized long getDiskSize() {
+    return diskSize;
+  }
+
+  /**
+   * @return number of inner archives read from the cache.
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return number of inner archives which had to be inflated.
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  public synchronized String toString() {
+    return "NestedArchiveCache[size=" + size + "/" + maxSize + ", diskSize=" + diskSize + "/" + maxDiskSize
+        + ", hits=" + hitCount + ", misses=" + missCount + "]";
+  }
+
+  /**
+   * Temporary file with an inflated archive.
+   */
+  private static final class TempFile {
+
+    final File file;
+    final long length;
+    /** Number of open readers. */
+    int users;
+    /** <code>true</code> if the file is deleted when no longer used. */
+    boolean evicted;
+
+    TempFile(File file) {
+      this.file = file;
+      this.length = file.length();
+    }
+
+  }
+
+  /**
+   * Reads an array.
+   */
+  private static final class ByteArrayRangeReader implements RangeReader {
+
+    private final byte[] bytes;
+    private final String description;
+
+    ByteArrayRangeReader(byte[] bytes, String description) {
+      this.bytes = bytes;
+      this.description = description;
+    }
+
+    public long length() {
+      return bytes.length;
+    }
+
+    public int read(long position, byte[] b, int off, int len) {
+      if (position >= bytes.length) {
+        return -1;
+      }
+      int n = (int) Math.min(len, bytes.length - position);
+      System.arraycopy(bytes, (int) position, b, off, n);
+      return n;
+    }
+
+    public void close() {
+      // nothing to release
+    }
+
+    public String toString() {
+      return description;
+    }
+
+  }
+
+  /**
+   * Reads a temporary file and releases it when closed.
+   */
+  private final class TempFileRangeReader implements RangeReader {
+
+    private final TempFile temp;
+    private final FileRangeReader reader;
+
+    TempFileRangeReader(TempFile temp) throws IOException {
+      this.temp = temp;
+      this.reader = new FileRangeReader(temp.file);
+    }
+
+    public long length() throws IOException {
+      return reader.length();
+    }
+
+    public int read(long position, byte[] b, int off, int len) throws IOException {
+      return reader.read(position, b, off, len);
+    }
+
+    public void close() throws IOException {
+      try {
+        reader.close();
+      }
+      finally {
+        release(temp);
+      }
+    }
+
+    public String toString() {
+      return temp.file.toString();
+    }
+
+  }
+
+}
@@ -0,0 +1,131 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.commons.IOUtils;
+
+/**
+ * Opens archives nested inside other archives, e.g. <code>WEB-INF/lib/a.jar!/META-INF/MANIFEST.MF</code>.
+ * <p>
+ * A STORED inner archive is read directly from the range of the outer archive. A DEFLATED inner archive is inflated
+ * once and kept in the {@link NestedArchiveCache#getDefault() default cache}.
+ * </p>
+ */
+final class NestedArchives {
+
+  /**
+   * Separator between the path of an inner archive and a path inside it.
+   */
+  static final String SEPARATOR = "!/";
+
+  private NestedArchives() {
+  }
+
+  /**
+   * @return <code>true</code> if the given entry path points into a nested archive.
+   */
+  static boolean isNested(String path) {
+    return path.indexOf(SEPARATOR) != -1;
+  }
+
+  /**
+   * @return path of the entry inside the innermost archive.
+   */
+  static String entryName(String path) {
+    return path.substring(path.lastIndexOf(SEPARATOR) + SEPARATOR.length());
+  }
+
+  /**
+   * Opens the innermost archive of the given nested path.
+   *
+   * @param zip outer ZIP file.
+   * @param path nested entry path.
+   * @param charset charset for entry names which are not flagged as UTF-8, <code>null</code> means UTF-8.
+   * @return archive containing the entry (closing it closes also the outer archives)
+   *    or <code>null</code> if one of the inner archives was not found.
+   */
+  static ZipArchive openParent(File zip, String path, Charset charset) throws IOException {
+    String key = zip.getAbsolutePath() + "@" + zip.lastModified() + "@" + zip.length();
+    ZipArchive archive = ZipArchive.open(zip, charset);
+    try {
+      int start = 0;
+      int end;
+      while ((end = path.indexOf(SEPARATOR, start)) != -1) {
+        String name = path.substring(start, end);
+        start = end + SEPARATOR.length();
+        ZipArchiveEntry e = archive.getEntry(name);
+        if (e == null || e.isDirectory()) {
+          return null;
+        }
+        key += SEPARATOR + name + "@" + Long.toHexString(e.crc);
+
+        RangeReader reader;
+        if (e.method == ZipEntry.STORED) {
+          reader = new EntryRangeReader(archive, e);
+        }
+        else {
+          reader = NestedArchiveCache.getDefault().open(archive, e, key);
+          archive.close();
+        }
+        archive = null;
+        archive = ZipArchive.open(reader, charset, true);
+      }
+      ZipArchive result = archive;
+      archive = null;
+      return result;
+    }
+    finally {
+      IOUtils.closeQuietly(archive);
+    }
+  }
+
+  /**
+   * Reads the data of a STORED entry and closes the archive when closed.
+   */
+  private static final class EntryRangeReader implements RangeReader {
+
+    private final ZipArchive archive;
+    private final ZipArchiveEntry entry;
+
+    EntryRangeReader(ZipArchive archive, ZipArchiveEntry entry) {
+      this.archive = archive;
+      this.entry = entry;
+    }
+
+    public long length() {
+      return entry.compressedSize;
+    }
+
+    public int read(long position, byte[] b, int off, int len) throws IOException {
+      return archive.readData(entry, position, b, off, len);
+    }
+
+    public void close() throws IOException {
+      archive.close();
+    }
+
+    public String toString() {
+      return archive + SEPARATOR + entry.name;
+    }
+
+  }
+
+}
@@ -0,0 +1,222 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.zeroturnaround.zip.commons.IOUtils;
+import org.zeroturnaround.zip.extra.ZipLong;
+
+/**
+ * Visits the entries of a ZIP file and of the archives nested inside it.
+ * <p>
+ * Entries starting with a local file header signature are treated as archives and iterated through a
+ * {@link ZipInputStream} without extracting them. Inner archives of the outer file may be processed in parallel,
+ * the archives nested deeper are always processed by the same thread as their parent.
+ * </p>
+ *
+ * @see ZipUtil#iterateNested(File, int, ZipEntryCallback, ExecutorService)
+ */
+final class NestedIterator {
+
+  /** Maximum number of inner archives submitted to the executor and not completed yet. */
+  static final int MAX_IN_FLIGHT = 64;
+
+  private final ZipEntryCallback action;
+  private final int maxDepth;
+  private final ExecutorService executor;
+  private final AtomicBoolean stopped = new AtomicBoolean();
+
+  /**
+   * @param action action to be called for each entry.
+   * @param maxDepth maximum number of nested archive levels to descend into.
+   * @param executor executor for processing the inner archives of the outer file, <code>null</code> means the
+   *    current thread.
+   */
+  NestedIterator(ZipEntryCallback action, int maxDepth, ExecutorService executor) {
+    this.action = action;
+    this.maxDepth = maxDepth;
+    this.executor = executor;
+  }
+
+  void iterate(File zip) throws IOException {
+    LinkedList<Future<Object>> futures = new LinkedList<Future<Object>>();
+    final ZipArchive archive = ZipArchive.open(zip);
+    try {
+      for (final ZipArchiveEntry e : archive.entries()) {
+        if (stopped.get()) {
+          break;
+        }
+        InputStream in = new BufferedInputStream(archive.getInputStream(e));
+        try {
+          if (executor == null || maxDepth == 0 || !isArchive(in)) {
+            process(in, e.toZipEntry(), 0);
+            continue;
+          }
+        }
+        finally {
+          IOUtils.closeQuietly(in);
+        }
+        while (futures.size() >= MAX_IN_FLIGHT) {
+          waitFor(futures.removeFirst());
+        }
+        // the entry is opened again by the task so that waiting tasks hold no inflaters
+        futures.add(executor.submit(new Callable<Object>() {
+          public Object call() throws IOException {
+            if (stopped.get()) {
+              return null;
+            }
+            InputStream in = new BufferedInputStream(archive.getInputStream(e));
+            try {
+              iterate(in, e.name, 1);
+            }
+            finally {
+              IOUtils.closeQuietly(in);
+            }
+            return null;
+          }
+        }));
+      }
+      while (!futures.isEmpty()) {
+        waitFor(futures.removeFirst());
+      }
+    }
+    finally {
+      for (Future<Object> future : futures) {
+        future.cancel(true);
+      }
+      IOUtils.closeQuietly(archive);
+    }
+  }
+
+  /**
+   * Descends into the entry if it is an archive or calls the action otherwise.
+   */
+  private void process(InputStream in, ZipEntry entry, int depth) throws IOException {
+    if (depth < maxDepth && isArchive(in)) {
+      iterate(in, entry.getName(), depth + 1);
+      return;
+    }
+    try {
+      action.process(new CloseShieldInputStream(in), entry);
+    }
+    catch (IOException e) {
+      throw new ZipException("Failed to process zip entry '" + entry.getName() + "' with action " + action, e);
+    }
+    catch (ZipBreakException e) {
+      stopped.set(true);
+    }
+  }
+
+  /**
+   * Iterates the archive read from the given stream.
+   *
+   * @param prefix path of the archive.
+   */
+  private void iterate(InputStream is, String prefix, int depth) throws IOException {
+    // the parent stream stays open, closing releases the inflater of the nested archive
+    ZipInputStream zin = new ZipInputStream(new CloseShieldInputStream(is));
+    try {
+      ZipEntry e;
+      while (!stopped.get() && (e = zin.getNextEntry()) != null) {
+        InputStream in = new BufferedInputStream(new CloseShieldInputStream(zin));
+        process(in, rename(e, prefix + NestedArchives.SEPARATOR + e.getName()), depth);
+      }
+    }
+    finally {
+      zin.close();
+    }
+  }
+
+  /**
+   * @return <code>true</code> if the stream starts with a local file header, the stream position is not changed.
+   */
+  private static boolean isArchive(InputStream in) throws IOException {
+    byte[] b = new byte[4];
+    in.mark(b.length);
+    try {
+      int n = 0;
+      while (n < b.length) {
+        int count = in.read(b, n, b.length - n);
+        if (count == -1) {
+          return false;
+        }
+        n += count;
+      }
+      return ZipLong.getValue(b, 0) == ZipArchive.LFH_SIG;
+    }
+    finally {
+      in.reset();
+    }
+  }
+
+  /**
+   * @return copy of the given entry with a new name.
+   */
+  private static ZipEntry rename(ZipEntry e, String name) {
+    ZipEntry result = new ZipEntry(name);
+    result.setMethod(e.getMethod());
+    result.setTime(e.getTime());
+    if (e.getSize() != -1) {
+      result.setSize(e.getSize());
+    }
+    if (e.getCompressedSize() != -1) {
+      result.setCompressedSize(e.getCompressedSize());
+    }
+    if (e.getCrc() != -1) {
+      result.setCrc(e.getCrc());
+    }
+    if (e.getExtra() != null) {
+      result.setExtra(e.getExtra());
+    }
+    if (e.getComment() != null) {
+      result.setComment(e.getComment());
+    }
+    return result;
+  }
+
+  private static void waitFor(Future<Object> future) throws IOException {
+    try {
+      future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ZipException("Interrupted while iterating nested archives", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new ZipException("Failed to iterate nested archives", cause);
+    }
+  }
+
+}
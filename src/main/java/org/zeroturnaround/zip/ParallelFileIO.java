@@ -0,0 +1,278 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.commons.IOUtils;
+
+/**
+ * Unpacks and packs ZIP files running the file I/O of small entries on a separate executor.
+ * <p>
+ * Inflating and deflating stays on the calling thread. Only creating and writing (or reading) the files of small
+ * entries is handed over to the executor, which may run many of them at a time. Larger entries are streamed on the
+ * calling thread. At most {@link #MAX_IN_FLIGHT} small entries are kept in memory at a time.
+ * </p>
+ *
+ * @see ZipExecutors
+ */
+final class ParallelFileIO {
+
+  /** Entries up to this size are written or read by the executor. */
+  static final int SMALL_ENTRY_SIZE = 64 * 1024;
+
+  /** Maximum number of small entries kept in memory. */
+  static final int MAX_IN_FLIGHT = 256;
+
+  private static final String PATH_SEPARATOR = "/";
+
+  private ParallelFileIO() {
+  }
+
+  /**
+   * Unpacks the archive into the given directory. If several entries are written into the same file, the last one
+   * wins like with {@link ZipUtil#unpack(File, File, NameMapper)}.
+   */
+  static void unpack(ZipArchive archive, File outputDir, NameMapper mapper, ExecutorService executor) throws IOException {
+    // pending writes in the order they were submitted, at most one for each file
+    Map<File, Future<?>> pending = new LinkedHashMap<File, Future<?>>();
+    try {
+      for (ZipArchiveEntry e : archive.entries()) {
+        ZipTask.checkpoint(e.name);
+        String name = mapper.map(e.name);
+        if (name == null) {
+          continue;
+        }
+        final File file = ZipUtil.makeDestinationFile(outputDir, name);
+        final ZipEntry zipEntry = e.toZipEntry();
+        Future<?> previous = pending.remove(file);
+        if (previous != null) {
+          // an earlier entry with the same name must not overwrite this one
+          get(previous);
+        }
+
+        if (e.isDirectory()) {
+          FileUtils.forceMkdir(file);
+          setPermissions(file, zipEntry);
+        }
+        else if (e.size >= 0 && e.size <= SMALL_ENTRY_SIZE) {
+          final byte[] data;
+          InputStream in = archive.getInputStream(e);
+          try {
+            data = IOUtils.toByteArray(in, e.size);
+          }
+          finally {
+            IOUtils.closeQuietly(in);
+          }
+          while (pending.size() >= MAX_IN_FLIGHT) {
+            get(removeFirst(pending));
+          }
+          pending.put(file, executor.submit(new Callable<Void>() {
+            public Void call() throws IOException {
+              FileUtils.forceMkdir(file.getParentFile());
+              OutputStream out = new FileOutputStream(file);
+              try {
+                out.write(data);
+              }
+              finally {
+                IOUtils.closeQuietly(out);
+              }
+              setPermissions(file, zipEntry);
+              return null;
+            }
+          }));
+        }
+        else {
+          FileUtils.forceMkdir(file.getParentFile());
+          InputStream in = archive.getInputStream(e);
+          try {
+            FileUtils.copy(in, file);
+          }
+          finally {
+            IOUtils.closeQuietly(in);
+          }
+          setPermissions(file, zipEntry);
+        }
+      }
+      while (!pending.isEmpty()) {
+        get(removeFirst(pending));
+      }
+    }
+    finally {
+      for (Future<?> future : pending.values()) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private static void setPermissions(File file, ZipEntry zipEntry) {
+    ZTFilePermissions permissions = ZipEntryUtil.getZTFilePermissions(zipEntry);
+    if (permissions != null) {
+      ZTFilePermissionsUtil.getDefaultStategy().setPermissions(file, permissions);
+    }
+  }
+
+  /**
+   * Packs the directory into the given stream in the same order as {@link ZipUtil#pack(File, File, NameMapper, int)}.
+   */
+  static void pack(File sourceDir, ZipOutputStream out, NameMapper mapper, ExecutorService executor) throws IOException {
+    List<Item> items = new ArrayList<Item>();
+    list(sourceDir, mapper, "", true, items);
+
+    LinkedList<Item> pending = new LinkedList<Item>();
+    int next = 0;
+    try {
+      for (int i = 0; i < items.size(); i++) {
+        // read the next small files ahead
+        while (next < items.size() && pending.size() < MAX_IN_FLIGHT) {
+          final Item item = items.get(next++);
+          if (!item.file.isDirectory() && item.file.length() <= SMALL_ENTRY_SIZE) {
+            item.data = executor.submit(new Callable<byte[]>() {
+              public byte[] call() throws IOException {
+                InputStream in = new FileInputStream(item.file);
+                try {
+                  return IOUtils.toByteArray(in);
+                }
+                finally {
+                  IOUtils.closeQuietly(in);
+                }
+              }
+            });
+          }
+          pending.add(item);
+        }
+
+        Item item = pending.removeFirst();
+        ZipEntry zipEntry = ZipEntryUtil.fromFile(item.name, item.file);
+        ZipTask.checkpoint(item.name);
+        out.putNextEntry(zipEntry);
+        if (item.data != null) {
+          out.write(get(item.data));
+        }
+        else if (!item.file.isDirectory()) {
+          FileUtils.copy(item.file, out);
+        }
+        out.closeEntry();
+      }
+    }
+    finally {
+      for (Item item : pending) {
+        if (item.data != null) {
+          item.data.cancel(true);
+        }
+      }
+    }
+  }
+
+  /**
+   * Lists the entries to pack in the same order as {@link ZipUtil#pack(File, File, NameMapper, int)} writes them.
+   */
+  private static void list(File dir, NameMapper mapper, String pathPrefix, boolean mustHaveChildren, List<Item> items) throws IOException {
+    String[] filenames = dir.list();
+    if (filenames == null) {
+      if (!dir.exists()) {
+        throw new ZipException("Given file '" + dir + "' doesn't exist!");
+      }
+      throw new IOException("Given file is not a directory '" + dir + "'");
+    }
+
+    if (mustHaveChildren && filenames.length == 0) {
+      throw new ZipException("Given directory '" + dir + "' doesn't contain any files!");
+    }
+
+    for (int i = 0; i < filenames.length; i++) {
+      File file = new File(dir, filenames[i]);
+      boolean isDir = file.isDirectory();
+      String path = pathPrefix + file.getName(); // NOSONAR
+      if (isDir) {
+        path += PATH_SEPARATOR; // NOSONAR
+      }
+      String name = mapper.map(path);
+      if (name != null) {
+        items.add(new Item(file, name));
+      }
+      if (isDir) {
+        list(file, mapper, path, false, items);
+      }
+    }
+  }
+
+  /**
+   * Removes the oldest pending write.
+   */
+  private static Future<?> removeFirst(Map<File, Future<?>> pending) {
+    Iterator<Future<?>> it = pending.values().iterator();
+    Future<?> result = it.next();
+    it.remove();
+    return result;
+  }
+
+  private static <T> T get(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ZipException("Interrupted while waiting for file I/O", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new ZipException("Failed to read or write a file", cause);
+    }
+  }
+
+  /**
+   * File to pack.
+   */
+  private static class Item {
+
+    final File file;
+    final String name;
+    /** Contents of a small file being read, <code>null</code> for directories and large files. */
+    Future<byte[]> data;
+
+    Item(File file, String name) {
+      this.file = file;
+      this.name = name;
+    }
+
+  }
+
+}
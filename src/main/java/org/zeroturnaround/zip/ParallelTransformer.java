@@ -0,0 +1,199 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeroturnaround.zip.commons.IOUtils;
+import org.zeroturnaround.zip.transform.ZipEntryTransformer;
+import org.zeroturnaround.zip.transform.ZipEntryTransformerEntry;
+
+/**
+ * Transforms the entries of a ZIP file in parallel keeping their order.
+ * <p>
+ * Each transformed entry is processed by a separate task which writes the result compressed into an in-memory
+ * archive. The entries without a transformer are copied without decompressing them. The results are written in the
+ * original order of the entries. At most the given number of transformed entries are in flight at a time, so the
+ * memory used for the results is bounded.
+ * </p>
+ *
+ * @see ZipUtil#transformEntries(java.io.File, ZipEntryTransformerEntry[], java.io.File, ExecutorService)
+ */
+final class ParallelTransformer {
+
+  /**
+   * Default maximum number of transformed entries kept in memory waiting to be written.
+   */
+  static final int DEFAULT_MAX_IN_FLIGHT = 2 * Runtime.getRuntime().availableProcessors();
+
+  private static final int SLAB_SIZE = 16 * 1024;
+
+  // Use / instead of . to work around an issue with Maven Shade Plugin
+  private static final Logger log = LoggerFactory.getLogger("org/zeroturnaround/zip/ParallelTransformer".replace('/', '.')); // NOSONAR
+
+  private final TransformerIndex transformers;
+  private final ExecutorService executor;
+  private final int maxInFlight;
+
+  /**
+   * @param entries transformers of the entries.
+   * @param executor executor running the transformers.
+   * @param maxInFlight maximum number of transformed entries kept in memory waiting to be written.
+   */
+  ParallelTransformer(List<ZipEntryTransformerEntry> entries, ExecutorService executor, int maxInFlight) {
+    this.transformers = new TransformerIndex(entries);
+    this.executor = executor;
+    this.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * Transforms the entries of the source archive into the given stream.
+   *
+   * @return <code>true</code> if at least one entry was transformed.
+   */
+  boolean transform(final ZipArchive source, RawZipOutputStream out) throws IOException {
+    out.setSource(source);
+    LinkedList<Pending> pending = new LinkedList<Pending>();
+    int inFlight = 0;
+    try {
+      NameSet names = new NameSet();
+      for (final ZipArchiveEntry e : source.entries()) {
+        if (!names.add(e.name)) {
+          log.debug("Duplicate entry: {}", e.name);
+          continue;
+        }
+        final ZipEntryTransformer transformer = transformers.get(e.name);
+        if (transformer == null) {
+          pending.add(new Pending(e, null));
+        }
+        else {
+          while (inFlight >= maxInFlight) {
+            inFlight -= writeFirst(pending, source, out);
+          }
+          pending.add(new Pending(e, executor.submit(new Callable<SlabBuffer>() {
+            public SlabBuffer call() throws IOException {
+              return transform(source, e, transformer);
+            }
+          })));
+          inFlight++;
+        }
+        // write whatever is ready at the head of the queue
+        while (!pending.isEmpty() && pending.getFirst().isReady()) {
+          inFlight -= writeFirst(pending, source, out);
+        }
+      }
+      while (!pending.isEmpty()) {
+        writeFirst(pending, source, out);
+      }
+    }
+    finally {
+      for (Pending p : pending) {
+        if (p.result != null) {
+          p.result.cancel(true);
+        }
+      }
+    }
+    return transformers.found();
+  }
+
+  /**
+   * Runs the transformer writing the result compressed into a new in-memory archive.
+   */
+  private static SlabBuffer transform(ZipArchive source, ZipArchiveEntry e, ZipEntryTransformer transformer) throws IOException {
+    SlabBuffer buffer = new SlabBuffer(SLAB_SIZE, false);
+    RawZipOutputStream out = new RawZipOutputStream(buffer);
+    out.setSource(source);
+    InputStream in = new BufferedInputStream(source.getInputStream(e));
+    try {
+      transformer.transform(in, e.toZipEntry(), out);
+      out.finish();
+    }
+    finally {
+      IOUtils.closeQuietly(in);
+    }
+    return buffer;
+  }
+
+  /**
+   * Writes the first pending entry waiting for it if needed.
+   *
+   * @return <code>1</code> if it was a transformed entry, <code>0</code> if it was copied.
+   */
+  private static int writeFirst(LinkedList<Pending> pending, ZipArchive source, RawZipOutputStream out) throws IOException {
+    Pending p = pending.removeFirst();
+    if (p.result == null) {
+      out.putRawEntry(source, p.entry);
+      return 0;
+    }
+    SlabBuffer buffer = get(p);
+    ZipArchive transformed = ZipArchive.open(buffer, null);
+    for (ZipArchiveEntry e : transformed.entries()) {
+      out.putRawEntry(transformed, e);
+    }
+    return 1;
+  }
+
+  private static SlabBuffer get(Pending p) throws IOException {
+    try {
+      return p.result.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ZipException("Interrupted while transforming entry '" + p.entry.name + "'", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new ZipException("Failed to transform entry '" + p.entry.name + "'", cause);
+    }
+  }
+
+  /**
+   * Entry waiting to be written.
+   */
+  private static class Pending {
+
+    final ZipArchiveEntry entry;
+    /** Transformed entry or <code>null</code> if the entry is copied as it is. */
+    final Future<SlabBuffer> result;
+
+    Pending(ZipArchiveEntry entry, Future<SlabBuffer> result) {
+      this.entry = entry;
+      this.result = result;
+    }
+
+    boolean isReady() {
+      return result == null || result.isDone();
+    }
+
+  }
+
+}
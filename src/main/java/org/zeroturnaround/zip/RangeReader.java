@@ -0,0 +1,54 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Random access to the bytes of a ZIP file.
+ * <p>
+ * It allows reading archives without having them in a local file, e.g. from a remote storage supporting range
+ * requests. Only the end of the archive, the central directory and the data of the requested entries are read.
+ * Implementations must support concurrent reads.
+ * </p>
+ *
+ * @see FileRangeReader
+ * @see HttpRangeReader
+ * @see CachingRangeReader
+ */
+public interface RangeReader extends Closeable {
+
+  /**
+   * @return total number of bytes available.
+   * @throws IOException if the length could not be determined.
+   */
+  long length() throws IOException;
+
+  /**
+   * Reads up to <code>len</code> bytes starting from the given position.
+   *
+   * @param position position of the first byte to read.
+   * @param b buffer into which the data is read.
+   * @param off start offset in the buffer.
+   * @param len maximum number of bytes to read.
+   * @return number of bytes read, possibly less than requested,
+   *    or <code>-1</code> if the position is at the end of the data.
+   * @throws IOException if reading fails.
+   */
+  int read(long position, byte[] b, int off, int len) throws IOException;
+
+}
@@ -0,0 +1,575 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.zeroturnaround.zip.commons.IOUtils;
+import org.zeroturnaround.zip.extra.ZipShort;
+import org.zeroturnaround.zip.timestamps.TimestampStrategyFactory;
+import org.zeroturnaround.zip.transform.RawEntryCopier;
+
+/**
+ * {@link ZipOutputStream} which can also copy entries of an existing archive as they are, without decompressing
+ * and compressing their data again.
+ * <p>
+ * Regular entries are written the same way as {@link ZipOutputStream} does. Entries copied with
+ * {@link #putRawEntry(ZipArchive, ZipArchiveEntry)} keep their compressed data, CRC, time, attributes and extra fields.
+ *
+ * @see ZipArchive
+ */
+class RawZipOutputStream extends ZipOutputStream implements RawEntryCopier {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final int VERSION_STORED = 10;
+  private static final int VERSION_DEFLATED = 20;
+  private static final int VERSION_ZIP64 = 45;
+
+  private final CountingOutputStream os;
+  private final Charset charset;
+  private final List<ZipArchiveEntry> written = new ArrayList<ZipArchiveEntry>();
+  private final NameSet names = new NameSet();
+  private final CRC32 crc = new CRC32();
+  private final byte[] deflateBuffer = new byte[8192];
+
+  /**
+   * Headers are composed here and written to the target stream at once.
+   */
+  private final ByteArrayOutputStream header = new ByteArrayOutputStream(256);
+
+  private int defaultMethod = DEFLATED;
+  private byte[] comment;
+
+  /**
+   * Archive the entries being transformed are taken from or <code>null</code>.
+   */
+  private ZipArchive source;
+
+  /**
+   * Entry being written with {@link #write(byte[], int, int)} or <code>null</code>.
+   */
+  private ZipEntry current;
+  private int currentMethod;
+  private byte[] currentName;
+  private int currentFlags;
+  private long currentDosTime;
+  private long currentOffset;
+  private long currentSize;
+
+  private boolean finished;
+  private boolean closed;
+
+  RawZipOutputStream(OutputStream out) {
+    this(out, null);
+  }
+
+  /**
+   * @param out target stream.
+   * @param charset charset for the names and comments of new entries, <code>null</code> means UTF-8.
+   */
+  RawZipOutputStream(OutputStream out, Charset charset) {
+    super(out);
+    this.os = new CountingOutputStream(out);
+    this.charset = charset == null ? UTF8 : charset;
+  }
+
+  /**
+   * @param source archive the entries being transformed are taken from, used by {@link #copyRawEntry(ZipEntry)}.
+   */
+  void setSource(ZipArchive source) {
+    this.source = source;
+  }
+
+  /**
+   * @return archive the entries being transformed are taken from or <code>null</code> if not set.
+   */
+  ZipArchive getSource() {
+    return source;
+  }
+
+  public boolean copyRawEntry(ZipEntry zipEntry) throws IOException {
+    if (source == null) {
+      return false;
+    }
+    ZipArchiveEntry entry = source.getEntry(zipEntry.getName());
+    if (entry == null) {
+      return false;
+    }
+    putRawEntry(source, entry);
+    return true;
+  }
+
+  public void setComment(String comment) {
+    this.comment = comment == null ? null : comment.getBytes(charset);
+  }
+
+  public void setMethod(int method) {
+    if (method != DEFLATED && method != STORED) {
+      throw new IllegalArgumentException("invalid compression method");
+    }
+    this.defaultMethod = method;
+  }
+
+  public void putNextEntry(ZipEntry e) throws IOException {
+    ensureOpen();
+    if (current != null) {
+      closeEntry();
+    }
+    String name = e.getName();
+    if (!names.add(name)) {
+      throw new java.util.zip.ZipException("duplicate entry: " + name);
+    }
+
+    int method = e.getMethod() == -1 ? defaultMethod : e.getMethod();
+    long size = e.getSize();
+    long csize = e.getCompressedSize();
+    long entryCrc = e.getCrc();
+    int flags = charset.equals(UTF8) ? ZipArchiveEntry.FLAG_UTF8 : 0;
+    if (method == STORED) {
+      if (size == -1) {
+        size = csize;
+      }
+      if (size == -1 || entryCrc == -1) {
+        throw new java.util.zip.ZipException("STORED entry missing size, compressed size, or crc-32");
+      }
+      csize = size;
+    }
+    else {
+      flags |= ZipArchiveEntry.FLAG_DATA_DESCRIPTOR;
+    }
+
+    current = e;
+    currentMethod = method;
+    currentName = name.getBytes(charset);
+    currentFlags = flags;
+    currentDosTime = ZipArchiveEntry.javaToDosTime(e.getTime() == -1 ? System.currentTimeMillis() : e.getTime());
+    currentOffset = os.count;
+    currentSize = 0;
+    crc.reset();
+
+    byte[] extra = extraOf(e, true);
+    if (method == STORED) {
+      writeLocalHeader(versionNeeded(method, size, csize, 0), flags, method, currentDosTime, entryCrc, csize, size, currentName, extra);
+    }
+    else {
+      writeLocalHeader(VERSION_DEFLATED, flags, method, currentDosTime, 0, 0, 0, currentName, extra);
+    }
+  }
+
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    if (off < 0 || len < 0 || off > b.length - len) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (current == null) {
+      throw new java.util.zip.ZipException("no current ZIP entry");
+    }
+    if (len == 0) {
+      return;
+    }
+    if (currentMethod == DEFLATED) {
+      def.setInput(b, off, len);
+      while (!def.needsInput()) {
+        deflate();
+      }
+    }
+    else {
+      os.write(b, off, len);
+    }
+    crc.update(b, off, len);
+    currentSize += len;
+  }
+
+  protected void deflate() throws IOException {
+    int n = def.deflate(deflateBuffer, 0, deflateBuffer.length);
+    if (n > 0) {
+      os.write(deflateBuffer, 0, n);
+    }
+  }
+
+  public void closeEntry() throws IOException {
+    ensureOpen();
+    if (current == null) {
+      return;
+    }
+    ZipEntry e = current;
+    current = null;
+
+    long csize;
+    if (currentMethod == DEFLATED) {
+      def.finish();
+      while (!def.finished()) {
+        deflate();
+      }
+      csize = def.getBytesWritten();
+      def.reset();
+      boolean zip64 = csize >= ZipArchive.ZIP64_MAGIC || currentSize >= ZipArchive.ZIP64_MAGIC;
+      writeInt(ZipArchive.DD_SIG);
+      writeInt(crc.getValue());
+      if (zip64) {
+        writeLong(csize);
+        writeLong(currentSize);
+      }
+      else {
+        writeInt(csize);
+        writeInt(currentSize);
+      }
+      flushHeader();
+    }
+    else {
+      csize = currentSize;
+      if (e.getSize() != -1 && e.getSize() != currentSize || e.getSize() == -1 && e.getCompressedSize() != currentSize) {
+        throw new java.util.zip.ZipException("invalid entry size (expected " + e.getSize() + " but got " + currentSize + " bytes)");
+      }
+      if (e.getCrc() != crc.getValue()) {
+        throw new java.util.zip.ZipException("invalid entry crc-32 (expected 0x" + Long.toHexString(e.getCrc())
+            + " but got 0x" + Long.toHexString(crc.getValue()) + ")");
+      }
+    }
+
+    int version = versionNeeded(currentMethod, currentSize, csize, currentOffset);
+    byte[] extra = extraOf(e, false);
+    String entryComment = e.getComment();
+    byte[] rawComment = entryComment == null ? new byte[0] : entryComment.getBytes(charset);
+    written.add(new ZipArchiveEntry(e.getName(), currentName, version, version, currentFlags, currentMethod, currentDosTime,
+        crc.getValue(), csize, currentSize, extra, entryComment, rawComment, 0, 0, currentOffset));
+  }
+
+  /**
+   * Copies an entry of an existing archive without decompressing it.
+   *
+   * @param archive source archive.
+   * @param entry entry of the source archive.
+   * @throws IOException if reading or writing fails.
+   */
+  void putRawEntry(ZipArchive archive, ZipArchiveEntry entry) throws IOException {
+    putRawEntry(archive, entry, entry.name);
+  }
+
+  /**
+   * Copies an entry of an existing archive under a different name without decompressing it.
+   *
+   * @param archive source archive.
+   * @param entry entry of the source archive.
+   * @param name name of the new entry.
+   * @throws IOException if reading or writing fails.
+   */
+  void putRawEntry(ZipArchive archive, ZipArchiveEntry entry, String name) throws IOException {
+    InputStream in = archive.getRawInputStream(entry);
+    try {
+      putRawEntry(entry, archive.getLocalExtra(entry), in, name);
+    }
+    finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /**
+   * Writes an entry with already compressed data.
+   *
+   * @param entry meta-data of the entry (the local header offset is ignored).
+   * @param localExtra local header extra field.
+   * @param compressed exactly {@link ZipArchiveEntry#compressedSize} bytes of compressed data.
+   * @param name name of the new entry.
+   * @throws IOException if reading or writing fails.
+   */
+  void putRawEntry(ZipArchiveEntry entry, byte[] localExtra, InputStream compressed, String name) throws IOException {
+    ensureOpen();
+    if (current != null) {
+      closeEntry();
+    }
+    if (!names.add(name)) {
+      throw new java.util.zip.ZipException("duplicate entry: " + name);
+    }
+
+    byte[] rawName;
+    int flags = entry.flags & ~ZipArchiveEntry.FLAG_DATA_DESCRIPTOR;
+    if (name.equals(entry.name)) {
+      rawName = entry.rawName;
+    }
+    else {
+      rawName = name.getBytes(charset);
+      flags = charset.equals(UTF8) ? flags | ZipArchiveEntry.FLAG_UTF8 : flags & ~ZipArchiveEntry.FLAG_UTF8;
+    }
+
+    long offset = os.count;
+    ZipArchiveEntry copy = entry.relocate(name, rawName, flags, offset);
+    int version = Math.max(entry.versionNeeded, versionNeeded(entry.method, entry.size, entry.compressedSize, 0));
+    writeLocalHeader(version, flags, entry.method, entry.dosTime, entry.crc, entry.compressedSize, entry.size, rawName,
+        localExtra == null ? entry.extra : localExtra);
+
+    byte[] buffer = new byte[8192];
+    long remaining = entry.compressedSize;
+    while (remaining > 0) {
+      int n = compressed.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+      if (n == -1) {
+        throw new java.util.zip.ZipException("Unexpected end of data of entry " + entry.name);
+      }
+      os.write(buffer, 0, n);
+      remaining -= n;
+    }
+    written.add(copy);
+  }
+
+  public void finish() throws IOException {
+    ensureOpen();
+    if (finished) {
+      return;
+    }
+    if (current != null) {
+      closeEntry();
+    }
+    long cdOffset = os.count;
+    for (ZipArchiveEntry e : written) {
+      writeCentralHeader(e);
+    }
+    long cdSize = os.count - cdOffset;
+    long count = written.size();
+    if (count >= ZipArchive.ZIP64_MAGIC_SHORT || cdSize >= ZipArchive.ZIP64_MAGIC || cdOffset >= ZipArchive.ZIP64_MAGIC) {
+      long zip64EocdOffset = os.count;
+      writeInt(ZipArchive.ZIP64_EOCD_SIG);
+      writeLong(44);
+      writeShort(VERSION_ZIP64);
+      writeShort(VERSION_ZIP64);
+      writeInt(0);
+      writeInt(0);
+      writeLong(count);
+      writeLong(count);
+      writeLong(cdSize);
+      writeLong(cdOffset);
+
+      writeInt(ZipArchive.ZIP64_LOCATOR_SIG);
+      writeInt(0);
+      writeLong(zip64EocdOffset);
+      writeInt(1);
+    }
+    writeInt(ZipArchive.EOCD_SIG);
+    writeShort(0);
+    writeShort(0);
+    writeShort((int) Math.min(count, ZipArchive.ZIP64_MAGIC_SHORT));
+    writeShort((int) Math.min(count, ZipArchive.ZIP64_MAGIC_SHORT));
+    writeInt(Math.min(cdSize, ZipArchive.ZIP64_MAGIC));
+    writeInt(Math.min(cdOffset, ZipArchive.ZIP64_MAGIC));
+    if (comment == null) {
+      writeShort(0);
+    }
+    else {
+      writeShort(comment.length);
+      header.write(comment, 0, comment.length);
+    }
+    flushHeader();
+    os.flush();
+    finished = true;
+  }
+
+  public void flush() throws IOException {
+    os.flush();
+  }
+
+  public void close() throws IOException {
+    if (!closed) {
+      try {
+        finish();
+      }
+      finally {
+        closed = true;
+        def.end();
+        os.close();
+      }
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  private static int versionNeeded(int method, long size, long csize, long offset) {
+    if (size >= ZipArchive.ZIP64_MAGIC || csize >= ZipArchive.ZIP64_MAGIC || offset >= ZipArchive.ZIP64_MAGIC) {
+      return VERSION_ZIP64;
+    }
+    return method == DEFLATED ? VERSION_DEFLATED : VERSION_STORED;
+  }
+
+  private void writeLocalHeader(int version, int flags, int method, long dosTime, long entryCrc, long csize, long size,
+      byte[] name, byte[] extra) throws IOException {
+    boolean zip64 = size >= ZipArchive.ZIP64_MAGIC || csize >= ZipArchive.ZIP64_MAGIC;
+    writeInt(ZipArchive.LFH_SIG);
+    writeShort(version);
+    writeShort(flags);
+    writeShort(method);
+    writeInt(dosTime);
+    writeInt(entryCrc);
+    if (zip64) {
+      writeInt(ZipArchive.ZIP64_MAGIC);
+      writeInt(ZipArchive.ZIP64_MAGIC);
+    }
+    else {
+      writeInt(csize);
+      writeInt(size);
+    }
+    writeShort(name.length);
+    writeShort(extra.length + (zip64 ? 20 : 0));
+    header.write(name, 0, name.length);
+    if (zip64) {
+      writeShort(ZipArchive.ZIP64_EXTRA_ID);
+      writeShort(16);
+      writeLong(size);
+      writeLong(csize);
+    }
+    header.write(extra, 0, extra.length);
+    flushHeader();
+  }
+
+  private void writeCentralHeader(ZipArchiveEntry e) throws IOException {
+    int zip64Len = 0;
+    if (e.size >= ZipArchive.ZIP64_MAGIC) {
+      zip64Len += 8;
+    }
+    if (e.compressedSize >= ZipArchive.ZIP64_MAGIC) {
+      zip64Len += 8;
+    }
+    if (e.localHeaderOffset >= ZipArchive.ZIP64_MAGIC) {
+      zip64Len += 8;
+    }
+    int version = zip64Len > 0 ? Math.max(e.versionNeeded, VERSION_ZIP64) : e.versionNeeded;
+    writeInt(ZipArchive.CFH_SIG);
+    writeShort(zip64Len > 0 ? (e.versionMadeBy & 0xff00) | Math.max(e.versionMadeBy & 0xff, VERSION_ZIP64) : e.versionMadeBy);
+    writeShort(version);
+    writeShort(e.flags);
+    writeShort(e.method);
+    writeInt(e.dosTime);
+    writeInt(e.crc);
+    writeInt(Math.min(e.compressedSize, ZipArchive.ZIP64_MAGIC));
+    writeInt(Math.min(e.size, ZipArchive.ZIP64_MAGIC));
+    writeShort(e.rawName.length);
+    writeShort(e.extra.length + (zip64Len > 0 ? 4 + zip64Len : 0));
+    writeShort(e.rawComment.length);
+    writeShort(0);
+    writeShort(e.internalAttributes);
+    writeInt(e.externalAttributes);
+    writeInt(Math.min(e.localHeaderOffset, ZipArchive.ZIP64_MAGIC));
+    header.write(e.rawName, 0, e.rawName.length);
+    if (zip64Len > 0) {
+      writeShort(ZipArchive.ZIP64_EXTRA_ID);
+      writeShort(zip64Len);
+      if (e.size >= ZipArchive.ZIP64_MAGIC) {
+        writeLong(e.size);
+      }
+      if (e.compressedSize >= ZipArchive.ZIP64_MAGIC) {
+        writeLong(e.compressedSize);
+      }
+      if (e.localHeaderOffset >= ZipArchive.ZIP64_MAGIC) {
+        writeLong(e.localHeaderOffset);
+      }
+    }
+    header.write(e.extra, 0, e.extra.length);
+    header.write(e.rawComment, 0, e.rawComment.length);
+    flushHeader();
+  }
+
+  /**
+   * @return extra field of a new entry for the local or the central header. The ZIP64 field is left out. Like
+   *    {@link ZipOutputStream} of Java 8 and later, the times of the entry replace its extended timestamp field.
+   */
+  private static byte[] extraOf(ZipEntry e, boolean local) {
+    byte[] extra = e.getExtra() == null ? new byte[0] : e.getExtra();
+    if (!TimestampStrategyFactory.HAS_ZIP_ENTRY_FILE_TIME_METHODS) {
+      return ZipArchive.removeExtraField(extra, ZipArchive.ZIP64_EXTRA_ID);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(extra.length + 36);
+    ZipEntryTimeFields.write(e, extra, local, out);
+    int off = 0;
+    while (off + 4 <= extra.length) {
+      int id = ZipShort.getValue(extra, off);
+      int len = 4 + ZipShort.getValue(extra, off + 2);
+      if (off + len > extra.length) {
+        break;
+      }
+      if (id != ZipArchive.ZIP64_EXTRA_ID && id != ZipEntryTimeFields.EXTENDED_TIMESTAMP_ID) {
+        out.write(extra, off, len);
+      }
+      off += len;
+    }
+    out.write(extra, off, extra.length - off);
+    return out.toByteArray();
+  }
+
+  private void flushHeader() throws IOException {
+    header.writeTo(os);
+    header.reset();
+  }
+
+  private void writeShort(int v) {
+    header.write(v & 0xff);
+    header.write((v >>> 8) & 0xff);
+  }
+
+  private void writeInt(long v) {
+    header.write((int) (v & 0xff));
+    header.write((int) ((v >>> 8) & 0xff));
+    header.write((int) ((v >>> 16) & 0xff));
+    header.write((int) ((v >>> 24) & 0xff));
+  }
+
+  private void writeLong(long v) {
+    writeInt(v & 0xffffffffL);
+    writeInt(v >>> 32);
+  }
+
+  /**
+   * Keeps track of the number of bytes written.
+   */
+  private static class CountingOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+}
@@ -0,0 +1,195 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Growable in-memory data stored in a chain of fixed-size buffers.
+ * <p>
+ * The data is appended as an {@link OutputStream} and read back using positional reads. Growing never copies the
+ * data written so far, it only adds another buffer to the chain.
+ */
+class SlabBuffer extends OutputStream implements RangeReader {
+
+  private final boolean direct;
+  private int slabSize;
+  private List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+  private long length;
+  private boolean sealed;
+
+  /**
+   * @param slabSize size of each buffer in the chain.
+   * @param direct <code>true</code> for allocating direct buffers outside the heap.
+   */
+  SlabBuffer(int slabSize, boolean direct) {
+    if (slabSize <= 0) {
+      throw new IllegalArgumentException("Invalid slab size: " + slabSize);
+    }
+    this.slabSize = slabSize;
+    this.direct = direct;
+  }
+
+  /**
+   * @return read-only data backed by the remaining bytes of the given buffer without copying them.
+   */
+  static SlabBuffer wrap(ByteBuffer buffer) {
+    ByteBuffer slab = buffer.slice();
+    SlabBuffer result = new SlabBuffer(Math.max(1, slab.capacity()), slab.isDirect());
+    result.slabs.add(slab);
+    result.length = slab.capacity();
+    result.sealed = true;
+    return result;
+  }
+
+  public void write(int b) throws IOException {
+    ensureWritable();
+    current().put((byte) b);
+    length++;
+  }
+
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureWritable();
+    while (len > 0) {
+      ByteBuffer slab = current();
+      int n = Math.min(len, slab.remaining());
+      slab.put(b, off, n);
+      off += n;
+      len -= n;
+      length += n;
+    }
+  }
+
+  private void ensureWritable() throws IOException {
+    if (sealed) {
+      throw new IOException("Buffer is read-only");
+    }
+  }
+
+  /**
+   * @return last buffer of the chain adding a new one if it is full.
+   */
+  private ByteBuffer current() {
+    ByteBuffer slab = slabs.isEmpty() ? null : slabs.get(slabs.size() - 1);
+    if (slab == null || !slab.hasRemaining()) {
+      slab = direct ? ByteBuffer.allocateDirect(slabSize) : ByteBuffer.allocate(slabSize);
+      slabs.add(slab);
+    }
+    return slab;
+  }
+
+  public long length() {
+    return length;
+  }
+
+  public int read(long position, byte[] b, int off, int len) {
+    if (position >= length) {
+      return -1;
+    }
+    int index = (int) (position / slabSize);
+    int start = (int) (position % slabSize);
+    int n = (int) Math.min(len, Math.min(slabSize - start, length - position));
+    ByteBuffer slab = slabs.get(index).duplicate();
+    slab.clear();
+    slab.position(start);
+    slab.get(b, off, n);
+    return n;
+  }
+
+  /**
+   * Stops further writes and returns the data as read-only buffers, one for each element of the chain.
+   *
+   * @return buffers to be written e.g. with a gathering channel.
+   */
+  ByteBuffer[] toByteBuffers() {
+    sealed = true;
+    ByteBuffer[] result = new ByteBuffer[slabs.size()];
+    long remaining = length;
+    for (int i = 0; i < result.length; i++) {
+      ByteBuffer slab = slabs.get(i).duplicate();
+      slab.clear();
+      slab.limit((int) Math.min(slab.capacity(), remaining));
+      remaining -= slab.limit();
+      result[i] = slab.asReadOnlyBuffer();
+    }
+    return result;
+  }
+
+  /**
+   * Stops further writes and returns the data as a single read-only buffer. If the data spans more than one element
+   * of the chain they are joined once into a new buffer which replaces the chain.
+   */
+  ByteBuffer toByteBuffer() {
+    if (slabs.size() > 1) {
+      ByteBuffer joined = direct ? ByteBuffer.allocateDirect((int) length) : ByteBuffer.allocate((int) length);
+      ByteBuffer[] buffers = toByteBuffers();
+      for (int i = 0; i < buffers.length; i++) {
+        joined.put(buffers[i]);
+      }
+      joined.flip();
+      List<ByteBuffer> single = new ArrayList<ByteBuffer>(1);
+      single.add(joined);
+      slabs = single;
+      slabSize = Math.max(1, (int) length);
+    }
+    ByteBuffer[] buffers = toByteBuffers();
+    return buffers.length == 0 ? ByteBuffer.allocate(0).asReadOnlyBuffer() : buffers[0];
+  }
+
+  /**
+   * Writes all data to the given stream.
+   */
+  void writeTo(OutputStream out) throws IOException {
+    byte[] buf = new byte[8192];
+    ByteBuffer[] buffers = toByteBuffers();
+    for (int i = 0; i < buffers.length; i++) {
+      ByteBuffer slab = buffers[i];
+      while (slab.hasRemaining()) {
+        int n = Math.min(buf.length, slab.remaining());
+        slab.get(buf, 0, n);
+        out.write(buf, 0, n);
+      }
+    }
+  }
+
+  /**
+   * Writes all data to the given channel without copying it.
+   */
+  void writeTo(WritableByteChannel channel) throws IOException {
+    ByteBuffer[] buffers = toByteBuffers();
+    for (int i = 0; i < buffers.length; i++) {
+      while (buffers[i].hasRemaining()) {
+        channel.write(buffers[i]);
+      }
+    }
+  }
+
+  /**
+   * Does nothing as the buffers are released by the garbage collector.
+   */
+  public void close() {
+  }
+
+  public String toString() {
+    return "SlabBuffer[" + length + " bytes]";
+  }
+
+}
@@ -0,0 +1,194 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.zeroturnaround.zip.transform.ZipEntryTransformer;
+import org.zeroturnaround.zip.transform.ZipEntryTransformerChain;
+import org.zeroturnaround.zip.transform.ZipEntryTransformerEntry;
+
+/**
+ * Finds the transformers of ZIP entries registered by exact paths or by {@link ZipEntryPattern}s.
+ * <p>
+ * Exact paths are kept in a hash map. Patterns are indexed by their literal prefix in a trie and, if they have no
+ * prefix, by their literal suffix in a trie of reversed suffixes. Looking up a name walks both tries once so it only
+ * depends on the length of the name. Only the regular expressions without a literal prefix are tried one by one.
+ * Several transformers matching the same entry are chained in the order they were registered.
+ */
+final class TransformerIndex {
+
+  private static final Comparator<Registration> ORDER = new Comparator<Registration>() {
+    public int compare(Registration o1, Registration o2) {
+      return o1.order < o2.order ? -1 : (o1.order == o2.order ? 0 : 1);
+    }
+  };
+
+  private final Map<String, List<Registration>> exact = new HashMap<String, List<Registration>>();
+  private final Node prefixes = new Node();
+  private final Node suffixes = new Node();
+  private final List<Registration> others = new ArrayList<Registration>();
+  private final int size;
+  private boolean found;
+
+  TransformerIndex(List<ZipEntryTransformerEntry> entries) {
+    int order = 0;
+    for (ZipEntryTransformerEntry entry : entries) {
+      ZipEntryPattern pattern = entry.getPattern();
+      Registration r = new Registration(order++, pattern, entry.getTransformer());
+      if (pattern == null || pattern.isLiteral()) {
+        String path = pattern == null ? entry.getPath() : pattern.prefix;
+        List<Registration> list = exact.get(path);
+        if (list == null) {
+          list = new ArrayList<Registration>(1);
+          exact.put(path, list);
+        }
+        list.add(r);
+      }
+      else if (pattern.prefix.length() > 0) {
+        prefixes.add(pattern.prefix, false).registrations.add(r);
+      }
+      else if (pattern.regex == null && pattern.suffix.length() > 0) {
+        suffixes.add(pattern.suffix, true).registrations.add(r);
+      }
+      else {
+        others.add(r);
+      }
+    }
+    size = order;
+  }
+
+  /**
+   * @return <code>true</code> if no transformers are registered.
+   */
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return <code>true</code> if a transformer has been returned for at least one entry.
+   */
+  boolean found() {
+    return found;
+  }
+
+  /**
+   * @param name entry name.
+   * @return transformer of the given entry or <code>null</code> if none matches.
+   */
+  ZipEntryTransformer get(String name) {
+    List<Registration> matched = null;
+    List<Registration> list = exact.get(name);
+    if (list != null) {
+      matched = new ArrayList<Registration>(list);
+    }
+    matched = collect(prefixes, name, false, matched);
+    matched = collect(suffixes, name, true, matched);
+    for (Registration r : others) {
+      matched = addIfMatches(r, name, matched);
+    }
+
+    if (matched == null) {
+      return null;
+    }
+    found = true;
+    if (matched.size() == 1) {
+      return matched.get(0).transformer;
+    }
+    Collections.sort(matched, ORDER);
+    List<ZipEntryTransformer> transformers = new ArrayList<ZipEntryTransformer>(matched.size());
+    for (Registration r : matched) {
+      transformers.add(r.transformer);
+    }
+    return new ZipEntryTransformerChain(transformers);
+  }
+
+  /**
+   * Walks the trie along the name collecting the registrations which match.
+   */
+  private static List<Registration> collect(Node root, String name, boolean reverse, List<Registration> matched) {
+    Node node = root;
+    int length = name.length();
+    for (int i = 0; i < length && node.children != null; i++) {
+      node = node.children.get(Character.valueOf(name.charAt(reverse ? length - 1 - i : i)));
+      if (node == null) {
+        break;
+      }
+      for (Registration r : node.registrations) {
+        matched = addIfMatches(r, name, matched);
+      }
+    }
+    return matched;
+  }
+
+  private static List<Registration> addIfMatches(Registration r, String name, List<Registration> matched) {
+    if (r.pattern.matches(name)) {
+      if (matched == null) {
+        matched = new ArrayList<Registration>(2);
+      }
+      matched.add(r);
+    }
+    return matched;
+  }
+
+  private static class Registration {
+
+    final int order;
+    final ZipEntryPattern pattern;
+    final ZipEntryTransformer transformer;
+
+    Registration(int order, ZipEntryPattern pattern, ZipEntryTransformer transformer) {
+      this.order = order;
+      this.pattern = pattern;
+      this.transformer = transformer;
+    }
+
+  }
+
+  private static class Node {
+
+    Map<Character, Node> children;
+    final List<Registration> registrations = new ArrayList<Registration>(1);
+
+    /**
+     * @return node of the given key creating it if needed.
+     */
+    Node add(String key, boolean reverse) {
+      Node node = this;
+      int length = key.length();
+      for (int i = 0; i < length; i++) {
+        Character c = Character.valueOf(key.charAt(reverse ? length - 1 - i : i));
+        if (node.children == null) {
+          node.children = new HashMap<Character, Node>(4);
+        }
+        Node child = node.children.get(c);
+        if (child == null) {
+          child = new Node();
+          node.children.put(c, child);
+        }
+        node = child;
+      }
+      return node;
+    }
+
+  }
+
+}
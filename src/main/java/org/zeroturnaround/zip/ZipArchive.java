@@ -0,0 +1,566 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.extra.ZipLong;
+import org.zeroturnaround.zip.extra.ZipShort;
+
+/**
+ * Read-only view of a ZIP file based on its central directory.
+ * <p>
+ * In addition to what {@link java.util.zip.ZipFile} offers it gives access to the compressed data of each entry
+ * so it can be copied into another archive with {@link RawZipOutputStream} without decompressing and compressing
+ * it again. The data is read through a {@link RangeReader} using positional reads so a single instance may be used
+ * by several threads at once and only the needed parts of a remote archive are fetched.
+ *
+ * @see ZipArchiveEntry
+ */
+final class ZipArchive implements Closeable {
+
+  static final long LFH_SIG = 0x04034b50L;
+  static final long CFH_SIG = 0x02014b50L;
+  static final long DD_SIG = 0x08074b50L;
+  static final long EOCD_SIG = 0x06054b50L;
+  static final long ZIP64_EOCD_SIG = 0x06064b50L;
+  static final long ZIP64_LOCATOR_SIG = 0x07064b50L;
+
+  static final int LFH_LEN = 30;
+  static final int CFH_LEN = 46;
+  static final int EOCD_LEN = 22;
+  static final int ZIP64_LOCATOR_LEN = 20;
+
+  static final int ZIP64_EXTRA_ID = 0x0001;
+  static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+  static final int ZIP64_MAGIC_SHORT = 0xFFFF;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final int MAX_COMMENT_LEN = 0xFFFF;
+  private static final int SHORT_COMMENT_LEN = 1024;
+
+  private final File file;
+  private final String description;
+  private final RangeReader reader;
+  private final boolean closeReader;
+  private final List<ZipArchiveEntry> entries;
+  private final Map<String, ZipArchiveEntry> entriesByName;
+  private final String comment;
+
+  private ZipArchive(File file, String description, RangeReader reader, boolean closeReader, Charset charset) throws IOException {
+    this.file = file;
+    this.description = description;
+    this.reader = reader;
+    this.closeReader = closeReader;
+    try {
+      CentralDirectory cd = readCentralDirectory(charset == null ? UTF8 : charset);
+      this.entries = Collections.unmodifiableList(cd.entries);
+      this.comment = cd.comment;
+      this.entriesByName = new HashMap<String, ZipArchiveEntry>(cd.entries.size() * 4 / 3 + 1);
+      for (ZipArchiveEntry e : cd.entries) {
+        if (!entriesByName.containsKey(e.name)) {
+          entriesByName.put(e.name, e);
+        }
+      }
+    }
+    catch (IOException e) {
+      close();
+      throw e;
+    }
+    catch (RuntimeException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens the given ZIP file. Entry names which are not flagged as UTF-8 are decoded using UTF-8.
+   *
+   * @param file ZIP file.
+   * @return archive to be closed by the caller.
+   * @throws IOException if the file could not be read or is not a ZIP file.
+   */
+  static ZipArchive open(File file) throws IOException {
+    return open(file, null);
+  }
+
+  /**
+   * Opens the given ZIP file.
+   *
+   * @param file ZIP file.
+   * @param charset charset for entry names which are not flagged as UTF-8, <code>null</code> means UTF-8.
+   * @return archive to be closed by the caller.
+   * @throws IOException if the file could not be read or is not a ZIP file.
+   */
+  static ZipArchive open(File file, Charset charset) throws IOException {
+    return new ZipArchive(file, file.toString(), new FileRangeReader(file), true, charset);
+  }
+
+  /**
+   * @return the ZIP file or <code>null</code> if the archive was opened from a channel.
+   */
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * @return all records of the central directory in their original order (including duplicates).
+   */
+  List<ZipArchiveEntry> entries() {
+    return entries;
+  }
+
+  /**
+   * @return first entry with the given name or <code>null</code> if not found.
+   */
+  ZipArchiveEntry getEntry(String name) {
+    return entriesByName.get(name);
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return archive comment or <code>null</code> if it has none.
+   */
+  String getComment() {
+    return comment;
+  }
+
+  /**
+   * Opens a ZIP file using the given channel. The channel is not closed when the archive is closed and its
+   * position is not changed.
+   *
+   * @param channel channel of the ZIP file.
+   * @param charset charset for entry names which are not flagged as UTF-8, <code>null</code> means UTF-8.
+   * @return archive to be closed by the caller.
+   * @throws IOException if the channel could not be read or does not contain a ZIP file.
+   */
+  static ZipArchive open(FileChannel channel, Charset charset) throws IOException {
+    return new ZipArchive(null, channel.toString(), new FileRangeReader(channel), false, charset);
+  }
+
+  /**
+   * Opens a ZIP file using the given reader. The reader is not closed when the archive is closed.
+   *
+   * @param reader reader of the ZIP file.
+   * @param charset charset for entry names which are not flagged as UTF-8, <code>null</code> means UTF-8.
+   * @return archive to be closed by the caller.
+   * @throws IOException if the reader fails or the data is not a ZIP file.
+   */
+  static ZipArchive open(RangeReader reader, Charset charset) throws IOException {
+    return open(reader, charset, false);
+  }
+
+  /**
+   * Opens a ZIP file using the given reader.
+   *
+   * @param reader reader of the ZIP file.
+   * @param charset charset for entry names which are not flagged as UTF-8, <code>null</code> means UTF-8.
+   * @param closeReader <code>true</code> if the reader is closed when the archive is closed (or fails to open).
+   * @return archive to be closed by the caller.
+   * @throws IOException if the reader fails or the data is not a ZIP file.
+   */
+  static ZipArchive open(RangeReader reader, Charset charset, boolean closeReader) throws IOException {
+    return new ZipArchive(null, reader.toString(), reader, closeReader, charset);
+  }
+
+  /**
+   * @return stream of the compressed data of the given entry.
+   */
+  InputStream getRawInputStream(ZipArchiveEntry entry) throws IOException {
+    return new RangeInputStream(dataOffset(entry), entry.compressedSize);
+  }
+
+  /**
+   * Reads the compressed data of the given entry starting from the given position within the data.
+   *
+   * @return number of bytes read or <code>-1</code> if the position is at the end of the data.
+   */
+  int readData(ZipArchiveEntry entry, long position, byte[] b, int off, int len) throws IOException {
+    long remaining = entry.compressedSize - position;
+    if (remaining <= 0) {
+      return -1;
+    }
+    int n = reader.read(dataOffset(entry) + position, b, off, (int) Math.min(len, remaining));
+    if (n < 0) {
+      throw new EOFException("Unexpected end of ZIP file " + description);
+    }
+    return n;
+  }
+
+  /**
+   * @return stream of the decompressed data of the given entry.
+   */
+  InputStream getInputStream(ZipArchiveEntry entry) throws IOException {
+    return getInputStream(entry, null);
+  }
+
+  /**
+   * @param pool pool of inflaters to use or <code>null</code> for creating a new inflater.
+   * @return stream of the decompressed data of the given entry.
+   */
+  InputStream getInputStream(ZipArchiveEntry entry, InflaterPool pool) throws IOException {
+    InputStream raw = getRawInputStream(entry);
+    if (entry.method == ZipEntry.STORED) {
+      return raw;
+    }
+    if (entry.method == ZipEntry.DEFLATED) {
+      return new EntryInflaterInputStream(raw, pool);
+    }
+    raw.close();
+    throw new java.util.zip.ZipException("Unsupported compression method " + entry.method + " of entry " + entry.name);
+  }
+
+  /**
+   * @return local header extra field of the given entry without the ZIP64 field.
+   */
+  byte[] getLocalExtra(ZipArchiveEntry entry) throws IOException {
+    dataOffset(entry);
+    return entry.localExtra;
+  }
+
+  /**
+   * Closes the underlying file unless the archive was opened from a channel or a reader.
+   */
+  public void close() throws IOException {
+    if (closeReader) {
+      reader.close();
+    }
+  }
+
+  /**
+   * Resolves the offset of the entry data by reading its local header.
+   */
+  private long dataOffset(ZipArchiveEntry entry) throws IOException {
+    long result = entry.dataOffset;
+    if (result == -1) {
+      byte[] header = new byte[LFH_LEN];
+      readFully(entry.localHeaderOffset, header, 0, LFH_LEN);
+      if (ZipLong.getValue(header, 0) != LFH_SIG) {
+        throw new java.util.zip.ZipException("Invalid local header of entry " + entry.name);
+      }
+      int nameLen = ZipShort.getValue(header, 26);
+      int extraLen = ZipShort.getValue(header, 28);
+      byte[] extra = new byte[extraLen];
+      readFully(entry.localHeaderOffset + LFH_LEN + nameLen, extra, 0, extraLen);
+      entry.localExtra = removeExtraField(extra, ZIP64_EXTRA_ID);
+      result = entry.localHeaderOffset + LFH_LEN + nameLen + extraLen;
+      entry.dataOffset = result;
+    }
+    return result;
+  }
+
+  void readFully(long position, byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      int n = reader.read(position, b, off, len);
+      if (n < 0) {
+        throw new EOFException("Unexpected end of ZIP file " + description);
+      }
+      position += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  private static class CentralDirectory {
+    List<ZipArchiveEntry> entries;
+    String comment;
+  }
+
+  private CentralDirectory readCentralDirectory(Charset charset) throws IOException {
+    long length = reader.length();
+    // Most archives have no comment so try a short tail first to keep remote reads small
+    int tailLen = (int) Math.min(length, EOCD_LEN + SHORT_COMMENT_LEN);
+    byte[] tail = new byte[tailLen];
+    readFully(length - tailLen, tail, 0, tailLen);
+    int eocd = findEndOfCentralDirectory(tail);
+    if (eocd == -1 && tailLen < length) {
+      tailLen = (int) Math.min(length, EOCD_LEN + MAX_COMMENT_LEN);
+      tail = new byte[tailLen];
+      readFully(length - tailLen, tail, 0, tailLen);
+      eocd = findEndOfCentralDirectory(tail);
+    }
+    if (eocd == -1) {
+      throw new java.util.zip.ZipException("End of central directory not found in " + description);
+    }
+    long eocdPos = length - tailLen + eocd;
+
+    long count = ZipShort.getValue(tail, eocd + 10);
+    long cdSize = ZipLong.getValue(tail, eocd + 12);
+    long cdOffset = ZipLong.getValue(tail, eocd + 16);
+    int commentLen = Math.min(ZipShort.getValue(tail, eocd + 20), tailLen - eocd - EOCD_LEN);
+    String archiveComment = null;
+    if (commentLen > 0) {
+      archiveComment = new String(tail, eocd + EOCD_LEN, commentLen, charset);
+    }
+
+    long cdEnd = eocdPos;
+    if (count == ZIP64_MAGIC_SHORT || cdSize == ZIP64_MAGIC || cdOffset == ZIP64_MAGIC) {
+      long locatorPos = eocdPos - ZIP64_LOCATOR_LEN;
+      if (locatorPos >= 0) {
+        byte[] locator = new byte[ZIP64_LOCATOR_LEN];
+        readFully(locatorPos, locator, 0, ZIP64_LOCATOR_LEN);
+        if (ZipLong.getValue(locator, 0) == ZIP64_LOCATOR_SIG) {
+          long zip64EocdPos = getLong(locator, 8);
+          byte[] zip64Eocd = new byte[56];
+          readFully(zip64EocdPos, zip64Eocd, 0, zip64Eocd.length);
+          if (ZipLong.getValue(zip64Eocd, 0) != ZIP64_EOCD_SIG) {
+            throw new java.util.zip.ZipException("Invalid ZIP64 end of central directory in " + description);
+          }
+          count = getLong(zip64Eocd, 32);
+          cdSize = getLong(zip64Eocd, 40);
+          cdOffset = getLong(zip64Eocd, 48);
+          cdEnd = zip64EocdPos;
+        }
+      }
+    }
+
+    // Data prepended to the archive (e.g. self-extracting stub) shifts all offsets
+    long shift = cdEnd - cdSize - cdOffset;
+    if (shift < 0) {
+      throw new java.util.zip.ZipException("Invalid central directory offset in " + description);
+    }
+    if (cdSize > Integer.MAX_VALUE) {
+      throw new java.util.zip.ZipException("Central directory too large in " + description);
+    }
+
+    byte[] cd = new byte[(int) cdSize];
+    readFully(cdOffset + shift, cd, 0, cd.length);
+
+    List<ZipArchiveEntry> result = new ArrayList<ZipArchiveEntry>((int) Math.min(count, 1 << 20));
+    int pos = 0;
+    while (pos + CFH_LEN <= cd.length && ZipLong.getValue(cd, pos) == CFH_SIG) {
+      int versionMadeBy = ZipShort.getValue(cd, pos + 4);
+      int versionNeeded = ZipShort.getValue(cd, pos + 6);
+      int flags = ZipShort.getValue(cd, pos + 8);
+      int method = ZipShort.getValue(cd, pos + 10);
+      long dosTime = ZipLong.getValue(cd, pos + 12);
+      long crc = ZipLong.getValue(cd, pos + 16);
+      long compressedSize = ZipLong.getValue(cd, pos + 20);
+      long size = ZipLong.getValue(cd, pos + 24);
+      int nameLen = ZipShort.getValue(cd, pos + 28);
+      int extraLen = ZipShort.getValue(cd, pos + 30);
+      int commentLen2 = ZipShort.getValue(cd, pos + 32);
+      int internalAttributes = ZipShort.getValue(cd, pos + 36);
+      long externalAttributes = ZipLong.getValue(cd, pos + 38);
+      long offset = ZipLong.getValue(cd, pos + 42);
+      pos += CFH_LEN;
+      if (pos + nameLen + extraLen + commentLen2 > cd.length) {
+        throw new java.util.zip.ZipException("Invalid central directory in " + description);
+      }
+
+      byte[] rawName = copyOfRange(cd, pos, nameLen);
+      pos += nameLen;
+      byte[] extra = copyOfRange(cd, pos, extraLen);
+      pos += extraLen;
+      byte[] rawComment = copyOfRange(cd, pos, commentLen2);
+      pos += commentLen2;
+
+      Charset cs = (flags & ZipArchiveEntry.FLAG_UTF8) != 0 ? UTF8 : charset;
+      String name = new String(rawName, cs);
+      String entryComment = commentLen2 == 0 ? null : new String(rawComment, cs);
+
+      // Real values are in the ZIP64 extra field in this order
+      if (size == ZIP64_MAGIC || compressedSize == ZIP64_MAGIC || offset == ZIP64_MAGIC) {
+        int field = findExtraField(extra, ZIP64_EXTRA_ID);
+        if (field != -1) {
+          int p = field + 4;
+          int end = p + ZipShort.getValue(extra, field + 2);
+          if (size == ZIP64_MAGIC && p + 8 <= end) {
+            size = getLong(extra, p);
+            p += 8;
+          }
+          if (compressedSize == ZIP64_MAGIC && p + 8 <= end) {
+            compressedSize = getLong(extra, p);
+            p += 8;
+          }
+          if (offset == ZIP64_MAGIC && p + 8 <= end) {
+            offset = getLong(extra, p);
+          }
+        }
+      }
+
+      result.add(new ZipArchiveEntry(name, rawName, versionMadeBy, versionNeeded, flags, method, dosTime, crc,
+          compressedSize, size, removeExtraField(extra, ZIP64_EXTRA_ID), entryComment, rawComment,
+          internalAttributes, externalAttributes, offset + shift));
+    }
+
+    CentralDirectory result2 = new CentralDirectory();
+    result2.entries = result;
+    result2.comment = archiveComment;
+    return result2;
+  }
+
+  private static int findEndOfCentralDirectory(byte[] tail) {
+    for (int i = tail.length - EOCD_LEN; i >= 0; i--) {
+      if (tail[i] == 0x50 && tail[i + 1] == 0x4b && ZipLong.getValue(tail, i) == EOCD_SIG) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static byte[] copyOfRange(byte[] b, int off, int len) {
+    byte[] result = new byte[len];
+    System.arraycopy(b, off, result, 0, len);
+    return result;
+  }
+
+  static long getLong(byte[] b, int off) {
+    return ZipLong.getValue(b, off) | (ZipLong.getValue(b, off + 4) << 32);
+  }
+
+  /**
+   * @return index of the header of the given extra field or -1 if not found.
+   */
+  static int findExtraField(byte[] extra, int id) {
+    int pos = 0;
+    while (pos + 4 <= extra.length) {
+      int len = ZipShort.getValue(extra, pos + 2);
+      if (ZipShort.getValue(extra, pos) == id) {
+        return pos;
+      }
+      pos += 4 + len;
+    }
+    return -1;
+  }
+
+  /**
+   * @return the given extra field data without the field with the given id.
+   */
+  static byte[] removeExtraField(byte[] extra, int id) {
+    int field = findExtraField(extra, id);
+    if (field == -1) {
+      return extra;
+    }
+    int len = Math.min(4 + ZipShort.getValue(extra, field + 2), extra.length - field);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(extra.length - len);
+    out.write(extra, 0, field);
+    out.write(extra, field + len, extra.length - field - len);
+    return out.toByteArray();
+  }
+
+  public String toString() {
+    return "ZipArchive[" + description + "]";
+  }
+
+  /**
+   * Reads a range of the file using positional reads.
+   */
+  private class RangeInputStream extends InputStream {
+
+    private long position;
+    private final long end;
+
+    RangeInputStream(long start, long length) {
+      this.position = start;
+      this.end = start + length;
+    }
+
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      int n = read(b, 0, 1);
+      return n == -1 ? -1 : b[0] & 0xff;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      long remaining = end - position;
+      if (remaining <= 0) {
+        return -1;
+      }
+      int n = reader.read(position, b, off, (int) Math.min(len, remaining));
+      if (n < 0) {
+        throw new EOFException("Unexpected end of ZIP file " + description);
+      }
+      position += n;
+      return n;
+    }
+
+    public long skip(long n) {
+      long skipped = Math.max(0, Math.min(n, end - position));
+      position += skipped;
+      return skipped;
+    }
+
+    public int available() {
+      return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+  }
+
+  /**
+   * Inflates raw DEFLATE data and releases the inflater when closed.
+   */
+  private static class EntryInflaterInputStream extends InflaterInputStream {
+
+    private final InflaterPool pool;
+    private boolean eof;
+    private boolean closed;
+
+    EntryInflaterInputStream(InputStream raw, InflaterPool pool) {
+      super(raw, pool == null ? new Inflater(true) : pool.acquire(), 8192);
+      this.pool = pool;
+    }
+
+    protected void fill() throws IOException {
+      if (eof) {
+        throw new EOFException("Unexpected end of ZLIB input stream");
+      }
+      len = in.read(buf, 0, buf.length);
+      if (len == -1) {
+        // Inflater needs an extra dummy byte when using the 'nowrap' option
+        buf[0] = 0;
+        len = 1;
+        eof = true;
+      }
+      inf.setInput(buf, 0, len);
+    }
+
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        if (pool == null) {
+          inf.end();
+        }
+        else {
+          pool.release(inf);
+        }
+        in.close();
+      }
+    }
+  }
+
+}
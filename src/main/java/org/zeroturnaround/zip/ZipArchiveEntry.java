@@ -0,0 +1,164 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.util.Calendar;
+import java.util.zip.ZipEntry;
+
+/**
+ * A central directory record of a ZIP archive.
+ * <p>
+ * Unlike {@link ZipEntry} it keeps everything needed for copying the entry into another archive without
+ * decompressing it: the raw name, flags, attributes and the position of the entry in the archive.
+ *
+ * @see ZipArchive
+ * @see RawZipOutputStream
+ */
+final class ZipArchiveEntry {
+
+  /** General purpose flag: sizes and CRC are stored in a data descriptor after the data. */
+  static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+
+  /** General purpose flag: name and comment are encoded in UTF-8. */
+  static final int FLAG_UTF8 = 1 << 11;
+
+  final String name;
+  final byte[] rawName;
+  final int versionMadeBy;
+  final int versionNeeded;
+  final int flags;
+  final int method;
+  final long dosTime;
+  final long crc;
+  final long compressedSize;
+  final long size;
+  /** Central directory extra field without the ZIP64 field. */
+  final byte[] extra;
+  final String comment;
+  final byte[] rawComment;
+  final int internalAttributes;
+  final long externalAttributes;
+  final long localHeaderOffset;
+
+  /**
+   * Local header extra field (without the ZIP64 field) and the offset of the data, resolved lazily.
+   */
+  volatile byte[] localExtra;
+  volatile long dataOffset = -1;
+
+  ZipArchiveEntry(String name, byte[] rawName, int versionMadeBy, int versionNeeded, int flags, int method, long dosTime,
+      long crc, long compressedSize, long size, byte[] extra, String comment, byte[] rawComment, int internalAttributes,
+      long externalAttributes, long localHeaderOffset) {
+    this.name = name;
+    this.rawName = rawName;
+    this.versionMadeBy = versionMadeBy;
+    this.versionNeeded = versionNeeded;
+    this.flags = flags;
+    this.method = method;
+    this.dosTime = dosTime;
+    this.crc = crc;
+    this.compressedSize = compressedSize;
+    this.size = size;
+    this.extra = extra;
+    this.comment = comment;
+    this.rawComment = rawComment;
+    this.internalAttributes = internalAttributes;
+    this.externalAttributes = externalAttributes;
+    this.localHeaderOffset = localHeaderOffset;
+  }
+
+  /**
+   * @return copy of this record with the given name and local header offset.
+   */
+  ZipArchiveEntry relocate(String newName, byte[] newRawName, int newFlags, long newOffset) {
+    ZipArchiveEntry copy = new ZipArchiveEntry(newName, newRawName, versionMadeBy, versionNeeded, newFlags, method, dosTime,
+        crc, compressedSize, size, extra, comment, rawComment, internalAttributes, externalAttributes, newOffset);
+    copy.localExtra = localExtra;
+    return copy;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  boolean isDirectory() {
+    return name.endsWith("/");
+  }
+
+  /**
+   * @return meta-data of this record as a new {@link ZipEntry}.
+   */
+  ZipEntry toZipEntry() {
+    return toZipEntry(name);
+  }
+
+  /**
+   * @return meta-data of this record as a new {@link ZipEntry} with the given name.
+   */
+  ZipEntry toZipEntry(String entryName) {
+    ZipEntry entry = new ZipEntry(entryName);
+    entry.setMethod(method);
+    entry.setTime(dosToJavaTime(dosTime));
+    entry.setCrc(crc);
+    entry.setSize(size);
+    entry.setCompressedSize(compressedSize);
+    if (extra.length > 0) {
+      entry.setExtra(extra);
+    }
+    if (comment != null) {
+      entry.setComment(comment);
+    }
+    return entry;
+  }
+
+  public String toString() {
+    return name;
+  }
+
+  /**
+   * Converts MS-DOS date and time into Java time.
+   */
+  static long dosToJavaTime(long dosTime) {
+    Calendar cal = Calendar.getInstance();
+    cal.clear();
+    cal.set((int) ((dosTime >> 25) & 0x7f) + 1980,
+        (int) ((dosTime >> 21) & 0x0f) - 1,
+        (int) (dosTime >> 16) & 0x1f,
+        (int) (dosTime >> 11) & 0x1f,
+        (int) (dosTime >> 5) & 0x3f,
+        (int) (dosTime << 1) & 0x3e);
+    return cal.getTimeInMillis();
+  }
+
+  /**
+   * Converts Java time into MS-DOS date and time.
+   */
+  static long javaToDosTime(long time) {
+    Calendar cal = Calendar.getInstance();
+    cal.setTimeInMillis(time);
+    int year = cal.get(Calendar.YEAR);
+    if (year < 1980) {
+      return (1 << 21) | (1 << 16);
+    }
+    return (long) (year - 1980) << 25
+        | (cal.get(Calendar.MONTH) + 1) << 21
+        | cal.get(Calendar.DAY_OF_MONTH) << 16
+        | cal.get(Calendar.HOUR_OF_DAY) << 11
+        | cal.get(Calendar.MINUTE) << 5
+        | cal.get(Calendar.SECOND) >> 1;
+  }
+
+}
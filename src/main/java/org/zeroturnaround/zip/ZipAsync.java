@@ -0,0 +1,167 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import org.zeroturnaround.zip.transform.ZipEntryTransformerEntry;
+
+/**
+ * Runs the long {@link ZipUtil} operations on an executor without blocking the calling thread.
+ * <p>
+ * Each method submits the operation to the given executor and returns a {@link ZipTask} right away. The task tells
+ * how many entries were reached so far and can be cancelled, which stops it before the next entry. The optional
+ * {@link ZipProgressListener} is called before each entry and once the task is finished.
+ * </p>
+ *
+ * <pre>
+ * ZipTask&lt;Void&gt; task = ZipAsync.unpack(zip, dir, executor, listener);
+ * ...
+ * task.cancel(true);
+ * </pre>
+ */
+public final class ZipAsync {
+
+  private ZipAsync() {
+  }
+
+  /**
+   * @see ZipUtil#pack(File, File)
+   */
+  public static ZipTask<Void> pack(final File rootDir, final File zip, Executor executor, ZipProgressListener listener) {
+    return submit(new Callable<Void>() {
+      public Void call() {
+        ZipUtil.pack(rootDir, zip);
+        return null;
+      }
+    }, executor, listener);
+  }
+
+  /**
+   * @see ZipUtil#pack(ZipEntrySource[], File)
+   */
+  public static ZipTask<Void> pack(final ZipEntrySource[] entries, final File zip, Executor executor, ZipProgressListener listener) {
+    return submit(new Callable<Void>() {
+      public Void call() {
+        ZipUtil.pack(entries, zip);
+        return null;
+      }
+    }, executor, listener);
+  }
+
+  /**
+   * @see ZipUtil#unpack(File, File)
+   */
+  public static ZipTask<Void> unpack(final File zip, final File outputDir, Executor executor, ZipProgressListener listener) {
+    return submit(new Callable<Void>() {
+      public Void call() {
+        ZipUtil.unpack(zip, outputDir);
+        return null;
+      }
+    }, executor, listener);
+  }
+
+  /**
+   * @see ZipUtil#repack(File, File, int)
+   */
+  public static ZipTask<Void> repack(final File srcZip, final File dstZip, final int compressionLevel, Executor executor,
+      ZipProgressListener listener) {
+    return submit(new Callable<Void>() {
+      public Void call() {
+        ZipUtil.repack(srcZip, dstZip, compressionLevel);
+        return null;
+      }
+    }, executor, listener);
+  }
+
+  /**
+   * @see ZipUtil#addEntries(File, ZipEntrySource[], File)
+   */
+  public static ZipTask<Void> addEntries(final File zip, final ZipEntrySource[] entries, final File destZip, Executor executor,
+      ZipProgressListener listener) {
+    return submit(new Callable<Void>() {
+      public Void call() {
+        ZipUtil.addEntries(zip, entries, destZip);
+        return null;
+      }
+    }, executor, listener);
+  }
+
+  /**
+   * @see ZipUtil#removeEntries(File, String[], File)
+   */
+  public static ZipTask<Void> removeEntries(final File zip, final String[] paths, final File destZip, Executor executor,
+      ZipProgressListener listener) {
+    return submit(new Callable<Void>() {
+      public Void call() {
+        ZipUtil.removeEntries(zip, paths, destZip);
+        return null;
+      }
+    }, executor, listener);
+  }
+
+  /**
+   * @see ZipUtil#replaceEntries(File, ZipEntrySource[], File)
+   */
+  public static ZipTask<Boolean> replaceEntries(final File zip, final ZipEntrySource[] entries, final File destZip,
+      Executor executor, ZipProgressListener listener) {
+    return submit(new Callable<Boolean>() {
+      public Boolean call() {
+        return Boolean.valueOf(ZipUtil.replaceEntries(zip, entries, destZip));
+      }
+    }, executor, listener);
+  }
+
+  /**
+   * @see ZipUtil#transformEntries(File, ZipEntryTransformerEntry[], File)
+   */
+  public static ZipTask<Boolean> transformEntries(final File zip, final ZipEntryTransformerEntry[] entries, final File destZip,
+      Executor executor, ZipProgressListener listener) {
+    return submit(new Callable<Boolean>() {
+      public Boolean call() {
+        return Boolean.valueOf(ZipUtil.transformEntries(zip, entries, destZip));
+      }
+    }, executor, listener);
+  }
+
+  /**
+   * @see ZipUtil#archiveEquals(File, File)
+   */
+  public static ZipTask<Boolean> archiveEquals(final File f1, final File f2, Executor executor, ZipProgressListener listener) {
+    return submit(new Callable<Boolean>() {
+      public Boolean call() {
+        return Boolean.valueOf(ZipUtil.archiveEquals(f1, f2));
+      }
+    }, executor, listener);
+  }
+
+  /**
+   * Submits the operation to the executor.
+   *
+   * @param listener listener to notify or <code>null</code>.
+   */
+  private static <T> ZipTask<T> submit(Callable<T> operation, Executor executor, ZipProgressListener listener) {
+    if (executor == null) {
+      throw new IllegalArgumentException("Executor must not be null");
+    }
+    ZipTask<T> task = new ZipTask<T>(operation, listener);
+    executor.execute(task);
+    return task;
+  }
+
+}
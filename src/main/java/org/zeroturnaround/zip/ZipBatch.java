@@ -0,0 +1,344 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs many ZIP jobs, such as {@link Zips} or {@link ZipUtil} operations, on shared threads.
+ * <p>
+ * Jobs are run in two lanes with separate threads: {@link Lane#IO} for jobs that mostly copy data and
+ * {@link Lane#CPU} for jobs that compress or transform it. The number of threads of each lane and the total number of
+ * jobs running at a time are limited. Within a lane, jobs with smaller inputs are started first so that small
+ * archives do not wait behind large ones. Jobs of a similar size (within a factor of two) are started in the order
+ * they were submitted.
+ * </p>
+ * <p>
+ * The counters of submitted, completed and failed jobs and of the processed bytes can be read at any time, e.g. for
+ * reporting progress. A failed job does not affect the others, its exception is available from its {@link Future}.
+ * </p>
+ *
+ * <pre>
+ * ZipBatch batch = new ZipBatch();
+ * try {
+ *   for (File zip : zips) {
+ *     batch.submit(Zips.get(zip).removeEntry("docs/readme.txt"));
+ *   }
+ *   batch.awaitCompletion();
+ * }
+ * finally {
+ *   batch.shutdown();
+ * }
+ * </pre>
+ */
+public final class ZipBatch {
+
+  /**
+   * Kind of work a job mostly does.
+   */
+  public enum Lane {
+    /** Copying, unpacking or otherwise I/O bound jobs. */
+    IO,
+    /** Compressing, transforming or otherwise CPU bound jobs. */
+    CPU
+  }
+
+  // Use / instead of . to work around an issue with Maven Shade Plugin
+  private static final Logger log = LoggerFactory.getLogger("org/zeroturnaround/zip/ZipBatch".replace('/', '.')); // NOSONAR
+
+  private final ThreadPoolExecutor ioLane;
+  private final ThreadPoolExecutor cpuLane;
+  private final Semaphore permits;
+  private final AtomicInteger running = new AtomicInteger();
+
+  private long sequence;
+  private long submittedCount;
+  private long completedCount;
+  private long failedCount;
+  private long submittedBytes;
+  private long processedBytes;
+
+  /**
+   * Creates a batch with one CPU thread per processor, twice as many I/O threads and no further limit on the
+   * number of running jobs.
+   */
+  public ZipBatch() {
+    this(2 * Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(), Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param ioThreads number of threads running the {@link Lane#IO} jobs.
+   * @param cpuThreads number of threads running the {@link Lane#CPU} jobs.
+   * @param maxRunning maximum number of jobs running at a time in both lanes together.
+   */
+  public ZipBatch(int ioThreads, int cpuThreads, int maxRunning) {
+    if (ioThreads <= 0 || cpuThreads <= 0 || maxRunning <= 0) {
+      throw new IllegalArgumentException("Invalid limits: ioThreads=" + ioThreads + ", cpuThreads=" + cpuThreads
+          + ", maxRunning=" + maxRunning);
+    }
+    this.ioLane = createLane(Lane.IO, ioThreads);
+    this.cpuLane = createLane(Lane.CPU, cpuThreads);
+    this.permits = new Semaphore(maxRunning);
+  }
+
+  private static ThreadPoolExecutor createLane(final Lane lane, int threads) {
+    final AtomicInteger count = new AtomicInteger();
+    ThreadFactory factory = new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "zt-zip-batch-" + lane.name().toLowerCase() + "-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    };
+    return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), factory);
+  }
+
+  /**
+   * Submits a {@link Zips} job to the {@link Lane#CPU} lane.
+   *
+   * @param zips job to run with {@link Zips#process()}.
+   * @return future of the job.
+   */
+  public Future<?> submit(final Zips zips) {
+    File src = zips.getSource();
+    return submit(new Runnable() {
+      public void run() {
+        zips.process();
+      }
+    }, Lane.CPU, src == null ? 0 : src.length());
+  }
+
+  /**
+   * Submits a job.
+   *
+   * @param job job to run, e.g. a {@link ZipUtil} operation.
+   * @param lane lane to run the job in.
+   * @param size size of the input of the job in bytes, used for ordering the jobs and reporting progress.
+   * @return future of the job.
+   */
+  public Future<?> submit(final Runnable job, Lane lane, long size) {
+    return submit(new Callable<Object>() {
+      public Object call() {
+        job.run();
+        return null;
+      }
+    }, lane, size);
+  }
+
+  /**
+   * Submits a job.
+   *
+   * @param job job to run.
+   * @param lane lane to run the job in.
+   * @param size size of the input of the job in bytes, used for ordering the jobs and reporting progress.
+   * @return future of the result of the job.
+   */
+  public <T> Future<T> submit(Callable<T> job, Lane lane, long size) {
+    if (job == null || lane == null) {
+      throw new IllegalArgumentException("Job and lane must not be null");
+    }
+    Job<T> task;
+    synchronized (this) {
+      task = new Job<T>(job, Math.max(0, size), sequence++);
+      submittedCount++;
+      submittedBytes += task.size;
+    }
+    try {
+      (lane == Lane.IO ? ioLane : cpuLane).execute(task);
+    }
+    catch (RejectedExecutionException e) {
+      // e.g. after shutdown, the job is never run nor finished
+      synchronized (this) {
+        submittedCount--;
+        submittedBytes -= task.size;
+        notifyAll();
+      }
+      throw e;
+    }
+    return task;
+  }
+
+  private synchronized void finished(Job<?> job) {
+    if (job.isCancelled()) {
+      failedCount++;
+    }
+    else {
+      try {
+        job.get();
+        completedCount++;
+        processedBytes += job.size;
+      }
+      catch (ExecutionException e) {
+        failedCount++;
+        log.debug("Job failed.", e.getCause());
+      }
+      catch (InterruptedException e) {
+        // not possible, the job is done
+        Thread.currentThread().interrupt();
+      }
+    }
+    notifyAll();
+  }
+
+  /**
+   * Waits until all submitted jobs are completed, failed or cancelled.
+   *
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  public synchronized void awaitCompletion() throws InterruptedException {
+    while (completedCount + failedCount < submittedCount) {
+      wait();
+    }
+  }
+
+  /**
+   * Waits until all submitted jobs are completed, failed or cancelled or the timeout expires.
+   *
+   * @param timeout maximum time to wait.
+   * @param unit unit of the timeout.
+   * @return <code>true</code> if all jobs are done, <code>false</code> if the timeout expired.
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  public synchronized boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (completedCount + failedCount < submittedCount) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remaining);
+    }
+    return true;
+  }
+
+  /**
+   * Stops accepting new jobs. Already submitted jobs are still run.
+   */
+  public void shutdown() {
+    ioLane.shutdown();
+    cpuLane.shutdown();
+  }
+
+  /**
+   * @return number of submitted jobs.
+   */
+  public synchronized long getSubmittedCount() {
+    return submittedCount;
+  }
+
+  /**
+   * @return number of successfully completed jobs.
+   */
+  public synchronized long getCompletedCount() {
+    return completedCount;
+  }
+
+  /**
+   * @return number of failed or cancelled jobs.
+   */
+  public synchronized long getFailedCount() {
+    return failedCount;
+  }
+
+  /**
+   * @return number of jobs running at the moment.
+   */
+  public int getRunningCount() {
+    return running.get();
+  }
+
+  /**
+   * @return total input size of the submitted jobs in bytes.
+   */
+  public synchronized long getSubmittedBytes() {
+    return submittedBytes;
+  }
+
+  /**
+   * @return total input size of the successfully completed jobs in bytes.
+   */
+  public synchronized long getProcessedBytes() {
+    return processedBytes;
+  }
+
+  public synchronized String toString() {
+    return "ZipBatch[submitted=" + submittedCount + ", completed=" + completedCount + ", failed=" + failedCount
+        + ", running=" + running.get() + ", bytes=" + processedBytes + "/" + submittedBytes + "]";
+  }
+
+  /**
+   * Job ordered by the size class of its input and then by submission.
+   */
+  private final class Job<T> extends FutureTask<T> implements Comparable<Job<?>> {
+
+    final long size;
+    final int sizeClass;
+    final long sequence;
+
+    Job(Callable<T> callable, long size, long sequence) {
+      super(callable);
+      this.size = size;
+      this.sizeClass = 64 - Long.numberOfLeadingZeros(size);
+      this.sequence = sequence;
+    }
+
+    public void run() {
+      try {
+        permits.acquire();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        cancel(false);
+        return;
+      }
+      running.incrementAndGet();
+      try {
+        super.run();
+      }
+      finally {
+        running.decrementAndGet();
+        permits.release();
+      }
+    }
+
+    protected void done() {
+      finished(this);
+    }
+
+    public int compareTo(Job<?> other) {
+      if (sizeClass != other.sizeClass) {
+        return sizeClass < other.sizeClass ? -1 : 1;
+      }
+      return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+    }
+
+  }
+
+}
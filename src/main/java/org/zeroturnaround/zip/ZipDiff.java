@@ -0,0 +1,392 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeroturnaround.zip.commons.IOUtils;
+
+/**
+ * Computes the full set of differences between two ZIP archives.
+ * <p>
+ * Unlike {@link ZipUtil#archiveEquals(File, File)} which stops at the first difference, the diff walks both
+ * central directories merged by entry name and reports every entry that was added, removed, changed or
+ * whose meta-data only was changed. Results are streamed to a {@link ZipDiffCallback} in the order of entry names.
+ * </p>
+ * <p>
+ * Entries are first compared by their size and CRC as recorded in the central directory. If these differ the entry
+ * is changed and its contents is never read. Contents is only compared byte-by-byte if the central directory
+ * does not tell enough or if an executor is given for verifying the entries that look the same. Verification
+ * runs in parallel on that executor while the results are still reported in order.
+ * </p>
+ *
+ * @see ZipUtil#archiveEquals(File, File)
+ */
+public final class ZipDiff {
+
+  // Use / instead of . to work around an issue with Maven Shade Plugin
+  private static final Logger log = LoggerFactory.getLogger("org/zeroturnaround/zip/ZipDiff".replace('/', '.')); // NOSONAR
+
+  /**
+   * Maximum number of differences waiting for content verification.
+   */
+  private static final int MAX_PENDING = 256;
+
+  private static final Comparator<ZipEntry> NAME_ORDER = new Comparator<ZipEntry>() {
+    public int compare(ZipEntry e1, ZipEntry e2) {
+      return e1.getName().compareTo(e2.getName());
+    }
+  };
+
+  private ZipDiff() {
+  }
+
+  /**
+   * Compares two ZIP files and returns all the differences found.
+   * Entries with the same size and CRC are considered to have the same contents.
+   *
+   * @param oldZip
+   *          old ZIP file.
+   * @param newZip
+   *          new ZIP file.
+   * @return differences in the order of entry names, empty if the archives contain the same entries.
+   */
+  public static List<ZipEntryDiff> diff(File oldZip, File newZip) {
+    final List<ZipEntryDiff> result = new ArrayList<ZipEntryDiff>();
+    diff(oldZip, newZip, new ZipDiffCallback() {
+      public void process(ZipEntryDiff diff) {
+        result.add(diff);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Compares two ZIP files and executes the given action for each difference found.
+   * Entries with the same size and CRC are considered to have the same contents.
+   * If you want to stop the comparison then throw a ZipBreakException.
+   *
+   * @param oldZip
+   *          old ZIP file.
+   * @param newZip
+   *          new ZIP file.
+   * @param action
+   *          action to be called for each difference.
+   */
+  public static void diff(File oldZip, File newZip, ZipDiffCallback action) {
+    diff(oldZip, newZip, action, null);
+  }
+
+  /**
+   * Compares two ZIP files and executes the given action for each difference found.
+   * If you want to stop the comparison then throw a ZipBreakException.
+   * <p>
+   * If an executor is given, the contents of entries that have the same size and CRC is additionally compared
+   * byte-by-byte using the executor. The action is always called on the calling thread.
+   *
+   * @param oldZip
+   *          old ZIP file.
+   * @param newZip
+   *          new ZIP file.
+   * @param action
+   *          action to be called for each difference.
+   * @param verifier
+   *          executor for comparing the contents of the entries, <code>null</code> means the size and CRC are trusted.
+   */
+  public static void diff(File oldZip, File newZip, ZipDiffCallback action, ExecutorService verifier) {
+    log.debug("Computing differences between '{}' and '{}'.", oldZip, newZip);
+
+    ZipFile zf1 = null;
+    ZipFile zf2 = null;
+    try {
+      zf1 = new ZipFile(oldZip);
+      zf2 = new ZipFile(newZip);
+      new Walker(zf1, zf2, action, verifier).walk();
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    finally {
+      ZipUtil.closeQuietly(zf1);
+      ZipUtil.closeQuietly(zf2);
+    }
+  }
+
+  /**
+   * @return unique entries of the given ZIP file sorted by name.
+   */
+  static ZipEntry[] sortedEntries(ZipFile zf) {
+    List<ZipEntry> result = new ArrayList<ZipEntry>(zf.size());
+    NameSet names = new NameSet();
+    Enumeration<? extends ZipEntry> en = zf.entries();
+    while (en.hasMoreElements()) {
+      ZipEntry e = en.nextElement();
+      if (names.add(e.getName())) {
+        result.add(e);
+      }
+      else if (log.isDebugEnabled()) {
+        log.debug("Duplicate entry: {}", e.getName());
+      }
+    }
+    ZipEntry[] array = result.toArray(new ZipEntry[result.size()]);
+    Arrays.sort(array, NAME_ORDER);
+    return array;
+  }
+
+  /**
+   * Compares meta-data other than size and CRC of two entries.
+   *
+   * @return <code>true</code> if no difference was found.
+   */
+  static boolean extraMetaDataEquals(ZipEntry e1, ZipEntry e2) {
+    if (e1.getTime() != e2.getTime()) {
+      return false;
+    }
+    if (!e1.isDirectory() && e1.getMethod() != e2.getMethod()) {
+      return false;
+    }
+    if (!Arrays.equals(e1.getExtra(), e2.getExtra())) {
+      return false;
+    }
+    String c1 = e1.getComment();
+    String c2 = e2.getComment();
+    return c1 == null ? c2 == null : c1.equals(c2);
+  }
+
+  /**
+   * Merges the two sorted central directories and reports the differences in order.
+   */
+  private static class Walker {
+
+    private final ZipFile zf1;
+    private final ZipFile zf2;
+    private final ZipDiffCallback action;
+    private final ExecutorService verifier;
+
+    /**
+     * Differences (or entries under verification) not reported yet, in the order of entry names.
+     */
+    private final LinkedList<Pending> pending = new LinkedList<Pending>();
+
+    private Walker(ZipFile zf1, ZipFile zf2, ZipDiffCallback action, ExecutorService verifier) {
+      this.zf1 = zf1;
+      this.zf2 = zf2;
+      this.action = action;
+      this.verifier = verifier;
+    }
+
+    void walk() throws IOException {
+      ZipEntry[] entries1 = sortedEntries(zf1);
+      ZipEntry[] entries2 = sortedEntries(zf2);
+      try {
+        int i = 0;
+        int j = 0;
+        while (i < entries1.length || j < entries2.length) {
+          int cmp;
+          if (i == entries1.length) {
+            cmp = 1;
+          }
+          else if (j == entries2.length) {
+            cmp = -1;
+          }
+          else {
+            cmp = entries1[i].getName().compareTo(entries2[j].getName());
+          }
+
+          if (cmp < 0) {
+            ZipEntry e1 = entries1[i++];
+            add(new Pending(new ZipEntryDiff(ZipEntryDiff.Type.REMOVED, e1.getName(), e1, null)));
+          }
+          else if (cmp > 0) {
+            ZipEntry e2 = entries2[j++];
+            add(new Pending(new ZipEntryDiff(ZipEntryDiff.Type.ADDED, e2.getName(), null, e2)));
+          }
+          else {
+            compare(entries1[i++], entries2[j++]);
+          }
+        }
+        while (!pending.isEmpty()) {
+          report(pending.removeFirst());
+        }
+      }
+      catch (ZipBreakException e) {
+        // stop reporting
+      }
+      finally {
+        for (Pending p : pending) {
+          p.cancel();
+        }
+      }
+    }
+
+    private void compare(ZipEntry e1, ZipEntry e2) throws IOException {
+      String path = e1.getName();
+      if (e1.isDirectory() != e2.isDirectory()) {
+        add(new Pending(new ZipEntryDiff(ZipEntryDiff.Type.CHANGED, path, e1, e2)));
+        return;
+      }
+      if (!e1.isDirectory()) {
+        long size1 = e1.getSize();
+        long size2 = e2.getSize();
+        long crc1 = e1.getCrc();
+        long crc2 = e2.getCrc();
+        if (size1 != -1 && size2 != -1 && size1 != size2 || crc1 != -1 && crc2 != -1 && crc1 != crc2) {
+          add(new Pending(new ZipEntryDiff(ZipEntryDiff.Type.CHANGED, path, e1, e2)));
+          return;
+        }
+
+        boolean unknown = size1 == -1 || size2 == -1 || crc1 == -1 || crc2 == -1;
+        if (unknown || verifier != null) {
+          Verification task = new Verification(e1, e2);
+          if (verifier == null) {
+            add(new Pending(task.call()));
+          }
+          else {
+            add(new Pending(verifier.submit(task)));
+          }
+          return;
+        }
+      }
+      add(new Pending(metaDataDiff(e1, e2)));
+    }
+
+    /**
+     * Compares the contents of two entries which look the same in the central directory.
+     */
+    private class Verification implements Callable<ZipEntryDiff> {
+
+      private final ZipEntry e1;
+      private final ZipEntry e2;
+
+      Verification(ZipEntry e1, ZipEntry e2) {
+        this.e1 = e1;
+        this.e2 = e2;
+      }
+
+      public ZipEntryDiff call() throws IOException {
+        if (!contentEquals(e1, e2)) {
+          return new ZipEntryDiff(ZipEntryDiff.Type.CHANGED, e1.getName(), e1, e2);
+        }
+        return metaDataDiff(e1, e2);
+      }
+    }
+
+    private ZipEntryDiff metaDataDiff(ZipEntry e1, ZipEntry e2) {
+      if (extraMetaDataEquals(e1, e2)) {
+        return null;
+      }
+      return new ZipEntryDiff(ZipEntryDiff.Type.METADATA_CHANGED, e1.getName(), e1, e2);
+    }
+
+    private boolean contentEquals(ZipEntry e1, ZipEntry e2) throws IOException {
+      InputStream is1 = null;
+      InputStream is2 = null;
+      try {
+        is1 = zf1.getInputStream(e1);
+        is2 = zf2.getInputStream(e2);
+        return IOUtils.contentEquals(is1, is2);
+      }
+      finally {
+        IOUtils.closeQuietly(is1);
+        IOUtils.closeQuietly(is2);
+      }
+    }
+
+    private void add(Pending p) throws IOException {
+      pending.addLast(p);
+      // Report whatever is already known, block only if too many are waiting
+      while (!pending.isEmpty() && (pending.size() > MAX_PENDING || pending.getFirst().isDone())) {
+        report(pending.removeFirst());
+      }
+    }
+
+    private void report(Pending p) throws IOException {
+      ZipEntryDiff diff = p.get();
+      if (diff != null) {
+        action.process(diff);
+      }
+    }
+  }
+
+  /**
+   * A difference which may still be under verification.
+   */
+  private static class Pending {
+
+    private final ZipEntryDiff diff;
+    private final Future<ZipEntryDiff> future;
+
+    Pending(ZipEntryDiff diff) {
+      this.diff = diff;
+      this.future = null;
+    }
+
+    Pending(Future<ZipEntryDiff> future) {
+      this.diff = null;
+      this.future = future;
+    }
+
+    boolean isDone() {
+      return future == null || future.isDone();
+    }
+
+    ZipEntryDiff get() throws IOException {
+      if (future == null) {
+        return diff;
+      }
+      try {
+        return future.get();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ZipException("Interrupted while comparing archives", e);
+      }
+      catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new ZipException("Failed to compare archives", cause);
+      }
+    }
+
+    void cancel() {
+      if (future != null) {
+        future.cancel(true);
+      }
+    }
+  }
+
+}
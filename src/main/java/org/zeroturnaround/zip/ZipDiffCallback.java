@@ -0,0 +1,36 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.IOException;
+
+/**
+ * Call-back for receiving the differences between two ZIP archives.
+ *
+ * @see ZipDiff
+ */
+public interface ZipDiffCallback {
+
+  /**
+   * Invoked for each difference found. Differences are reported in the order of entry names.
+   *
+   * @param diff the difference.
+   *
+   * @throws java.io.IOException when any processing exception occurs
+   */
+  void process(ZipEntryDiff diff) throws IOException;
+
+}
@@ -0,0 +1,372 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.zeroturnaround.zip.commons.IOUtils;
+
+/**
+ * Bounded cache of decompressed ZIP entry contents.
+ * <p>
+ * Cached contents are identified by the ZIP file, its modification time and length, the entry name and the CRC of
+ * the entry. Whenever the modification time or length of a file changes, everything cached for it is dropped. The
+ * least recently used contents are evicted when the total size exceeds the limit. Contents larger than the limit are
+ * never cached. The entry names are kept for the {@link #MAX_FILES} most recently used files, the contents of other
+ * files are dropped together with their names.
+ * </p>
+ * <p>
+ * The contents are kept either in heap arrays or in direct buffers outside the heap. The cache is safe for
+ * concurrent use.
+ * </p>
+ *
+ * <pre>
+ * ZipEntryCache cache = new ZipEntryCache(64 * 1024 * 1024);
+ * byte[] template = cache.unpackEntry(zip, "templates/index.html");
+ * </pre>
+ */
+public final class ZipEntryCache {
+
+  /**
+   * Maximum number of ZIP files whose entry names are kept.
+   */
+  public static final int MAX_FILES = 64;
+
+  private final long maxSize;
+  private final boolean direct;
+
+  /** Cached contents, least recently used first. */
+  private final LinkedHashMap<Key, ByteBuffer> entries = new LinkedHashMap<Key, ByteBuffer>(16, 0.75f, true);
+  /** Entry names and CRCs of recently used ZIP files by their paths, least recently used first. */
+  private final LinkedHashMap<String, Index> indexes = new LinkedHashMap<String, Index>(16, 0.75f, true);
+
+  private long size;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /**
+   * Creates a cache keeping the contents in heap arrays.
+   *
+   * @param maxSize maximum total size of the cached contents in bytes.
+   */
+  public ZipEntryCache(long maxSize) {
+    this(maxSize, false);
+  }
+
+  /**
+   * @param maxSize maximum total size of the cached contents in bytes.
+   * @param direct <code>true</code> for keeping the contents in direct buffers outside the heap.
+   */
+  public ZipEntryCache(long maxSize, boolean direct) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("Negative cache size: " + maxSize);
+    }
+    this.maxSize = maxSize;
+    this.direct = direct;
+  }
+
+  /**
+   * Unpacks a single entry from a ZIP file using the cache.
+   *
+   * @param zip
+   *          ZIP file.
+   * @param name
+   *          entry name.
+   * @return contents of the entry or <code>null</code> if it was not found.
+   *
+   * @see ZipUtil#unpackEntry(File, String)
+   */
+  public byte[] unpackEntry(File zip, String name) {
+    ByteBuffer buf = getEntryBuffer(zip, name);
+    if (buf == null) {
+      return null;
+    }
+    byte[] result = new byte[buf.remaining()];
+    buf.get(result);
+    return result;
+  }
+
+  /**
+   * Unpacks a single entry from a ZIP file using the cache without copying the contents.
+   *
+   * @param zip
+   *          ZIP file.
+   * @param name
+   *          entry name.
+   * @return read-only buffer of the contents or <code>null</code> if the entry was not found.
+   */
+  public ByteBuffer getEntryBuffer(File zip, String name) {
+    try {
+      Index index = getIndex(zip);
+      if (index == null) {
+        return null;
+      }
+      Long crc = index.crcs.get(name);
+      if (crc == null) {
+        return null; // entry not found
+      }
+      Key key = new Key(index, name, crc.longValue());
+      synchronized (this) {
+        ByteBuffer buf = entries.get(key);
+        if (buf != null) {
+          hitCount++;
+          return buf.asReadOnlyBuffer();
+        }
+        missCount++;
+      }
+
+      byte[] bytes = load(zip, name);
+      if (bytes == null) {
+        return null;
+      }
+      ByteBuffer buf;
+      if (direct) {
+        buf = ByteBuffer.allocateDirect(bytes.length);
+        buf.put(bytes);
+        buf.flip();
+      }
+      else {
+        buf = ByteBuffer.wrap(bytes);
+      }
+      put(key, buf);
+      return buf.asReadOnlyBuffer();
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+  }
+
+  private byte[] load(File zip, String name) throws IOException {
+    ZipArchive archive = ZipArchive.open(zip);
+    try {
+      ZipArchiveEntry e = archive.getEntry(name);
+      if (e == null) {
+        return null;
+      }
+      InputStream in = archive.getInputStream(e);
+      try {
+        return IOUtils.toByteArray(in);
+      }
+      finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+    finally {
+      IOUtils.closeQuietly(archive);
+    }
+  }
+
+  private synchronized void put(Key key, ByteBuffer buf) {
+    int length = buf.capacity();
+    if (length > maxSize || key.index != indexes.get(key.index.path)) {
+      // too large or the file has changed meanwhile
+      return;
+    }
+    ByteBuffer old = entries.put(key, buf);
+    if (old != null) {
+      size -= old.capacity();
+    }
+    size += length;
+    Iterator<ByteBuffer> it = entries.values().iterator();
+    while (size > maxSize && it.hasNext()) {
+      size -= it.next().capacity();
+      it.remove();
+      evictionCount++;
+    }
+  }
+
+  /**
+   * @return index of the given file reading it again if the file has changed
+   *    or <code>null</code> if the file does not exist.
+   */
+  private Index getIndex(File zip) throws IOException {
+    String path = zip.getAbsolutePath();
+    long lastModified = zip.lastModified();
+    long length = zip.length();
+    synchronized (this) {
+      Index index = indexes.get(path);
+      if (index != null && index.lastModified == lastModified && index.length == length) {
+        return index;
+      }
+      if (index != null) {
+        remove(index);
+      }
+    }
+    if (!zip.isFile()) {
+      return null;
+    }
+
+    Index index = new Index(path, lastModified, length);
+    ZipArchive archive = ZipArchive.open(zip);
+    try {
+      for (ZipArchiveEntry e : archive.entries()) {
+        if (!index.crcs.containsKey(e.name)) {
+          index.crcs.put(e.name, Long.valueOf(e.crc));
+        }
+      }
+    }
+    finally {
+      IOUtils.closeQuietly(archive);
+    }
+    synchronized (this) {
+      Index current = indexes.get(path);
+      if (current != null && current.lastModified == lastModified && current.length == length) {
+        return current;
+      }
+      indexes.put(path, index);
+      while (indexes.size() > MAX_FILES) {
+        remove(indexes.values().iterator().next());
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Removes all contents cached for the given index.
+   */
+  private void remove(Index index) {
+    indexes.remove(index.path);
+    Iterator<Map.Entry<Key, ByteBuffer>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Key, ByteBuffer> entry = it.next();
+      if (entry.getKey().index == index) {
+        size -= entry.getValue().capacity();
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all contents cached for the given file.
+   *
+   * @param zip ZIP file.
+   */
+  public synchronized void invalidate(File zip) {
+    Index index = indexes.get(zip.getAbsolutePath());
+    if (index != null) {
+      remove(index);
+    }
+  }
+
+  /**
+   * Removes all cached contents.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    indexes.clear();
+    size = 0;
+  }
+
+  /**
+   * @return total size of the cached contents in bytes.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * @return number of cached entries.
+   */
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  /**
+   * @return number of ZIP files whose entry names are kept.
+   */
+  public synchronized int getFileCount() {
+    return indexes.size();
+  }
+
+  /**
+   * @return number of requests served from the cache.
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return number of requests which had to read the ZIP file.
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return number of contents evicted because of the size limit.
+   */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  public synchronized String toString() {
+    return "ZipEntryCache[size=" + size + "/" + maxSize + ", entries=" + entries.size() + ", hits=" + hitCount
+        + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+  }
+
+  /**
+   * Entry names and CRCs of a ZIP file as it was at the given modification time and length.
+   */
+  private static final class Index {
+
+    final String path;
+    final long lastModified;
+    final long length;
+    final Map<String, Long> crcs = new HashMap<String, Long>();
+
+    Index(String path, long lastModified, long length) {
+      this.path = path;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+
+  }
+
+  private static final class Key {
+
+    final Index index;
+    final String name;
+    final long crc;
+
+    Key(Index index, String name, long crc) {
+      this.index = index;
+      this.name = name;
+      this.crc = crc;
+    }
+
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return index == other.index && crc == other.crc && name.equals(other.name);
+    }
+
+    public int hashCode() {
+      return 31 * (31 * System.identityHashCode(index) + name.hashCode()) + (int) (crc ^ (crc >>> 32));
+    }
+
+  }
+
+}
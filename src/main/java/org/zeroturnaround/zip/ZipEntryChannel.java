@@ -0,0 +1,186 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.commons.IOUtils;
+
+/**
+ * Channel for reading the contents of a single ZIP entry from any position.
+ * <p>
+ * The contents of a STORED entry are read directly from the corresponding range of the archive. A DEFLATED entry has
+ * to be inflated from its start, so moving forward skips the decompressed bytes in between and moving backwards
+ * starts the inflation again.
+ * </p>
+ *
+ * @see ZipUtil#openEntryChannel(java.io.File, String)
+ */
+public final class ZipEntryChannel implements ReadableByteChannel {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final ZipArchive archive;
+  private final ZipArchiveEntry entry;
+
+  private long position;
+  private boolean open = true;
+
+  /** Decompressed data of a DEFLATED entry and the position it is at. */
+  private InputStream inflated;
+  private long inflatedPosition;
+
+  /**
+   * @param archive archive closed together with this channel.
+   * @param entry entry of the archive.
+   */
+  ZipEntryChannel(ZipArchive archive, ZipArchiveEntry entry) {
+    this.archive = archive;
+    this.entry = entry;
+  }
+
+  /**
+   * @return meta-data of the entry.
+   */
+  public ZipEntry getEntry() {
+    return entry.toZipEntry();
+  }
+
+  /**
+   * @return size of the decompressed contents.
+   */
+  public long size() {
+    return entry.size;
+  }
+
+  /**
+   * @return current position within the decompressed contents.
+   */
+  public synchronized long position() {
+    return position;
+  }
+
+  /**
+   * Sets the position within the decompressed contents. Setting it beyond the size is allowed
+   * but nothing will be read from there.
+   *
+   * @param newPosition new position.
+   * @return this channel.
+   */
+  public synchronized ZipEntryChannel position(long newPosition) {
+    if (newPosition < 0) {
+      throw new IllegalArgumentException("Negative position: " + newPosition);
+    }
+    position = newPosition;
+    return this;
+  }
+
+  public synchronized int read(ByteBuffer dst) throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+    if (position >= entry.size) {
+      return -1;
+    }
+    int len = (int) Math.min(dst.remaining(), entry.size - position);
+    if (len == 0) {
+      return 0;
+    }
+    byte[] b;
+    int off;
+    if (dst.hasArray()) {
+      b = dst.array();
+      off = dst.arrayOffset() + dst.position();
+    }
+    else {
+      b = new byte[Math.min(len, BUFFER_SIZE)];
+      off = 0;
+      len = b.length;
+    }
+
+    int n;
+    if (entry.method == ZipEntry.STORED) {
+      n = archive.readData(entry, position, b, off, len);
+    }
+    else {
+      seekInflated();
+      n = inflated.read(b, off, len);
+      if (n > 0) {
+        inflatedPosition += n;
+      }
+    }
+    if (n < 0) {
+      throw new EOFException("Unexpected end of entry " + entry.name);
+    }
+
+    if (dst.hasArray()) {
+      dst.position(dst.position() + n);
+    }
+    else {
+      dst.put(b, 0, n);
+    }
+    position += n;
+    return n;
+  }
+
+  /**
+   * Moves the decompressed stream to the current position.
+   */
+  private void seekInflated() throws IOException {
+    if (inflated == null || inflatedPosition > position) {
+      IOUtils.closeQuietly(inflated);
+      inflated = archive.getInputStream(entry);
+      inflatedPosition = 0;
+    }
+    byte[] skipBuffer = null;
+    while (inflatedPosition < position) {
+      if (skipBuffer == null) {
+        skipBuffer = new byte[BUFFER_SIZE];
+      }
+      int n = inflated.read(skipBuffer, 0, (int) Math.min(skipBuffer.length, position - inflatedPosition));
+      if (n < 0) {
+        throw new EOFException("Unexpected end of entry " + entry.name);
+      }
+      inflatedPosition += n;
+    }
+  }
+
+  public synchronized boolean isOpen() {
+    return open;
+  }
+
+  /**
+   * Closes the channel and the archive.
+   */
+  public synchronized void close() throws IOException {
+    if (open) {
+      open = false;
+      IOUtils.closeQuietly(inflated);
+      archive.close();
+    }
+  }
+
+  public String toString() {
+    return archive + "!" + entry.name;
+  }
+
+}
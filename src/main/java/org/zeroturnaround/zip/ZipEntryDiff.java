@@ -0,0 +1,79 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.util.zip.ZipEntry;
+
+/**
+ * A single difference between two ZIP archives found by {@link ZipDiff}.
+ *
+ * @see ZipDiffCallback
+ */
+public class ZipEntryDiff {
+
+  /**
+   * Kind of the difference.
+   */
+  public enum Type {
+    /** Entry exists only in the new archive. */
+    ADDED,
+    /** Entry exists only in the old archive. */
+    REMOVED,
+    /** Entry exists in both archives but its contents differ. */
+    CHANGED,
+    /** Entry has the same contents in both archives but its meta-data (time, method, extra, comment) differs. */
+    METADATA_CHANGED
+  }
+
+  private final Type type;
+  private final String path;
+  private final ZipEntry oldEntry;
+  private final ZipEntry newEntry;
+
+  public ZipEntryDiff(Type type, String path, ZipEntry oldEntry, ZipEntry newEntry) {
+    this.type = type;
+    this.path = path;
+    this.oldEntry = oldEntry;
+    this.newEntry = newEntry;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * @return entry of the old archive or <code>null</code> if the entry was added.
+   */
+  public ZipEntry getOldEntry() {
+    return oldEntry;
+  }
+
+  /**
+   * @return entry of the new archive or <code>null</code> if the entry was removed.
+   */
+  public ZipEntry getNewEntry() {
+    return newEntry;
+  }
+
+  public String toString() {
+    return type + " " + path;
+  }
+
+}
@@ -0,0 +1,160 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.util.regex.Pattern;
+
+/**
+ * Pattern of ZIP entry names given either as a glob or as a regular expression.
+ * <p>
+ * In a glob <code>*</code> matches any characters except <code>/</code>, <code>**</code> matches any characters
+ * including <code>/</code>, <code>**&#47;</code> matches zero or more directories and <code>?</code> matches a single
+ * character except <code>/</code>. All other characters match themselves. For example <code>**&#47;*.properties</code>
+ * matches every properties file and <code>com/acme/**</code> matches everything under <code>com/acme/</code>.
+ * </p>
+ * <p>
+ * Common globs are matched by comparing only their literal prefix and suffix with the entry name.
+ * </p>
+ */
+public final class ZipEntryPattern {
+
+  private final String pattern;
+  private final boolean glob;
+
+  /** Literal prefix of every matching name. */
+  final String prefix;
+  /** Literal suffix of every matching name. */
+  final String suffix;
+  /** Expression to match with or <code>null</code> if comparing the prefix and suffix is enough. */
+  final Pattern regex;
+
+  private ZipEntryPattern(String pattern, boolean glob, String prefix, String suffix, Pattern regex) {
+    this.pattern = pattern;
+    this.glob = glob;
+    this.prefix = prefix;
+    this.suffix = suffix;
+    this.regex = regex;
+  }
+
+  /**
+   * @param glob glob of entry names.
+   * @return pattern matching the names the glob matches.
+   */
+  public static ZipEntryPattern glob(String glob) {
+    int first = firstWildcard(glob, 0);
+    if (first == -1) {
+      // no wildcards, the name must be equal
+      return new ZipEntryPattern(glob, true, glob, "", Pattern.compile(Pattern.quote(glob)));
+    }
+    String prefix = glob.substring(0, first);
+    String rest = glob.substring(first);
+    if (rest.equals("**")) {
+      return new ZipEntryPattern(glob, true, prefix, "", null);
+    }
+    if (rest.startsWith("**/*")) {
+      String suffix = rest.substring(4);
+      if (firstWildcard(suffix, 0) == -1 && suffix.indexOf('/') == -1) {
+        return new ZipEntryPattern(glob, true, prefix, suffix, null);
+      }
+    }
+    return new ZipEntryPattern(glob, true, prefix, "", Pattern.compile(toRegex(glob)));
+  }
+
+  /**
+   * @param regex regular expression of entry names.
+   * @return pattern matching the names which fully match the expression.
+   */
+  public static ZipEntryPattern regex(String regex) {
+    return new ZipEntryPattern(regex, false, "", "", Pattern.compile(regex));
+  }
+
+  /**
+   * @return <code>true</code> if the pattern is a glob without wildcards matching only the name equal to it.
+   */
+  boolean isLiteral() {
+    return glob && firstWildcard(pattern, 0) == -1;
+  }
+
+  /**
+   * @param name entry name.
+   * @return <code>true</code> if the given name matches this pattern.
+   */
+  public boolean matches(String name) {
+    if (regex != null) {
+      return name.startsWith(prefix) && regex.matcher(name).matches();
+    }
+    return name.length() >= prefix.length() + suffix.length() && name.startsWith(prefix) && name.endsWith(suffix);
+  }
+
+  private static int firstWildcard(String glob, int from) {
+    for (int i = from; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (c == '*' || c == '?') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static String toRegex(String glob) {
+    StringBuilder sb = new StringBuilder();
+    int i = 0;
+    while (i < glob.length()) {
+      char c = glob.charAt(i);
+      if (glob.startsWith("**/", i)) {
+        sb.append("(?:.*/)?");
+        i += 3;
+      }
+      else if (glob.startsWith("**", i)) {
+        sb.append(".*");
+        i += 2;
+      }
+      else if (c == '*') {
+        sb.append("[^/]*");
+        i++;
+      }
+      else if (c == '?') {
+        sb.append("[^/]");
+        i++;
+      }
+      else {
+        if ("\\.[]{}()+-^$|".indexOf(c) != -1) {
+          sb.append('\\');
+        }
+        sb.append(c);
+        i++;
+      }
+    }
+    return sb.toString();
+  }
+
+  public boolean equals(Object obj) {
+    if (!(obj instanceof ZipEntryPattern)) {
+      return false;
+    }
+    ZipEntryPattern other = (ZipEntryPattern) obj;
+    return glob == other.glob && pattern.equals(other.pattern);
+  }
+
+  public int hashCode() {
+    return pattern.hashCode() * 2 + (glob ? 1 : 0);
+  }
+
+  public String toString() {
+    return (glob ? "glob:" : "regex:") + pattern;
+  }
+
+}
@@ -0,0 +1,181 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.attribute.FileTime;
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.zeroturnaround.zip.extra.ZipShort;
+
+/**
+ * Writes the time extra fields of a new entry the same way as {@link ZipOutputStream} of Java 8 and later does.
+ * <p>
+ * The modification, access and creation times are written into an extended timestamp field, or into an NTFS field
+ * if one of them does not fit into 32 bits. The central header gets only the modification time. This class uses
+ * the Java 8 API, don't load it unless running Java 8.
+ * </p>
+ */
+final class ZipEntryTimeFields {
+
+  static final int EXTENDED_TIMESTAMP_ID = 0x5455;
+  static final int NTFS_ID = 0x000a;
+
+  private static final int FLAG_MODIFIED = 1;
+  private static final int FLAG_ACCESSED = 2;
+  private static final int FLAG_CREATED = 4;
+
+  /** Missing time. */
+  private static final long NONE = Long.MIN_VALUE;
+  /** Largest time in seconds of an extended timestamp field. */
+  private static final long MAX_UNIX_TIME = 0x7fffffffL;
+  /** Start of the Windows epoch in microseconds of the Java epoch. */
+  private static final long WINDOWS_EPOCH_MICROS = -11644473600000000L;
+
+  private ZipEntryTimeFields() {
+  }
+
+  /**
+   * Writes the time field of the given entry if it has one.
+   *
+   * @param e new entry.
+   * @param extra extra field set to the entry, it may contain the times the entry was read with.
+   * @param local <code>true</code> for the local header, <code>false</code> for the central header.
+   * @param out target buffer.
+   */
+  static void write(ZipEntry e, byte[] extra, boolean local, ByteArrayOutputStream out) {
+    long mtime = hasModificationTime(e, extra) ? micros(e.getLastModifiedTime()) : NONE;
+    long atime = micros(e.getLastAccessTime());
+    long ctime = micros(e.getCreationTime());
+    int flags = (mtime != NONE ? FLAG_MODIFIED : 0) | (atime != NONE ? FLAG_ACCESSED : 0) | (ctime != NONE ? FLAG_CREATED : 0);
+    if (flags == 0) {
+      return;
+    }
+    if (seconds(mtime) > MAX_UNIX_TIME || seconds(atime) > MAX_UNIX_TIME || seconds(ctime) > MAX_UNIX_TIME) {
+      writeShort(out, NTFS_ID);
+      writeShort(out, 32);
+      writeInt(out, 0); // reserved
+      writeShort(out, 0x0001); // times
+      writeShort(out, 24);
+      writeLong(out, windowsTime(mtime));
+      writeLong(out, windowsTime(atime));
+      writeLong(out, windowsTime(ctime));
+    }
+    else if (local) {
+      writeShort(out, EXTENDED_TIMESTAMP_ID);
+      writeShort(out, 1 + 4 * Integer.bitCount(flags));
+      out.write(flags);
+      if (mtime != NONE) {
+        writeInt(out, seconds(mtime));
+      }
+      if (atime != NONE) {
+        writeInt(out, seconds(atime));
+      }
+      if (ctime != NONE) {
+        writeInt(out, seconds(ctime));
+      }
+    }
+    else {
+      writeShort(out, EXTENDED_TIMESTAMP_ID);
+      writeShort(out, mtime != NONE ? 5 : 1);
+      out.write(flags);
+      if (mtime != NONE) {
+        writeInt(out, seconds(mtime));
+      }
+    }
+  }
+
+  /**
+   * {@link ZipEntry} keeps a separate modification time only if it does not fit into an MS-DOS date or if it was
+   * read from an extra field. The latter is recognized by the extra field containing the same time.
+   */
+  private static boolean hasModificationTime(ZipEntry e, byte[] extra) {
+    FileTime time = e.getLastModifiedTime();
+    if (time == null) {
+      return false;
+    }
+    Calendar cal = Calendar.getInstance();
+    cal.setTimeInMillis(e.getTime());
+    int year = cal.get(Calendar.YEAR);
+    if (year < 1980 || year > 2099) {
+      return true;
+    }
+    long micros = time.to(TimeUnit.MICROSECONDS);
+    int off = 0;
+    while (off + 4 <= extra.length) {
+      int id = ZipShort.getValue(extra, off);
+      int len = ZipShort.getValue(extra, off + 2);
+      int data = off + 4;
+      if (data + len > extra.length) {
+        break;
+      }
+      if (id == EXTENDED_TIMESTAMP_ID && len >= 5 && (extra[data] & FLAG_MODIFIED) != 0) {
+        if (micros == getInt(extra, data + 1) * 1000000L) {
+          return true;
+        }
+      }
+      else if (id == NTFS_ID && len >= 32 && ZipShort.getValue(extra, data + 4) == 0x0001
+          && ZipShort.getValue(extra, data + 6) == 24) {
+        long windowsTime = getLong(extra, data + 8);
+        if (windowsTime != NONE && micros == windowsTime / 10 + WINDOWS_EPOCH_MICROS) {
+          return true;
+        }
+      }
+      off = data + len;
+    }
+    return false;
+  }
+
+  private static long micros(FileTime time) {
+    return time == null ? NONE : time.to(TimeUnit.MICROSECONDS);
+  }
+
+  private static long seconds(long micros) {
+    return micros == NONE ? NONE : micros / 1000000L;
+  }
+
+  private static long windowsTime(long micros) {
+    return micros == NONE ? NONE : (micros - WINDOWS_EPOCH_MICROS) * 10;
+  }
+
+  /** Signed 32-bit value like the times of an extended timestamp field. */
+  private static long getInt(byte[] b, int off) {
+    return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | b[off + 3] << 24;
+  }
+
+  private static long getLong(byte[] b, int off) {
+    return (getInt(b, off) & 0xffffffffL) | getInt(b, off + 4) << 32;
+  }
+
+  private static void writeShort(ByteArrayOutputStream out, int v) {
+    out.write(v & 0xff);
+    out.write((v >>> 8) & 0xff);
+  }
+
+  private static void writeInt(ByteArrayOutputStream out, long v) {
+    writeShort(out, (int) (v & 0xffff));
+    writeShort(out, (int) ((v >>> 16) & 0xffff));
+  }
+
+  private static void writeLong(ByteArrayOutputStream out, long v) {
+    writeInt(out, v & 0xffffffffL);
+    writeInt(out, v >>> 32);
+  }
+
+}
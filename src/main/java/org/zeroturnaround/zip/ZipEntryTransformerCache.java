@@ -0,0 +1,244 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.zeroturnaround.zip.commons.IOUtils;
+import org.zeroturnaround.zip.transform.DeterministicZipEntryTransformer;
+import org.zeroturnaround.zip.transform.ZipEntryTransformer;
+
+/**
+ * Bounded cache of the compressed results of deterministic transformers.
+ * <p>
+ * Results are identified by the transformer id, the entry name, the CRC and the size of the entry. When the same
+ * entry is transformed again, the cached result is copied into the output without calling the transformer or
+ * compressing anything. The least recently used results are evicted when their total size exceeds the limit.
+ * Results larger than the limit are never cached.
+ * </p>
+ * <p>
+ * The results are taken from the cache when transforming ZIP files with
+ * {@link ZipUtil#transformEntries(java.io.File, ZipEntryTransformerEntry[], java.io.File)} and its variants or
+ * with {@link InMemoryZip}. Otherwise and for entries whose CRC or size is unknown the transformer is always called.
+ * The cached results keep the modification time of the entry transformed first. The cache is safe for concurrent use.
+ * </p>
+ *
+ * <pre>
+ * ZipEntryTransformerCache cache = new ZipEntryTransformerCache(16 * 1024 * 1024);
+ * ZipEntryTransformer transformer = cache.wrap(new ConfigTemplateTransformer());
+ * for (File zip : zips) {
+ *   ZipUtil.transformEntry(zip, "config.xml", transformer);
+ * }
+ * </pre>
+ */
+public final class ZipEntryTransformerCache {
+
+  private static final int SLAB_SIZE = 16 * 1024;
+
+  private final long maxSize;
+
+  /** Cached results as small archives, least recently used first. */
+  private final LinkedHashMap<Key, SlabBuffer> results = new LinkedHashMap<Key, SlabBuffer>(16, 0.75f, true);
+
+  private long size;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /**
+   * @param maxSize maximum total size of the cached results in bytes.
+   */
+  public ZipEntryTransformerCache(long maxSize) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("Negative cache size: " + maxSize);
+    }
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns a transformer which takes the results of the given one from this cache.
+   *
+   * @param transformer deterministic transformer.
+   * @return transformer using this cache.
+   */
+  public ZipEntryTransformer wrap(DeterministicZipEntryTransformer transformer) {
+    if (transformer == null) {
+      throw new IllegalArgumentException("Transformer must not be null");
+    }
+    return new CachingTransformer(transformer);
+  }
+
+  private synchronized SlabBuffer get(Key key) {
+    SlabBuffer result = results.get(key);
+    if (result != null) {
+      hitCount++;
+    }
+    else {
+      missCount++;
+    }
+    return result;
+  }
+
+  private synchronized void put(Key key, SlabBuffer result) {
+    long length = result.length();
+    if (length > maxSize) {
+      return;
+    }
+    SlabBuffer old = results.put(key, result);
+    if (old != null) {
+      size -= old.length();
+    }
+    size += length;
+    Iterator<SlabBuffer> it = results.values().iterator();
+    while (size > maxSize && it.hasNext()) {
+      size -= it.next().length();
+      it.remove();
+      evictionCount++;
+    }
+  }
+
+  /**
+   * Copies all entries of the cached result into the given stream.
+   */
+  private static void copy(SlabBuffer result, RawZipOutputStream out) throws IOException {
+    ZipArchive archive = ZipArchive.open(result, null);
+    for (ZipArchiveEntry e : archive.entries()) {
+      out.putRawEntry(archive, e);
+    }
+  }
+
+  /**
+   * Removes all cached results.
+   */
+  public synchronized void clear() {
+    results.clear();
+    size = 0;
+  }
+
+  /**
+   * @return total size of the cached results in bytes.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * @return number of cached results.
+   */
+  public synchronized int getEntryCount() {
+    return results.size();
+  }
+
+  /**
+   * @return number of transformations served from the cache.
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return number of transformations which had to call the transformer.
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return number of results evicted because of the size limit.
+   */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  public synchronized String toString() {
+    return "ZipEntryTransformerCache[size=" + size + "/" + maxSize + ", entries=" + results.size()
+        + ", hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+  }
+
+  /**
+   * Transformer taking its results from the cache.
+   */
+  private final class CachingTransformer implements ZipEntryTransformer {
+
+    private final DeterministicZipEntryTransformer transformer;
+
+    CachingTransformer(DeterministicZipEntryTransformer transformer) {
+      this.transformer = transformer;
+    }
+
+    public void transform(InputStream in, ZipEntry zipEntry, ZipOutputStream out) throws IOException {
+      if (!(out instanceof RawZipOutputStream) || zipEntry.getCrc() == -1 || zipEntry.getSize() == -1) {
+        transformer.transform(in, zipEntry, out);
+        return;
+      }
+      RawZipOutputStream rawOut = (RawZipOutputStream) out;
+      Key key = new Key(transformer.getId(), zipEntry.getName(), zipEntry.getCrc(), zipEntry.getSize());
+      SlabBuffer result = get(key);
+      if (result == null) {
+        result = new SlabBuffer(SLAB_SIZE, false);
+        RawZipOutputStream resultOut = new RawZipOutputStream(result);
+        resultOut.setSource(rawOut.getSource());
+        transformer.transform(in, zipEntry, resultOut);
+        resultOut.finish();
+        result.toByteBuffers(); // no more writes
+        put(key, result);
+      }
+      copy(result, rawOut);
+    }
+
+    public String toString() {
+      return "CachingTransformer[" + transformer.getId() + "]";
+    }
+
+  }
+
+  private static final class Key {
+
+    final String id;
+    final String name;
+    final long crc;
+    final long size;
+
+    Key(String id, String name, long crc, long size) {
+      this.id = id;
+      this.name = name;
+      this.crc = crc;
+      this.size = size;
+    }
+
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return crc == other.crc && size == other.size && id.equals(other.id) && name.equals(other.name);
+    }
+
+    public int hashCode() {
+      int result = id.hashCode();
+      result = 31 * result + name.hashCode();
+      result = 31 * result + (int) (crc ^ (crc >>> 32));
+      return 31 * result + (int) (size ^ (size >>> 32));
+    }
+
+  }
+
+}
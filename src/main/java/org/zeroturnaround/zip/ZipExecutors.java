@@ -0,0 +1,91 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Factory of executors for the file I/O of {@link ZipUtil#unpack(java.io.File, java.io.File, ExecutorService)} and
+ * {@link ZipUtil#pack(java.io.File, java.io.File, ExecutorService)}.
+ * <p>
+ * Creating and reading many small files is bound by the latency of the file system rather than by CPU, so it pays
+ * off to run many of them at a time. On Java 21 and newer virtual threads are used for that, on older versions a
+ * cached pool of daemon threads.
+ * </p>
+ */
+public final class ZipExecutors {
+
+  // Use / instead of . to work around an issue with Maven Shade Plugin
+  private static final Logger log = LoggerFactory.getLogger("org/zeroturnaround/zip/ZipExecutors".replace('/', '.')); // NOSONAR
+
+  /** <code>Executors.newVirtualThreadPerTaskExecutor()</code> or <code>null</code> if not available. */
+  private static final Method VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
+
+  private ZipExecutors() {
+  }
+
+  private static Method findVirtualThreadExecutor() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    }
+    catch (NoSuchMethodException e) {
+      return null;
+    }
+    catch (SecurityException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return <code>true</code> if {@link #newIoExecutor()} uses virtual threads.
+   */
+  public static boolean isVirtualThreadsAvailable() {
+    return VIRTUAL_THREAD_EXECUTOR != null;
+  }
+
+  /**
+   * Creates an executor starting a new virtual thread for each task if available or otherwise a cached pool of
+   * daemon threads. The executor must be shut down by the caller.
+   *
+   * @return new executor for file I/O tasks.
+   */
+  public static ExecutorService newIoExecutor() {
+    if (VIRTUAL_THREAD_EXECUTOR != null) {
+      try {
+        return (ExecutorService) VIRTUAL_THREAD_EXECUTOR.invoke(null);
+      }
+      catch (Exception e) {
+        log.debug("Could not create a virtual thread executor.", e);
+      }
+    }
+    final AtomicInteger count = new AtomicInteger();
+    return Executors.newCachedThreadPool(new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "zt-zip-io-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+}
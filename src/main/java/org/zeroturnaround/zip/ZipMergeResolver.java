@@ -0,0 +1,64 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.IOException;
+
+/**
+ * Call-back for resolving an entry found in more than one archive while merging.
+ *
+ * @see ZipUtil#merge(java.io.File[], java.io.File, ZipMergeResolver)
+ */
+public interface ZipMergeResolver {
+
+  /**
+   * Keeps the entry of the first archive.
+   */
+  ZipMergeResolver FIRST_WINS = new ZipMergeResolver() {
+    public ZipEntrySource resolve(String path, ZipEntrySource[] candidates) {
+      return candidates[0];
+    }
+  };
+
+  /**
+   * Keeps the entry of the last archive.
+   */
+  ZipMergeResolver LAST_WINS = new ZipMergeResolver() {
+    public ZipEntrySource resolve(String path, ZipEntrySource[] candidates) {
+      return candidates[candidates.length - 1];
+    }
+  };
+
+  /**
+   * Fails the merge with a {@link ZipException}.
+   */
+  ZipMergeResolver FAIL = new ZipMergeResolver() {
+    public ZipEntrySource resolve(String path, ZipEntrySource[] candidates) {
+      throw new ZipException("Duplicate entry '" + path + "' found in " + candidates.length + " archives");
+    }
+  };
+
+  /**
+   * @param path path of the entry.
+   * @param candidates the entry as found in each archive, in the order of the archives.
+   * @return one of the candidates to be copied as it is,
+   *    any other entry to be compressed into the result
+   *    or <code>null</code> if the entry will be skipped.
+   * @throws IOException if reading a candidate fails.
+   */
+  ZipEntrySource resolve(String path, ZipEntrySource[] candidates) throws IOException;
+
+}
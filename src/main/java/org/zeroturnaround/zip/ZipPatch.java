@@ -0,0 +1,217 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeroturnaround.zip.commons.IOUtils;
+
+/**
+ * Creates and applies patch archives.
+ * <p>
+ * A patch archive turns an old version of a ZIP file into a new one. It contains the entries that were added or
+ * changed in the new version and a manifest that lists all entries of the new version in their order, telling
+ * whether each entry is taken from the old archive or from the patch. Entries that were removed are listed in
+ * the manifest as well.
+ * </p>
+ * <p>
+ * Both creating and applying a patch copies the compressed data of the entries as it is. Nothing is decompressed
+ * or compressed again except the manifest itself.
+ * </p>
+ *
+ * @see ZipDiff
+ */
+public final class ZipPatch {
+
+  /**
+   * Name of the manifest entry in the patch archive.
+   */
+  public static final String MANIFEST_NAME = "META-INF/ZT-ZIP-PATCH.MF";
+
+  private static final String HEADER = "zt-zip-patch 1";
+  private static final char COPY = '=';
+  private static final char ADD = '+';
+  private static final char REMOVE = '-';
+
+  private static final String ENCODING = "UTF-8";
+
+  // Use / instead of . to work around an issue with Maven Shade Plugin
+  private static final Logger log = LoggerFactory.getLogger("org/zeroturnaround/zip/ZipPatch".replace('/', '.')); // NOSONAR
+
+  private ZipPatch() {
+  }
+
+  /**
+   * Creates a patch archive that turns the old ZIP file into the new one.
+   *
+   * @param oldZip
+   *          old ZIP file (only read).
+   * @param newZip
+   *          new ZIP file (only read).
+   * @param patch
+   *          patch archive to be created.
+   */
+  public static void create(File oldZip, File newZip, File patch) {
+    log.debug("Creating patch '{}' from '{}' to '{}'.", new Object[] { patch, oldZip, newZip });
+
+    final Set<String> shipped = new HashSet<String>();
+    final StringBuilder removed = new StringBuilder();
+    ZipDiff.diff(oldZip, newZip, new ZipDiffCallback() {
+      public void process(ZipEntryDiff diff) {
+        if (diff.getType() == ZipEntryDiff.Type.REMOVED) {
+          removed.append(REMOVE).append(' ').append(diff.getPath()).append('\n');
+        }
+        else {
+          shipped.add(diff.getPath());
+        }
+      }
+    });
+
+    ZipArchive newArchive = null;
+    RawZipOutputStream out = null;
+    try {
+      newArchive = ZipArchive.open(newZip);
+      if (newArchive.getEntry(MANIFEST_NAME) != null) {
+        throw new ZipException("Archive " + newZip + " already contains the patch manifest " + MANIFEST_NAME);
+      }
+      out = new RawZipOutputStream(new BufferedOutputStream(new FileOutputStream(patch)));
+
+      StringBuilder manifest = new StringBuilder(HEADER).append('\n');
+      NameSet names = new NameSet();
+      for (ZipArchiveEntry e : newArchive.entries()) {
+        if (!names.add(e.name)) {
+          log.debug("Duplicate entry: {}", e.name);
+          continue;
+        }
+        if (shipped.contains(e.name)) {
+          out.putRawEntry(newArchive, e);
+          manifest.append(ADD).append(' ').append(e.name).append('\n');
+        }
+        else {
+          manifest.append(COPY).append(' ').append(Long.toHexString(e.crc)).append(' ').append(e.name).append('\n');
+        }
+      }
+      manifest.append(removed);
+
+      byte[] bytes = manifest.toString().getBytes(ENCODING);
+      out.putNextEntry(new ZipEntry(MANIFEST_NAME));
+      out.write(bytes);
+      out.closeEntry();
+      out.setComment(newArchive.getComment());
+      out.finish();
+
+      if (log.isDebugEnabled()) {
+        log.debug("Patch contains " + shipped.size() + " of " + names.size() + " entries.");
+      }
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    finally {
+      IOUtils.closeQuietly(out);
+      IOUtils.closeQuietly(newArchive);
+    }
+  }
+
+  /**
+   * Applies a patch archive to the old ZIP file producing the new one.
+   *
+   * @param oldZip
+   *          old ZIP file (only read).
+   * @param patch
+   *          patch archive created with {@link #create(File, File, File)} (only read).
+   * @param newZip
+   *          new ZIP file to be created.
+   * @throws ZipException if the patch does not match the old ZIP file.
+   */
+  public static void apply(File oldZip, File patch, File newZip) {
+    log.debug("Applying patch '{}' to '{}' into '{}'.", new Object[] { patch, oldZip, newZip });
+
+    ZipArchive oldArchive = null;
+    ZipArchive patchArchive = null;
+    RawZipOutputStream out = null;
+    BufferedReader manifest = null;
+    try {
+      oldArchive = ZipArchive.open(oldZip);
+      patchArchive = ZipArchive.open(patch);
+      ZipArchiveEntry manifestEntry = patchArchive.getEntry(MANIFEST_NAME);
+      if (manifestEntry == null) {
+        throw new ZipException("Archive " + patch + " is not a patch, " + MANIFEST_NAME + " not found");
+      }
+      InputStream in = patchArchive.getInputStream(manifestEntry);
+      manifest = new BufferedReader(new InputStreamReader(in, ENCODING));
+      if (!HEADER.equals(manifest.readLine())) {
+        throw new ZipException("Unsupported patch format in " + patch);
+      }
+
+      out = new RawZipOutputStream(new BufferedOutputStream(new FileOutputStream(newZip)));
+      String line;
+      while ((line = manifest.readLine()) != null) {
+        if (line.length() < 2) {
+          continue;
+        }
+        char op = line.charAt(0);
+        if (op == COPY) {
+          int idx = line.indexOf(' ', 2);
+          long crc = Long.parseLong(line.substring(2, idx), 16);
+          String name = line.substring(idx + 1);
+          ZipArchiveEntry e = oldArchive.getEntry(name);
+          if (e == null) {
+            throw new ZipException("Patch " + patch + " does not match " + oldZip + ", entry " + name + " not found");
+          }
+          if (e.crc != crc) {
+            throw new ZipException("Patch " + patch + " does not match " + oldZip + ", entry " + name + " has changed");
+          }
+          out.putRawEntry(oldArchive, e);
+        }
+        else if (op == ADD) {
+          String name = line.substring(2);
+          ZipArchiveEntry e = patchArchive.getEntry(name);
+          if (e == null) {
+            throw new ZipException("Patch " + patch + " is corrupt, entry " + name + " not found");
+          }
+          out.putRawEntry(patchArchive, e);
+        }
+        else if (op != REMOVE) {
+          throw new ZipException("Unsupported patch instruction '" + line + "' in " + patch);
+        }
+      }
+      out.setComment(patchArchive.getComment());
+      out.finish();
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    finally {
+      IOUtils.closeQuietly(manifest);
+      IOUtils.closeQuietly(out);
+      IOUtils.closeQuietly(oldArchive);
+      IOUtils.closeQuietly(patchArchive);
+    }
+  }
+
+}
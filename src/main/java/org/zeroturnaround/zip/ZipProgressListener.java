@@ -0,0 +1,41 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+/**
+ * Call-back for following the progress of a {@link ZipTask}.
+ *
+ * @see ZipAsync
+ */
+public interface ZipProgressListener {
+
+  /**
+   * Called on the thread running the task before each entry is processed.
+   *
+   * @param name name of the entry.
+   * @param count number of entries reached so far, including this one.
+   */
+  void entryStarted(String name, long count);
+
+  /**
+   * Called once when the task is completed, has failed or was cancelled. A task cancelled while running is reported
+   * only after its thread has stopped working on it.
+   *
+   * @param task the finished task, its result or failure is available with {@link ZipTask#get()}.
+   */
+  void finished(ZipTask<?> task);
+
+}
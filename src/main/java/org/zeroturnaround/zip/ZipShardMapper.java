@@ -0,0 +1,32 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+/**
+ * Call-back for assigning ZIP entries to shards while splitting an archive.
+ *
+ * @see ZipSplit#split(java.io.File, java.io.File, int, ZipShardMapper)
+ */
+public interface ZipShardMapper {
+
+  /**
+   * @param name name of the entry.
+   * @return index of the shard, between 0 (inclusive) and the number of shards (exclusive),
+   *    negative value means that the entry will be skipped.
+   */
+  int shard(String name);
+
+}
@@ -0,0 +1,466 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.commons.IOUtils;
+
+/**
+ * Splits ZIP files into shards and processes the shards in parallel.
+ * <p>
+ * Each shard is a valid ZIP file on its own. The entries keep their order and are copied without decompressing
+ * them. The shards are written concurrently. The shards of <code>big.zip</code> are named <code>big-1.zip</code>,
+ * <code>big-2.zip</code> and so on.
+ * </p>
+ */
+public final class ZipSplit {
+
+  // Use / instead of . to work around an issue with Maven Shade Plugin
+  private static final Logger log = LoggerFactory.getLogger("org/zeroturnaround/zip/ZipSplit".replace('/', '.')); // NOSONAR
+
+  /**
+   * Fixed size of the local header of an entry.
+   */
+  private static final int LOCAL_HEADER = 30;
+
+  /**
+   * Fixed size of the central directory header of an entry.
+   */
+  private static final int CENTRAL_HEADER = 46;
+
+  /**
+   * Size of the end of central directory record.
+   */
+  private static final int ARCHIVE_OVERHEAD = 22;
+
+  /**
+   * Size of the ZIP64 end of central directory record and its locator.
+   */
+  private static final int ZIP64_ARCHIVE_OVERHEAD = 56 + 20;
+
+  private ZipSplit() {
+  }
+
+  /**
+   * Splits a ZIP file into shards not exceeding the given size. An entry that does not fit into a shard on its own
+   * is written into a shard of its own.
+   *
+   * @param zip
+   *          ZIP file to be split (only read).
+   * @param outputDir
+   *          directory where the shards are written.
+   * @param maxShardSize
+   *          maximum size of a shard in bytes.
+   * @return shards created.
+   */
+  public static File[] splitBySize(File zip, File outputDir, long maxShardSize) {
+    return splitBySize(zip, outputDir, maxShardSize, null);
+  }
+
+  /**
+   * Splits a ZIP file into shards not exceeding the given size. An entry that does not fit into a shard on its own
+   * is written into a shard of its own.
+   *
+   * @param zip
+   *          ZIP file to be split (only read).
+   * @param outputDir
+   *          directory where the shards are written.
+   * @param maxShardSize
+   *          maximum size of a shard in bytes.
+   * @param executor
+   *          executor for writing the shards, <code>null</code> means a thread pool created for this call.
+   * @return shards created.
+   */
+  public static File[] splitBySize(File zip, File outputDir, final long maxShardSize, ExecutorService executor) {
+    if (maxShardSize <= 0) {
+      throw new IllegalArgumentException("Shard size must be positive: " + maxShardSize);
+    }
+    return split(zip, outputDir, executor, new Partitioner() {
+      private ShardSize shardSize = new ShardSize();
+      public int shard(ZipArchive archive, ZipArchiveEntry e, int current, int count) throws IOException {
+        byte[] localExtra = archive.getLocalExtra(e);
+        if (count > 0 && shardSize.sizeWith(e, localExtra) > maxShardSize) {
+          shardSize = new ShardSize();
+          shardSize.add(e, localExtra);
+          return current + 1;
+        }
+        shardSize.add(e, localExtra);
+        return current;
+      }
+    });
+  }
+
+  /**
+   * Splits a ZIP file into shards containing at most the given number of entries.
+   *
+   * @param zip
+   *          ZIP file to be split (only read).
+   * @param outputDir
+   *          directory where the shards are written.
+   * @param maxEntries
+   *          maximum number of entries in a shard.
+   * @return shards created.
+   */
+  public static File[] splitByCount(File zip, File outputDir, int maxEntries) {
+    return splitByCount(zip, outputDir, maxEntries, null);
+  }
+
+  /**
+   * Splits a ZIP file into shards containing at most the given number of entries.
+   *
+   * @param zip
+   *          ZIP file to be split (only read).
+   * @param outputDir
+   *          directory where the shards are written.
+   * @param maxEntries
+   *          maximum number of entries in a shard.
+   * @param executor
+   *          executor for writing the shards, <code>null</code> means a thread pool created for this call.
+   * @return shards created.
+   */
+  public static File[] splitByCount(File zip, File outputDir, final int maxEntries, ExecutorService executor) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("Number of entries must be positive: " + maxEntries);
+    }
+    return split(zip, outputDir, executor, new Partitioner() {
+      public int shard(ZipArchive archive, ZipArchiveEntry e, int current, int count) {
+        return count < maxEntries ? current : current + 1;
+      }
+    });
+  }
+
+  /**
+   * Splits a ZIP file into the given number of shards using a mapper for choosing the shard of each entry.
+   * Shards without any entries are still created.
+   *
+   * @param zip
+   *          ZIP file to be split (only read).
+   * @param outputDir
+   *          directory where the shards are written.
+   * @param shardCount
+   *          number of shards.
+   * @param mapper
+   *          call-back for choosing the shard of each entry.
+   * @return shards created.
+   */
+  public static File[] split(File zip, File outputDir, int shardCount, ZipShardMapper mapper) {
+    return split(zip, outputDir, shardCount, mapper, null);
+  }
+
+  /**
+   * Splits a ZIP file into the given number of shards using a mapper for choosing the shard of each entry.
+   * Shards without any entries are still created.
+   *
+   * @param zip
+   *          ZIP file to be split (only read).
+   * @param outputDir
+   *          directory where the shards are written.
+   * @param shardCount
+   *          number of shards.
+   * @param mapper
+   *          call-back for choosing the shard of each entry.
+   * @param executor
+   *          executor for writing the shards, <code>null</code> means a thread pool created for this call.
+   * @return shards created.
+   */
+  public static File[] split(File zip, File outputDir, final int shardCount, final ZipShardMapper mapper, ExecutorService executor) {
+    if (shardCount <= 0) {
+      throw new IllegalArgumentException("Number of shards must be positive: " + shardCount);
+    }
+    return split(zip, outputDir, executor, new Partitioner() {
+      public int shard(ZipArchive archive, ZipArchiveEntry e, int current, int count) {
+        int shard = mapper.shard(e.name);
+        if (shard >= shardCount) {
+          throw new ZipException("Invalid shard " + shard + " for entry '" + e.name + "', number of shards is " + shardCount);
+        }
+        return shard;
+      }
+    }, shardCount);
+  }
+
+  /**
+   * Reads the given shards in parallel and executes the given action for each entry.
+   * <p>
+   * The action is called concurrently from different threads. Throwing a ZipBreakException stops the loop of the
+   * current shard only.
+   *
+   * @param shards
+   *          input ZIP files.
+   * @param action
+   *          action to be called for each entry.
+   *
+   * @see ZipUtil#iterate(File, ZipEntryCallback)
+   */
+  public static void iterate(File[] shards, ZipEntryCallback action) {
+    iterate(shards, action, null);
+  }
+
+  /**
+   * Reads the given shards in parallel and executes the given action for each entry.
+   * <p>
+   * The action is called concurrently from different threads. Throwing a ZipBreakException stops the loop of the
+   * current shard only.
+   *
+   * @param shards
+   *          input ZIP files.
+   * @param action
+   *          action to be called for each entry.
+   * @param executor
+   *          executor for reading the shards, <code>null</code> means a thread pool created for this call.
+   *
+   * @see ZipUtil#iterate(File, ZipEntryCallback)
+   */
+  public static void iterate(File[] shards, final ZipEntryCallback action, ExecutorService executor) {
+    List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+    for (final File shard : shards) {
+      tasks.add(new Callable<Object>() {
+        public Object call() {
+          ZipUtil.iterate(shard, action);
+          return null;
+        }
+      });
+    }
+    try {
+      invokeAll(tasks, executor);
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+  }
+
+  /**
+   * Chooses the shard of an entry.
+   */
+  private interface Partitioner {
+
+    /**
+     * @param archive the original archive.
+     * @param e entry in the original archive.
+     * @param current index of the shard of the previous entry.
+     * @param count number of entries in the current shard.
+     * @return index of the shard for the entry, negative value for skipping the entry.
+     * @throws IOException if reading the archive fails.
+     */
+    int shard(ZipArchive archive, ZipArchiveEntry e, int current, int count) throws IOException;
+
+  }
+
+  /**
+   * Computes the size of a shard the same way as {@link RawZipOutputStream} writes it. Entries copied as they are
+   * have no data descriptors. ZIP64 extra fields are added for big sizes and offsets.
+   */
+  private static final class ShardSize {
+
+    /** Total size of the local headers and data written so far. */
+    private long localSize;
+    /** Total size of the central directory headers. */
+    private long centralSize;
+    private long count;
+
+    /**
+     * @return size of the shard after adding the given entry.
+     */
+    long sizeWith(ZipArchiveEntry e, byte[] localExtra) {
+      long local = localSize + localRecordSize(e, localExtra);
+      long central = centralSize + centralHeaderSize(e, localSize);
+      long size = local + central + ARCHIVE_OVERHEAD;
+      if (count + 1 >= ZipArchive.ZIP64_MAGIC_SHORT || central >= ZipArchive.ZIP64_MAGIC || local >= ZipArchive.ZIP64_MAGIC) {
+        size += ZIP64_ARCHIVE_OVERHEAD;
+      }
+      return size;
+    }
+
+    void add(ZipArchiveEntry e, byte[] localExtra) {
+      centralSize += centralHeaderSize(e, localSize);
+      localSize += localRecordSize(e, localExtra);
+      count++;
+    }
+
+    private static long localRecordSize(ZipArchiveEntry e, byte[] localExtra) {
+      long size = LOCAL_HEADER + e.rawName.length + localExtra.length + e.compressedSize;
+      if (e.size >= ZipArchive.ZIP64_MAGIC || e.compressedSize >= ZipArchive.ZIP64_MAGIC) {
+        size += 4 + 16;
+      }
+      return size;
+    }
+
+    private static long centralHeaderSize(ZipArchiveEntry e, long offset) {
+      int zip64Len = 0;
+      if (e.size >= ZipArchive.ZIP64_MAGIC) {
+        zip64Len += 8;
+      }
+      if (e.compressedSize >= ZipArchive.ZIP64_MAGIC) {
+        zip64Len += 8;
+      }
+      if (offset >= ZipArchive.ZIP64_MAGIC) {
+        zip64Len += 8;
+      }
+      long size = CENTRAL_HEADER + e.rawName.length + e.extra.length + e.rawComment.length;
+      return zip64Len > 0 ? size + 4 + zip64Len : size;
+    }
+
+  }
+
+  private static File[] split(File zip, File outputDir, ExecutorService executor, Partitioner partitioner) {
+    return split(zip, outputDir, executor, partitioner, 1);
+  }
+
+  private static File[] split(File zip, File outputDir, ExecutorService executor, Partitioner partitioner, int minShards) {
+    log.debug("Splitting '{}' into '{}'.", zip, outputDir);
+
+    ZipArchive archive = null;
+    try {
+      archive = ZipArchive.open(zip);
+
+      List<List<ZipArchiveEntry>> shards = new ArrayList<List<ZipArchiveEntry>>();
+      for (int i = 0; i < minShards; i++) {
+        shards.add(new ArrayList<ZipArchiveEntry>());
+      }
+      NameSet names = new NameSet();
+      int current = 0;
+      for (ZipArchiveEntry e : archive.entries()) {
+        if (!names.add(e.name)) {
+          log.debug("Duplicate entry: {}", e.name);
+          continue;
+        }
+        int shard = partitioner.shard(archive, e, current, shards.get(current).size());
+        if (shard < 0) {
+          continue;
+        }
+        while (shards.size() <= shard) {
+          shards.add(new ArrayList<ZipArchiveEntry>());
+        }
+        shards.get(shard).add(e);
+        current = shard;
+      }
+
+      FileUtils.forceMkdir(outputDir);
+      String name = zip.getName();
+      int dot = name.lastIndexOf('.');
+      String base = dot > 0 ? name.substring(0, dot) : name;
+      String extension = dot > 0 ? name.substring(dot) : ".zip";
+
+      File[] result = new File[shards.size()];
+      List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+      for (int i = 0; i < result.length; i++) {
+        result[i] = new File(outputDir, base + "-" + (i + 1) + extension);
+        tasks.add(new ShardWriter(archive, shards.get(i), result[i]));
+      }
+      invokeAll(tasks, executor);
+
+      if (log.isDebugEnabled()) {
+        log.debug("Split " + names.size() + " entries into " + result.length + " shards.");
+      }
+      return result;
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    finally {
+      IOUtils.closeQuietly(archive);
+    }
+  }
+
+  /**
+   * Writes the given entries of the archive into a shard.
+   */
+  private static final class ShardWriter implements Callable<Object> {
+
+    private final ZipArchive archive;
+    private final List<ZipArchiveEntry> entries;
+    private final File shard;
+
+    ShardWriter(ZipArchive archive, List<ZipArchiveEntry> entries, File shard) {
+      this.archive = archive;
+      this.entries = entries;
+      this.shard = shard;
+    }
+
+    public Object call() throws IOException {
+      RawZipOutputStream out = new RawZipOutputStream(new BufferedOutputStream(new FileOutputStream(shard)));
+      try {
+        for (ZipArchiveEntry e : entries) {
+          out.putRawEntry(archive, e);
+        }
+        out.finish();
+      }
+      finally {
+        IOUtils.closeQuietly(out);
+      }
+      return null;
+    }
+
+  }
+
+  /**
+   * Runs the given tasks and waits until all of them have completed. Remaining tasks are cancelled if one fails.
+   */
+  private static void invokeAll(List<Callable<Object>> tasks, ExecutorService executor) throws IOException {
+    if (tasks.isEmpty()) {
+      return;
+    }
+    ExecutorService pool = executor;
+    if (pool == null) {
+      pool = Executors.newFixedThreadPool(Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+    }
+    List<Future<Object>> futures = new ArrayList<Future<Object>>();
+    try {
+      for (Callable<Object> task : tasks) {
+        futures.add(pool.submit(task));
+      }
+      for (Future<Object> future : futures) {
+        future.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ZipException("Interrupted while processing shards", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new ZipException("Failed to process shards", cause);
+    }
+    finally {
+      for (Future<Object> future : futures) {
+        future.cancel(true);
+      }
+      if (executor == null) {
+        pool.shutdown();
+      }
+    }
+  }
+
+}
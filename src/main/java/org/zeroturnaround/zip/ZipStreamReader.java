@@ -0,0 +1,375 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.Charset;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.extra.ZipLong;
+import org.zeroturnaround.zip.extra.ZipShort;
+
+/**
+ * Reads ZIP entries from a stream like {@link java.util.zip.ZipInputStream} but skips the entries that are not
+ * needed without decompressing them.
+ * <p>
+ * If the local header of a skipped entry contains the compressed size its data is passed over using
+ * {@link InputStream#skip(long)}. Only entries with the sizes stored in a data descriptor after the data have to be
+ * inflated to find their end.
+ * </p>
+ * <p>
+ * The source stream is not closed.
+ * </p>
+ */
+final class ZipStreamReader {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final int FLAG_ENCRYPTED = 1;
+
+  private final PushbackInputStream in;
+  private final Charset charset;
+  private final Inflater inf = new Inflater(true);
+  private final byte[] buf = new byte[BUFFER_SIZE];
+  private final byte[] header = new byte[ZipArchive.LFH_LEN];
+
+  private EntryInputStream current;
+
+  /**
+   * @param in ZIP stream.
+   * @param charset charset for entry names which are not flagged as UTF-8, <code>null</code> means UTF-8.
+   */
+  ZipStreamReader(InputStream in, Charset charset) {
+    this.in = new PushbackInputStream(in, BUFFER_SIZE);
+    this.charset = charset == null ? UTF8 : charset;
+  }
+
+  /**
+   * Moves to the next entry with one of the given names.
+   *
+   * @param names names of entries to return, <code>null</code> means all entries.
+   * @return the entry or <code>null</code> if there are no more entries.
+   */
+  ZipEntry getNextEntry(Set<String> names) throws IOException {
+    closeEntry();
+    while (true) {
+      if (!readHeader()) {
+        return null;
+      }
+      int flags = ZipShort.getValue(header, 6);
+      int method = ZipShort.getValue(header, 8);
+      long dosTime = ZipLong.getValue(header, 10);
+      long crc = ZipLong.getValue(header, 14);
+      long csize = ZipLong.getValue(header, 18);
+      long size = ZipLong.getValue(header, 22);
+      byte[] rawName = new byte[ZipShort.getValue(header, 26)];
+      byte[] extra = new byte[ZipShort.getValue(header, 28)];
+      readFully(rawName, rawName.length);
+      readFully(extra, extra.length);
+      String name = new String(rawName, (flags & ZipArchiveEntry.FLAG_UTF8) != 0 ? UTF8 : charset);
+
+      if ((flags & FLAG_ENCRYPTED) != 0) {
+        throw new java.util.zip.ZipException("encrypted ZIP entry not supported: " + name);
+      }
+      boolean descriptor = (flags & ZipArchiveEntry.FLAG_DATA_DESCRIPTOR) != 0;
+      if (descriptor && method != ZipEntry.DEFLATED) {
+        throw new java.util.zip.ZipException("only DEFLATED entries can have EXT descriptor: " + name);
+      }
+      if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED) {
+        throw new java.util.zip.ZipException("invalid compression method " + method + " of entry " + name);
+      }
+      int zip64 = ZipArchive.findExtraField(extra, ZipArchive.ZIP64_EXTRA_ID);
+      if (zip64 != -1 && !descriptor) {
+        if (size == ZipArchive.ZIP64_MAGIC) {
+          size = ZipArchive.getLong(extra, zip64 + 4);
+        }
+        if (csize == ZipArchive.ZIP64_MAGIC) {
+          csize = ZipArchive.getLong(extra, zip64 + 12);
+        }
+      }
+
+      ZipEntry entry = new ZipEntry(name);
+      entry.setMethod(method);
+      entry.setTime(ZipArchiveEntry.dosToJavaTime(dosTime));
+      if (!descriptor) {
+        entry.setCrc(crc);
+        entry.setSize(size);
+        entry.setCompressedSize(csize);
+      }
+      if (extra.length > 0) {
+        entry.setExtra(extra);
+      }
+
+      current = new EntryInputStream(entry, descriptor, zip64 != -1, descriptor ? -1 : csize);
+      if (names == null || names.contains(name)) {
+        return entry;
+      }
+      closeEntry();
+    }
+  }
+
+  /**
+   * @return stream of the current entry, it does not need to be closed.
+   */
+  InputStream getInputStream() {
+    return current;
+  }
+
+  /**
+   * Skips the rest of the current entry.
+   */
+  void closeEntry() throws IOException {
+    if (current != null) {
+      current.skipRest();
+      current = null;
+    }
+  }
+
+  /**
+   * Releases the inflater. The source stream is not closed.
+   */
+  void close() {
+    inf.end();
+  }
+
+  /**
+   * @return <code>false</code> if there are no more local headers.
+   */
+  private boolean readHeader() throws IOException {
+    int n = 0;
+    while (n < 4) {
+      int count = in.read(header, n, 4 - n);
+      if (count == -1) {
+        return false;
+      }
+      n += count;
+    }
+    if (ZipLong.getValue(header, 0) != ZipArchive.LFH_SIG) {
+      // central directory or garbage
+      return false;
+    }
+    readFully(header, 4, ZipArchive.LFH_LEN - 4);
+    return true;
+  }
+
+  private void readFully(byte[] b, int len) throws IOException {
+    readFully(b, 0, len);
+  }
+
+  private void readFully(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      int n = in.read(b, off, len);
+      if (n == -1) {
+        throw new EOFException("Unexpected end of ZIP stream");
+      }
+      off += n;
+      len -= n;
+    }
+  }
+
+  private void skipFully(long n) throws IOException {
+    while (n > 0) {
+      long skipped = in.skip(n);
+      if (skipped <= 0) {
+        if (in.read() == -1) {
+          throw new EOFException("Unexpected end of ZIP stream");
+        }
+        skipped = 1;
+      }
+      n -= skipped;
+    }
+  }
+
+  /**
+   * Contents of the current entry.
+   */
+  private class EntryInputStream extends InputStream {
+
+    private final ZipEntry entry;
+    private final boolean descriptor;
+    private final boolean zip64;
+    private final CRC32 crc = new CRC32();
+    /** Compressed bytes left in the source stream, -1 if unknown. */
+    private long remaining;
+    private long size;
+    private int bufferLength;
+    private boolean started;
+    private boolean dummy;
+    private boolean eof;
+
+    EntryInputStream(ZipEntry entry, boolean descriptor, boolean zip64, long remaining) {
+      this.entry = entry;
+      this.descriptor = descriptor;
+      this.zip64 = zip64;
+      this.remaining = remaining;
+    }
+
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      int n = read(b, 0, 1);
+      return n == -1 ? -1 : b[0] & 0xff;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (eof || current != this) {
+        return -1;
+      }
+      if (len == 0) {
+        return 0;
+      }
+      int n = entry.getMethod() == ZipEntry.STORED ? readStored(b, off, len) : inflate(b, off, len);
+      if (n == -1) {
+        finish();
+        return -1;
+      }
+      crc.update(b, off, n);
+      size += n;
+      return n;
+    }
+
+    private int readStored(byte[] b, int off, int len) throws IOException {
+      if (remaining == 0) {
+        return -1;
+      }
+      int n = in.read(b, off, (int) Math.min(len, remaining));
+      if (n == -1) {
+        throw new EOFException("Unexpected end of ZIP stream");
+      }
+      remaining -= n;
+      return n;
+    }
+
+    private int inflate(byte[] b, int off, int len) throws IOException {
+      if (!started) {
+        started = true;
+        inf.reset();
+      }
+      try {
+        while (true) {
+          int n = inf.inflate(b, off, len);
+          if (n > 0) {
+            return n;
+          }
+          if (inf.finished() || inf.needsDictionary()) {
+            if (descriptor) {
+              int rest = inf.getRemaining();
+              if (rest > 0) {
+                in.unread(buf, bufferLength - rest, rest);
+              }
+            }
+            return -1;
+          }
+          if (inf.needsInput()) {
+            fill();
+          }
+        }
+      }
+      catch (DataFormatException e) {
+        String msg = e.getMessage();
+        throw new java.util.zip.ZipException(msg != null ? msg : "Invalid ZLIB data format");
+      }
+    }
+
+    private void fill() throws IOException {
+      if (remaining == 0) {
+        if (dummy) {
+          throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+        // Inflater needs an extra dummy byte when using the 'nowrap' option
+        dummy = true;
+        buf[0] = 0;
+        bufferLength = 1;
+      }
+      else {
+        int len = remaining == -1 ? buf.length : (int) Math.min(buf.length, remaining);
+        bufferLength = in.read(buf, 0, len);
+        if (bufferLength == -1) {
+          throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+        if (remaining != -1) {
+          remaining -= bufferLength;
+        }
+      }
+      inf.setInput(buf, 0, bufferLength);
+    }
+
+    /**
+     * Reads the data descriptor and verifies the size and CRC of the entry.
+     */
+    private void finish() throws IOException {
+      eof = true;
+      if (descriptor) {
+        readFully(header, 4);
+        if (ZipLong.getValue(header, 0) == ZipArchive.DD_SIG) {
+          readFully(header, 4);
+        }
+        entry.setCrc(ZipLong.getValue(header, 0));
+        int len = zip64 ? 16 : 8;
+        readFully(header, 4, len);
+        if (zip64) {
+          entry.setCompressedSize(ZipArchive.getLong(header, 4));
+          entry.setSize(ZipArchive.getLong(header, 12));
+        }
+        else {
+          entry.setCompressedSize(ZipLong.getValue(header, 4));
+          entry.setSize(ZipLong.getValue(header, 8));
+        }
+      }
+      if (entry.getSize() != size) {
+        throw new java.util.zip.ZipException("invalid entry size (expected " + entry.getSize() + " but got " + size + " bytes)");
+      }
+      if (entry.getCrc() != crc.getValue()) {
+        throw new java.util.zip.ZipException("invalid entry CRC (expected 0x" + Long.toHexString(entry.getCrc())
+            + " but got 0x" + Long.toHexString(crc.getValue()) + ")");
+      }
+    }
+
+    /**
+     * Moves the source stream to the end of this entry.
+     */
+    void skipRest() throws IOException {
+      if (eof) {
+        return;
+      }
+      if (!descriptor) {
+        // the compressed size is known, no need to decompress
+        eof = true;
+        skipFully(remaining);
+        remaining = 0;
+        return;
+      }
+      byte[] b = new byte[BUFFER_SIZE];
+      while (read(b, 0, b.length) != -1) {
+        // inflate until the end of data
+      }
+    }
+
+    public void close() {
+      // the rest of the entry is skipped when moving to the next one
+    }
+
+  }
+
+}
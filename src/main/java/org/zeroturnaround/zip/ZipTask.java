@@ -0,0 +1,118 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ZIP operation running on another thread.
+ * <p>
+ * The number of entries reached so far is available while the task runs. Cancelling the task with
+ * <code>cancel(true)</code> interrupts it and stops it before the next entry. The files written by a cancelled or
+ * failed task may be incomplete.
+ * </p>
+ * <p>
+ * The listener is told that the task has finished only after its thread has stopped working on it, also when the
+ * task is cancelled while running. So {@link #get()} of a cancelled task may return before the listener is called.
+ * </p>
+ *
+ * @see ZipAsync
+ */
+public final class ZipTask<T> extends FutureTask<T> {
+
+  /** Task running on the current thread. */
+  private static final ThreadLocal<ZipTask<?>> current = new ThreadLocal<ZipTask<?>>();
+
+  private final ZipProgressListener listener;
+  private volatile long entryCount;
+  private volatile String currentEntry;
+  private volatile boolean started;
+  private final AtomicBoolean finished = new AtomicBoolean();
+
+  ZipTask(Callable<T> callable, ZipProgressListener listener) {
+    super(callable);
+    this.listener = listener;
+  }
+
+  public void run() {
+    started = true;
+    current.set(this);
+    try {
+      super.run();
+    }
+    finally {
+      current.remove();
+      // the callable has returned, even if the task was cancelled earlier
+      signalFinished();
+    }
+  }
+
+  protected void done() {
+    // cancel(true) completes the task while the callable may still be running
+    if (!started) {
+      signalFinished();
+    }
+  }
+
+  private void signalFinished() {
+    if (listener != null && finished.compareAndSet(false, true)) {
+      listener.finished(this);
+    }
+  }
+
+  /**
+   * @return number of entries reached so far.
+   */
+  public long getEntryCount() {
+    return entryCount;
+  }
+
+  /**
+   * @return name of the entry being processed or <code>null</code> if none was reached yet.
+   */
+  public String getCurrentEntry() {
+    return currentEntry;
+  }
+
+  /**
+   * Called before processing each entry. Reports the progress of the task running on the current thread, if any,
+   * and stops it if it was cancelled or interrupted.
+   *
+   * @param name name of the entry.
+   * @throws ZipException if the task was cancelled or interrupted.
+   */
+  static void checkpoint(String name) {
+    ZipTask<?> task = current.get();
+    if (task == null) {
+      return;
+    }
+    if (task.isCancelled() || Thread.currentThread().isInterrupted()) {
+      throw new ZipException("Interrupted before processing entry '" + name + "'");
+    }
+    task.currentEntry = name;
+    long count = ++task.entryCount; // only the running thread writes
+    if (task.listener != null) {
+      task.listener.entryStarted(name, count);
+    }
+  }
+
+  public String toString() {
+    return "ZipTask[entries=" + entryCount + ", current=" + currentEntry + (isDone() ? ", done" : "") + "]";
+  }
+
+}
@@ -24,7 +24,10 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
@@ -34,6 +37,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -76,6 +80,14 @@ public final class ZipUtil {
 
   /**
    * Checks if the ZIP file contains the given entry.
+   * <p>
+   * A name like <code>lib/a.jar!/x.class</code> which is not found as it is
+   * points into a nested archive. The same applies to
+   * {@link #unpackEntry(File, String)}, {@link #handle(File, String, ZipEntryCallback)}
+   * and {@link #iterate(File, String[], ZipEntryCallback)}. STORED nested
+   * archives are read directly from the outer file, DEFLATED ones are inflated
+   * once and kept in the {@link NestedArchiveCache#getDefault() default cache}.
+   * </p>
    *
    * @param zip
    *          ZIP file.
@@ -87,7 +99,13 @@ public final class ZipUtil {
     ZipFile zf = null;
     try {
       zf = new ZipFile(zip);
-      return zf.getEntry(name) != null;
+      if (zf.getEntry(name) != null) {
+        return true;
+      }
+      if (NestedArchives.isNested(name)) {
+        return containsNestedEntry(zip, name);
+      }
+      return false;
     }
     catch (IOException e) {
       throw ZipExceptionUtil.rethrow(e);
@@ -184,7 +202,11 @@ public final class ZipUtil {
     ZipFile zf = null;
     try {
       zf = new ZipFile(zip);
-      return doUnpackEntry(zf, name);
+      byte[] result = doUnpackEntry(zf, name);
+      if (result == null && NestedArchives.isNested(name)) {
+        return unpackNestedEntry(zip, name, null);
+      }
+      return result;
     }
     catch (IOException e) {
       throw ZipExceptionUtil.rethrow(e);
@@ -216,7 +238,11 @@ public final class ZipUtil {
       else {
         zf = new ZipFile(zip);
       }
-      return doUnpackEntry(zf, name);
+      byte[] result = doUnpackEntry(zf, name);
+      if (result == null && NestedArchives.isNested(name)) {
+        return unpackNestedEntry(zip, name, charset);
+      }
+      return result;
     }
     catch (IOException e) {
       throw ZipExceptionUtil.rethrow(e);
@@ -343,7 +369,13 @@ public final class ZipUtil {
       else {
         zf = new ZipFile(zip);
       }
-      return doUnpackEntry(zf, name, file);
+      if (doUnpackEntry(zf, name, file)) {
+        return true;
+      }
+      if (NestedArchives.isNested(name)) {
+        return handleNestedEntry(zip, name, new FileUnpacker(file), charset);
+      }
+      return false;
     }
     catch (IOException e) {
       throw ZipExceptionUtil.rethrow(e);
@@ -452,6 +484,151 @@ public final class ZipUtil {
 
   }
 
+  /**
+   * Checks if an archive nested inside the ZIP file contains the given entry.
+   *
+   * @param zip
+   *          ZIP file.
+   * @param path
+   *          nested entry path, e.g. <code>lib/a.jar!/x.class</code>.
+   */
+  private static boolean containsNestedEntry(File zip, String path) throws IOException {
+    ZipArchive archive = NestedArchives.openParent(zip, path, null);
+    if (archive == null) {
+      return false;
+    }
+    try {
+      return archive.getEntry(NestedArchives.entryName(path)) != null;
+    }
+    finally {
+      IOUtils.closeQuietly(archive);
+    }
+  }
+
+  /**
+   * Unpacks a single entry from an archive nested inside the ZIP file.
+   *
+   * @return contents of the entry or <code>null</code> if it was not found.
+   */
+  private static byte[] unpackNestedEntry(File zip, String path, Charset charset) throws IOException {
+    ByteArrayUnpacker action = new ByteArrayUnpacker();
+    if (!handleNestedEntry(zip, path, action, charset))
+      return null; // entry not found
+    return action.getBytes();
+  }
+
+  /**
+   * Executes the given action for a single entry of an archive nested inside
+   * the ZIP file. The entry passed to the action has the whole nested path as
+   * its name.
+   *
+   * @param zip
+   *          ZIP file.
+   * @param path
+   *          nested entry path, e.g. <code>lib/a.jar!/x.class</code>.
+   * @return <code>true</code> if the entry was found.
+   */
+  private static boolean handleNestedEntry(File zip, String path, ZipEntryCallback action, Charset charset) throws IOException {
+    ZipArchive archive = NestedArchives.openParent(zip, path, charset);
+    if (archive == null) {
+      return false;
+    }
+    try {
+      ZipArchiveEntry e = archive.getEntry(NestedArchives.entryName(path));
+      if (e == null) {
+        return false; // entry not found
+      }
+      InputStream in = new BufferedInputStream(archive.getInputStream(e));
+      try {
+        action.process(in, e.toZipEntry(path));
+      }
+      catch (IOException ze) {
+        throw new ZipException("Failed to process zip entry '" + path + "' with action " + action, ze);
+      }
+      finally {
+        IOUtils.closeQuietly(in);
+      }
+      return true;
+    }
+    finally {
+      IOUtils.closeQuietly(archive);
+    }
+  }
+
+  /**
+   * Opens a channel for reading a single entry from any position.
+   * <p>
+   * The contents of a STORED entry are read directly from the ZIP file. A
+   * DEFLATED entry is inflated from its start up to the requested position.
+   * </p>
+   *
+   * @param zip
+   *          ZIP file.
+   * @param name
+   *          entry name.
+   * @return channel to be closed by the caller or <code>null</code> if the
+   *         entry was not found.
+   */
+  public static ZipEntryChannel openEntryChannel(File zip, String name) {
+    ZipArchive archive = null;
+    try {
+      archive = ZipArchive.open(zip);
+      ZipArchiveEntry entry = archive.getEntry(name);
+      if (entry == null || entry.isDirectory()) {
+        return null;
+      }
+      ZipEntryChannel result = new ZipEntryChannel(archive, entry);
+      archive = null;
+      return result;
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    finally {
+      IOUtils.closeQuietly(archive);
+    }
+  }
+
+  /**
+   * Unpacks a range of a single entry from a ZIP file.
+   *
+   * @param zip
+   *          ZIP file.
+   * @param name
+   *          entry name.
+   * @param offset
+   *          position of the first byte within the entry contents.
+   * @param length
+   *          maximum number of bytes to read.
+   * @return bytes of the range, less than <code>length</code> if the entry ends
+   *         before, or <code>null</code> if the entry was not found.
+   *
+   * @see #openEntryChannel(File, String)
+   */
+  public static byte[] readEntryRange(File zip, String name, long offset, int length) {
+    if (offset < 0 || length < 0) {
+      throw new IllegalArgumentException("Negative offset or length");
+    }
+    ZipEntryChannel channel = openEntryChannel(zip, name);
+    if (channel == null) {
+      return null; // entry not found
+    }
+    try {
+      channel.position(offset);
+      ByteBuffer buf = ByteBuffer.allocate((int) Math.max(0, Math.min(length, channel.size() - offset)));
+      while (buf.hasRemaining() && channel.read(buf) != -1) {
+        // read until the end of the range
+      }
+      return buf.array();
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    finally {
+      IOUtils.closeQuietly(channel);
+    }
+  }
+
   /* Traversing ZIP files */
 
   /**
@@ -502,6 +679,7 @@ public final class ZipUtil {
       Enumeration<? extends ZipEntry> en = zf.entries();
       while (en.hasMoreElements()) {
         ZipEntry e = (ZipEntry) en.nextElement();
+        ZipTask.checkpoint(e.getName());
 
         InputStream is = zf.getInputStream(e);
         try {
@@ -575,8 +753,17 @@ public final class ZipUtil {
       for (int i = 0; i < entryNames.length; i++) {
         ZipEntry e = zf.getEntry(entryNames[i]);
         if (e == null) {
+          if (NestedArchives.isNested(entryNames[i])) {
+            try {
+              handleNestedEntry(zip, entryNames[i], action, charset);
+            }
+            catch (ZipBreakException ex) {
+              break;
+            }
+          }
           continue;
         }
+        ZipTask.checkpoint(e.getName());
         InputStream is = zf.getInputStream(e);
         try {
           action.process(is, e);
@@ -708,6 +895,7 @@ public final class ZipUtil {
         in = newCloseShieldZipInputStream(is, charset);
         ZipEntry entry;
         while ((entry = in.getNextEntry()) != null) {
+          ZipTask.checkpoint(entry.getName());
           try {
             action.process(in, entry);
           }
@@ -769,17 +957,25 @@ public final class ZipUtil {
       namesSet.add(entryNames[i]);
     }
     try {
-      ZipInputStream in = null;
+      ZipArchive archive = openArchive(is, charset);
+      if (archive != null) {
+        try {
+          iterate(archive, namesSet, action);
+        }
+        finally {
+          IOUtils.closeQuietly(archive);
+        }
+        return;
+      }
+
+      // the unnecessary entries are skipped without decompressing them if possible
+      ZipStreamReader in = new ZipStreamReader(new BufferedInputStream(is), charset);
       try {
-        in = newCloseShieldZipInputStream(is, charset);
         ZipEntry entry;
-        while ((entry = in.getNextEntry()) != null) {
-          if (!namesSet.contains(entry.getName())) {
-            // skip the unnecessary entry
-            continue;
-          }
+        while ((entry = in.getNextEntry(namesSet)) != null) {
+          ZipTask.checkpoint(entry.getName());
           try {
-            action.process(in, entry);
+            action.process(in.getInputStream(), entry);
           }
           catch (IOException ze) {
             throw new ZipException("Failed to process zip entry '" + entry.getName() + " with action " + action, ze);
@@ -790,9 +986,7 @@ public final class ZipUtil {
         }
       }
       finally {
-        if (in != null) {
-          in.close();
-        }
+        in.close();
       }
     }
     catch (IOException e) {
@@ -800,6 +994,55 @@ public final class ZipUtil {
     }
   }
 
+  /**
+   * Opens the ZIP file behind the given stream for reading its central directory.
+   *
+   * @return archive or <code>null</code> if the stream is not a file stream at the beginning of a ZIP file.
+   */
+  private static ZipArchive openArchive(InputStream is, Charset charset) {
+    if (!(is instanceof FileInputStream)) {
+      return null;
+    }
+    try {
+      FileChannel channel = ((FileInputStream) is).getChannel();
+      if (channel.position() != 0) {
+        return null;
+      }
+      return ZipArchive.open(channel, charset);
+    }
+    catch (IOException e) {
+      log.debug("Failed to read the central directory, reading the stream instead.", e);
+      return null;
+    }
+  }
+
+  /**
+   * Executes the given action for each entry of the archive with one of the given names.
+   *
+   * @param names names of entries to iterate, <code>null</code> means all entries.
+   */
+  private static void iterate(ZipArchive archive, Set<String> names, ZipEntryCallback action) throws IOException {
+    for (ZipArchiveEntry e : archive.entries()) {
+      if (names != null && !names.contains(e.name)) {
+        continue;
+      }
+      ZipTask.checkpoint(e.name);
+      InputStream in = new BufferedInputStream(archive.getInputStream(e));
+      try {
+        action.process(in, e.toZipEntry());
+      }
+      catch (IOException ze) {
+        throw new ZipException("Failed to process zip entry '" + e.name + " with action " + action, ze);
+      }
+      catch (ZipBreakException ex) {
+        break;
+      }
+      finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+  }
+
   /**
    * See @link{ {@link #iterate(InputStream, ZipEntryCallback, Charset)}. It is a
    * shorthand where no Charset is specified.
@@ -818,6 +1061,71 @@ public final class ZipUtil {
     iterate(is, entryNames, action, null);
   }
 
+  /**
+   * Reads the given ZIP file and the archives nested inside it and executes
+   * the given action for each entry.
+   * <p>
+   * Entries which are ZIP archives themselves are iterated instead of being
+   * passed to the action, up to the given depth. The name of each entry passed
+   * to the action is its full path, e.g. <code>lib/a.jar!/x.class</code>. No
+   * temporary files are created. If you want to stop the loop then throw a
+   * ZipBreakException.
+   * </p>
+   *
+   * @param zip
+   *          input ZIP file.
+   * @param maxDepth
+   *          maximum number of nested archive levels to descend into, 0 means
+   *          no nested archives.
+   * @param action
+   *          action to be called for each entry.
+   *
+   * @see ZipEntryCallback
+   */
+  public static void iterateNested(File zip, int maxDepth, ZipEntryCallback action) {
+    iterateNested(zip, maxDepth, action, null);
+  }
+
+  /**
+   * Reads the given ZIP file and the archives nested inside it and executes
+   * the given action for each entry.
+   * <p>
+   * Entries which are ZIP archives themselves are iterated instead of being
+   * passed to the action, up to the given depth. The name of each entry passed
+   * to the action is its full path, e.g. <code>lib/a.jar!/x.class</code>. No
+   * temporary files are created. If you want to stop the loop then throw a
+   * ZipBreakException.
+   * </p>
+   * <p>
+   * If an executor is given, the archives directly inside the ZIP file are
+   * processed in parallel, so the action must be thread-safe.
+   * </p>
+   *
+   * @param zip
+   *          input ZIP file.
+   * @param maxDepth
+   *          maximum number of nested archive levels to descend into, 0 means
+   *          no nested archives.
+   * @param action
+   *          action to be called for each entry.
+   * @param executor
+   *          executor for processing the inner archives, <code>null</code>
+   *          means the current thread.
+   *
+   * @see ZipEntryCallback
+   */
+  public static void iterateNested(File zip, int maxDepth, ZipEntryCallback action, ExecutorService executor) {
+    if (maxDepth < 0) {
+      throw new IllegalArgumentException("Negative depth: " + maxDepth);
+    }
+    try {
+      new NestedIterator(action, maxDepth, executor).iterate(zip);
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+  }
+
   /**
    * Creates a new {@link ZipInputStream} based on the given {@link InputStream}. It will be buffered and close-shielded.
    * Closing the result stream flushes the buffers and frees up resources of the {@link ZipInputStream}. However the source stream itself remains open.
@@ -851,6 +1159,9 @@ public final class ZipUtil {
 
       ZipEntry ze = zf.getEntry(name);
       if (ze == null) {
+        if (NestedArchives.isNested(name)) {
+          return handleNestedEntry(zip, name, action, null);
+        }
         return false; // entry not found
       }
 
@@ -888,7 +1199,7 @@ public final class ZipUtil {
    */
   public static boolean handle(InputStream is, String name, ZipEntryCallback action) {
     SingleZipEntryCallback helper = new SingleZipEntryCallback(name, action);
-    iterate(is, helper);
+    iterate(is, new String[] { name }, helper);
     return helper.found();
   }
 
@@ -914,6 +1225,7 @@ public final class ZipUtil {
       if (name.equals(zipEntry.getName())) {
         found = true;
         action.process(in, zipEntry);
+        throw new ZipBreakException();
       }
     }
 
@@ -923,6 +1235,156 @@ public final class ZipUtil {
 
   }
 
+  /* Reading ZIP files through a RangeReader. */
+
+  /**
+   * Checks if the ZIP file read by the given reader contains the given entry.
+   * Only the central directory is read.
+   *
+   * @param zip
+   *          reader of the ZIP file (it will not be closed automatically).
+   * @param name
+   *          entry name.
+   * @return <code>true</code> if the ZIP file contains the given entry.
+   */
+  public static boolean containsEntry(RangeReader zip, String name) {
+    ZipArchive archive = null;
+    try {
+      archive = ZipArchive.open(zip, null);
+      return archive.getEntry(name) != null;
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    finally {
+      IOUtils.closeQuietly(archive);
+    }
+  }
+
+  /**
+   * Unpacks a single entry from the ZIP file read by the given reader.
+   * Only the central directory and the data of the entry are read.
+   *
+   * @param zip
+   *          reader of the ZIP file (it will not be closed automatically).
+   * @param name
+   *          entry name.
+   * @return contents of the entry or <code>null</code> if it was not found.
+   */
+  public static byte[] unpackEntry(RangeReader zip, String name) {
+    ByteArrayUnpacker action = new ByteArrayUnpacker();
+    if (!handle(zip, name, action))
+      return null; // entry not found
+    return action.getBytes();
+  }
+
+  /**
+   * Unpacks a single entry from the ZIP file read by the given reader to a file.
+   * Only the central directory and the data of the entry are read.
+   *
+   * @param zip
+   *          reader of the ZIP file (it will not be closed automatically).
+   * @param name
+   *          entry name.
+   * @param file
+   *          target file to be created or overwritten.
+   * @return <code>true</code> if the entry was found and unpacked,
+   *         <code>false</code> if the entry was not found.
+   */
+  public static boolean unpackEntry(RangeReader zip, String name, File file) {
+    return handle(zip, name, new FileUnpacker(file));
+  }
+
+  /**
+   * Reads the ZIP file using the given reader and executes the given action for a single entry.
+   * Only the central directory and the data of the entry are read.
+   *
+   * @param zip
+   *          reader of the ZIP file (it will not be closed automatically).
+   * @param name
+   *          entry name.
+   * @param action
+   *          action to be called for this entry.
+   * @return <code>true</code> if the entry was found, <code>false</code> if the
+   *         entry was not found.
+   *
+   * @see ZipEntryCallback
+   */
+  public static boolean handle(RangeReader zip, String name, ZipEntryCallback action) {
+    ZipArchive archive = null;
+    try {
+      archive = ZipArchive.open(zip, null);
+      ZipArchiveEntry e = archive.getEntry(name);
+      if (e == null) {
+        return false; // entry not found
+      }
+
+      InputStream in = new BufferedInputStream(archive.getInputStream(e));
+      try {
+        action.process(in, e.toZipEntry());
+      }
+      finally {
+        IOUtils.closeQuietly(in);
+      }
+      return true;
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    finally {
+      IOUtils.closeQuietly(archive);
+    }
+  }
+
+  /**
+   * Reads the ZIP file using the given reader and executes the given action for each entry.
+   * <p>
+   * For each entry the corresponding input stream is also passed to the action. If you want to stop the loop then throw a ZipBreakException.
+   *
+   * @param zip
+   *          reader of the ZIP file (it will not be closed automatically).
+   * @param action
+   *          action to be called for each entry.
+   *
+   * @see ZipEntryCallback
+   */
+  public static void iterate(RangeReader zip, ZipEntryCallback action) {
+    iterate(zip, (Set<String>) null, action);
+  }
+
+  /**
+   * Reads the ZIP file using the given reader and executes the given action for each given entry.
+   * Only the central directory and the data of the given entries are read.
+   * <p>
+   * For each given entry the corresponding input stream is also passed to the action. If you want to stop the loop then throw a ZipBreakException.
+   *
+   * @param zip
+   *          reader of the ZIP file (it will not be closed automatically).
+   * @param entryNames
+   *          names of entries to iterate
+   * @param action
+   *          action to be called for each entry.
+   *
+   * @see ZipEntryCallback
+   */
+  public static void iterate(RangeReader zip, String[] entryNames, ZipEntryCallback action) {
+    iterate(zip, new HashSet<String>(Arrays.asList(entryNames)), action);
+  }
+
+  private static void iterate(RangeReader zip, Set<String> names, ZipEntryCallback action) {
+    ZipArchive archive = null;
+    try {
+      archive = ZipArchive.open(zip, null);
+      iterate(archive, names, action);
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    finally {
+      IOUtils.closeQuietly(archive);
+    }
+  }
+
   /* Extracting whole ZIP files. */
 
   /**
@@ -996,6 +1458,56 @@ public final class ZipUtil {
     iterate(zip, new Unpacker(outputDir, mapper));
   }
 
+  /**
+   * Unpacks a ZIP file to the given directory creating the files of small entries concurrently.
+   * <p>
+   * The entries are inflated on the calling thread while the files of small entries are created and written by the
+   * given executor, see {@link ZipExecutors#newIoExecutor()}. This pays off for archives of many small files.
+   * <p>
+   * The output directory must not be a file.
+   *
+   * @param zip
+   *          input ZIP file.
+   * @param outputDir
+   *          output directory (created automatically if not found).
+   * @param ioExecutor
+   *          executor writing the files (not shut down).
+   */
+  public static void unpack(File zip, File outputDir, ExecutorService ioExecutor) {
+    unpack(zip, outputDir, IdentityNameMapper.INSTANCE, ioExecutor);
+  }
+
+  /**
+   * Unpacks a ZIP file to the given directory creating the files of small entries concurrently.
+   * <p>
+   * The output directory must not be a file.
+   *
+   * @param zip
+   *          input ZIP file.
+   * @param outputDir
+   *          output directory (created automatically if not found).
+   * @param mapper
+   *          call-back for renaming the entries.
+   * @param ioExecutor
+   *          executor writing the files (not shut down).
+   *
+   * @see #unpack(File, File, ExecutorService)
+   */
+  public static void unpack(File zip, File outputDir, NameMapper mapper, ExecutorService ioExecutor) {
+    log.debug("Extracting '{}' into '{}' concurrently.", zip, outputDir);
+    ZipArchive archive = null;
+    try {
+      archive = ZipArchive.open(zip);
+      ParallelFileIO.unpack(archive, outputDir, mapper, ioExecutor);
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    finally {
+      IOUtils.closeQuietly(archive);
+    }
+  }
+
   /**
    * Unwraps a ZIP file to the given directory shaving of root dir.
    * If there are multiple root dirs or entries in the root of zip,
@@ -1131,7 +1643,7 @@ public final class ZipUtil {
     iterate(is, new Unwrapper(outputDir, mapper));
   }
 
-  private static File makeDestinationFile(File outputDir, String name) throws IOException {
+  static File makeDestinationFile(File outputDir, String name) throws IOException {
     return checkDestinationFileForTraversal(outputDir, name, new File(outputDir, name));
   }
 
@@ -1403,6 +1915,64 @@ public final class ZipUtil {
     pack(rootDir, zip, IdentityNameMapper.INSTANCE, compressionLevel);
   }
 
+  /**
+   * Compresses the given directory and all its sub-directories into a ZIP file reading small files concurrently.
+   * <p>
+   * The files are deflated on the calling thread while small files are read ahead by the given executor, see
+   * {@link ZipExecutors#newIoExecutor()}. This pays off for directories of many small files. The entries are written
+   * in the same order as by {@link #pack(File, File)}.
+   * <p>
+   * The ZIP file must not be a directory and its parent directory must exist.
+   * Will not include the root directory name in the archive.
+   *
+   * @param rootDir
+   *          root directory.
+   * @param zip
+   *          ZIP file that will be created or overwritten.
+   * @param ioExecutor
+   *          executor reading the files (not shut down).
+   */
+  public static void pack(File rootDir, File zip, ExecutorService ioExecutor) {
+    pack(rootDir, zip, IdentityNameMapper.INSTANCE, DEFAULT_COMPRESSION_LEVEL, ioExecutor);
+  }
+
+  /**
+   * Compresses the given directory and all its sub-directories into a ZIP file reading small files concurrently.
+   * <p>
+   * The ZIP file must not be a directory and its parent directory must exist.
+   *
+   * @param sourceDir
+   *          root directory.
+   * @param targetZip
+   *          ZIP file that will be created or overwritten.
+   * @param mapper
+   *          call-back for renaming the entries.
+   * @param compressionLevel
+   *          compression level
+   * @param ioExecutor
+   *          executor reading the files (not shut down).
+   *
+   * @see #pack(File, File, ExecutorService)
+   */
+  public static void pack(File sourceDir, File targetZip, NameMapper mapper, int compressionLevel, ExecutorService ioExecutor) {
+    log.debug("Compressing '{}' into '{}' concurrently.", sourceDir, targetZip);
+    if (!sourceDir.exists()) {
+      throw new ZipException("Given file '" + sourceDir + "' doesn't exist!");
+    }
+    ZipOutputStream out = null;
+    try {
+      out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(targetZip)));
+      out.setLevel(compressionLevel);
+      ParallelFileIO.pack(sourceDir, out, mapper, ioExecutor);
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+
   /**
    * Compresses the given directory and all its sub-directories into a ZIP file.
    * <p>
@@ -1556,6 +2126,7 @@ public final class ZipUtil {
         File fileToPack = filesToPack[i];
 
         ZipEntry zipEntry = ZipEntryUtil.fromFile(mapper.map(fileToPack.getName()), fileToPack);
+        ZipTask.checkpoint(zipEntry.getName());
         out.putNextEntry(zipEntry);
         FileUtils.copy(fileToPack, out);
         out.closeEntry();
@@ -1758,6 +2329,7 @@ public final class ZipUtil {
       String name = mapper.map(path);
       if (name != null) {
         ZipEntry zipEntry = ZipEntryUtil.fromFile(name, file);
+        ZipTask.checkpoint(name);
 
         out.putNextEntry(zipEntry);
 
@@ -1972,6 +2544,7 @@ public final class ZipUtil {
     try {
       ZipOutputStream out = new ZipOutputStream(os);
       for (int i = 0; i < entries.length; i++) {
+        ZipTask.checkpoint(entries[i].getPath());
         addEntry(entries[i], out);
       }
       out.flush();
@@ -2199,6 +2772,7 @@ public final class ZipUtil {
       out = new ZipOutputStream(destOut);
       copyEntries(zip, out);
       for (int i = 0; i < entries.length; i++) {
+        ZipTask.checkpoint(entries[i].getPath());
         addEntry(entries[i], out);
       }
       out.finish();
@@ -2230,6 +2804,7 @@ public final class ZipUtil {
       out = new ZipOutputStream(destOut);
       copyEntries(is, out);
       for (int i = 0; i < entries.length; i++) {
+        ZipTask.checkpoint(entries[i].getPath());
         addEntry(entries[i], out);
       }
       out.finish();
@@ -2372,7 +2947,7 @@ public final class ZipUtil {
    */
   private static void copyEntries(File zip, final ZipOutputStream out) {
     // this one doesn't call copyEntries with ignoredEntries, because that has poorer performance
-    final Set<String> names = new HashSet<String>();
+    final NameSet names = new NameSet();
     iterate(zip, new ZipEntryCallback() {
       public void process(InputStream in, ZipEntry zipEntry) throws IOException {
         String entryName = zipEntry.getName();
@@ -2396,7 +2971,7 @@ public final class ZipUtil {
    */
   private static void copyEntries(InputStream is, final ZipOutputStream out) {
     // this one doesn't call copyEntries with ignoredEntries, because that has poorer performance
-    final Set<String> names = new HashSet<String>();
+    final NameSet names = new NameSet();
     iterate(is, new ZipEntryCallback() {
       public void process(InputStream in, ZipEntry zipEntry) throws IOException {
         String entryName = zipEntry.getName();
@@ -2421,7 +2996,7 @@ public final class ZipUtil {
    *          paths of entries not to copy
    */
   private static void copyEntries(File zip, final ZipOutputStream out, final Set<String> ignoredEntries) {
-    final Set<String> names = new HashSet<String>();
+    final NameSet names = new NameSet();
     final Set<String> dirNames = filterDirEntries(zip, ignoredEntries);
     iterate(zip, new ZipEntryCallback() {
       public void process(InputStream in, ZipEntry zipEntry) throws IOException {
@@ -2633,7 +3208,7 @@ public final class ZipUtil {
     try {
       final ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(destZip)));
       try {
-        final Set<String> names = new HashSet<String>();
+        final NameSet names = new NameSet();
         iterate(zip, new ZipEntryCallback() {
           public void process(InputStream in, ZipEntry zipEntry) throws IOException {
             if (names.add(zipEntry.getName())) {
@@ -2699,7 +3274,7 @@ public final class ZipUtil {
       final ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(destZip)));
       try {
         // Copy and replace entries
-        final Set<String> names = new HashSet<String>();
+        final NameSet names = new NameSet();
         iterate(zip, new ZipEntryCallback() {
           public void process(InputStream in, ZipEntry zipEntry) throws IOException {
             if (names.add(zipEntry.getName())) {
@@ -2719,6 +3294,7 @@ public final class ZipUtil {
 
         // Add new entries
         for (ZipEntrySource zipEntrySource : entryByPath.values()) {
+          ZipTask.checkpoint(zipEntrySource.getPath());
           addEntry(zipEntrySource, out);
         }
       }
@@ -2846,8 +3422,12 @@ public final class ZipUtil {
     if (log.isDebugEnabled())
       log.debug("Copying '" + zip + "' to '" + destZip + "' and transforming entries " + Arrays.asList(entries) + ".");
 
+    ZipArchive source = null;
     try {
-      ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(destZip)));
+      source = ZipArchive.open(zip);
+      // lets transformers copy unchanged entries without compressing them again
+      RawZipOutputStream out = new RawZipOutputStream(new BufferedOutputStream(new FileOutputStream(destZip)));
+      out.setSource(source);
       try {
         TransformerZipEntryCallback action = new TransformerZipEntryCallback(Arrays.asList(entries), out);
         iterate(zip, action);
@@ -2860,6 +3440,50 @@ public final class ZipUtil {
     catch (IOException e) {
       throw ZipExceptionUtil.rethrow(e);
     }
+    finally {
+      IOUtils.closeQuietly(source);
+    }
+  }
+
+  /**
+   * Copies an existing ZIP file and transforms the given entries in it using the given executor.
+   * <p>
+   * The transformers run in parallel, each of them writing its result into memory. The entries that are not
+   * transformed are copied without decompressing them. The new ZIP file keeps the original order of the entries.
+   * The transformers must not depend on each other or on the order they are called in.
+   *
+   * @param zip
+   *          an existing ZIP file (only read).
+   * @param entries
+   *          ZIP entry transformers.
+   * @param destZip
+   *          new ZIP file created.
+   * @param executor
+   *          executor running the transformers (not shut down).
+   * @return <code>true</code> if at least one entry was replaced.
+   */
+  public static boolean transformEntries(File zip, ZipEntryTransformerEntry[] entries, File destZip, ExecutorService executor) {
+    if (log.isDebugEnabled())
+      log.debug("Copying '" + zip + "' to '" + destZip + "' and transforming entries " + Arrays.asList(entries) + " in parallel.");
+
+    ZipArchive source = null;
+    RawZipOutputStream out = null;
+    try {
+      source = ZipArchive.open(zip);
+      out = new RawZipOutputStream(new BufferedOutputStream(new FileOutputStream(destZip)));
+      ParallelTransformer transformer = new ParallelTransformer(Arrays.asList(entries), executor,
+          ParallelTransformer.DEFAULT_MAX_IN_FLIGHT);
+      boolean found = transformer.transform(source, out);
+      out.finish();
+      return found;
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    finally {
+      IOUtils.closeQuietly(out);
+      IOUtils.closeQuietly(source);
+    }
   }
 
   /**
@@ -2942,20 +3566,18 @@ public final class ZipUtil {
 
   private static class TransformerZipEntryCallback implements ZipEntryCallback {
 
-    private final Map<String, ZipEntryTransformer> entryByPath;
-    private final int entryCount;
+    private final TransformerIndex transformers;
     private final ZipOutputStream out;
-    private final Set<String> names = new HashSet<String>();
+    private final NameSet names = new NameSet();
 
     public TransformerZipEntryCallback(List<ZipEntryTransformerEntry> entries, ZipOutputStream out) {
-      entryByPath = transformersByPath(entries);
-      entryCount = entryByPath.size();
+      transformers = new TransformerIndex(entries);
       this.out = out;
     }
 
     public void process(InputStream in, ZipEntry zipEntry) throws IOException {
       if (names.add(zipEntry.getName())) {
-        ZipEntryTransformer entry = (ZipEntryTransformer) entryByPath.remove(zipEntry.getName());
+        ZipEntryTransformer entry = transformers.get(zipEntry.getName());
         if (entry != null) {
           entry.transform(in, zipEntry, out);
         }
@@ -2972,32 +3594,30 @@ public final class ZipUtil {
      * @return <code>true</code> if at least one entry was replaced.
      */
     public boolean found() {
-      return entryByPath.size() < entryCount;
+      return transformers.found();
     }
 
   }
 
   /**
-   * @return transformers by path.
-   */
-  static Map<String, ZipEntryTransformer> transformersByPath(List<ZipEntryTransformerEntry> entries) {
-    Map<String, ZipEntryTransformer> result = new HashMap<String, ZipEntryTransformer>();
-    for (ZipEntryTransformerEntry entry : entries) {
-      result.put(entry.getPath(), entry.getTransformer());
-    }
-    return result;
-  }
-
-  /**
-   * Adds a given ZIP entry to a ZIP file.
+   * Adds a given ZIP entry to a ZIP stream.
    *
    * @param entry
    *          new ZIP entry.
    * @param out
    *          target ZIP stream.
+   * @throws IOException if reading the entry or writing it fails.
+   *
+   * @since 1.14
    */
-  private static void addEntry(ZipEntrySource entry, ZipOutputStream out) throws IOException {
+  public static void addEntry(ZipEntrySource entry, ZipOutputStream out) throws IOException {
     out.putNextEntry(entry.getEntry());
+    if (entry instanceof ByteBufferSource) {
+      // write the buffer directly instead of going through a stream
+      ((ByteBufferSource) entry).writeTo(out);
+      out.closeEntry();
+      return;
+    }
     InputStream in = entry.getInputStream();
     if (in != null) {
       try {
@@ -3010,6 +3630,149 @@ public final class ZipUtil {
     out.closeEntry();
   }
 
+  /* Merging ZIP files. */
+
+  /**
+   * Merges ZIP files into one. If an entry exists in more than one archive the
+   * first one is kept.
+   *
+   * @param sources
+   *          ZIP files to be merged (only read).
+   * @param dest
+   *          new ZIP file created.
+   *
+   * @see #merge(File[], File, ZipMergeResolver)
+   */
+  public static void merge(File[] sources, File dest) {
+    merge(sources, dest, ZipMergeResolver.FIRST_WINS);
+  }
+
+  /**
+   * Merges ZIP files into one.
+   * <p>
+   * The entries are copied in the order of the archives without decompressing
+   * them. Only an entry returned by the resolver that is not one of the
+   * candidates is compressed again, it is added in place of the first
+   * candidate. Duplicate directory entries are always resolved by keeping the
+   * first one.
+   * </p>
+   *
+   * @param sources
+   *          ZIP files to be merged (only read).
+   * @param dest
+   *          new ZIP file created.
+   * @param resolver
+   *          call-back for resolving entries found in more than one archive.
+   */
+  public static void merge(File[] sources, File dest, ZipMergeResolver resolver) {
+    if (log.isDebugEnabled()) {
+      log.debug("Merging " + Arrays.asList(sources) + " into '" + dest + "'.");
+    }
+
+    try {
+      // Read the central directories to find the duplicates first
+      Map<String, MergeEntry> entries = new HashMap<String, MergeEntry>();
+      List<MergeEntry> duplicates = new ArrayList<MergeEntry>();
+      for (int i = 0; i < sources.length; i++) {
+        ZipArchive archive = ZipArchive.open(sources[i]);
+        try {
+          for (ZipArchiveEntry e : archive.entries()) {
+            MergeEntry entry = entries.get(e.name);
+            if (entry == null) {
+              entries.put(e.name, new MergeEntry(i, new ArchiveEntrySource(sources[i], e)));
+            }
+            else if (entry.sources.get(entry.sources.size() - 1) != i) {
+              if (entry.sources.size() == 1) {
+                duplicates.add(entry);
+              }
+              entry.sources.add(i);
+              entry.candidates.add(new ArchiveEntrySource(sources[i], e));
+            }
+          }
+        }
+        finally {
+          IOUtils.closeQuietly(archive);
+        }
+      }
+      for (MergeEntry entry : duplicates) {
+        entry.resolve(resolver);
+      }
+
+      RawZipOutputStream out = null;
+      try {
+        out = new RawZipOutputStream(new BufferedOutputStream(new FileOutputStream(dest)));
+        for (int i = 0; i < sources.length; i++) {
+          ZipArchive archive = ZipArchive.open(sources[i]);
+          try {
+            for (ZipArchiveEntry e : archive.entries()) {
+              MergeEntry entry = entries.get(e.name);
+              if (entry.source != i || entry.written) {
+                continue;
+              }
+              entry.written = true;
+              ZipTask.checkpoint(e.name);
+              if (entry.resolved != null) {
+                addEntry(entry.resolved, out);
+              }
+              else {
+                out.putRawEntry(archive, e);
+              }
+            }
+          }
+          finally {
+            IOUtils.closeQuietly(archive);
+          }
+        }
+        out.finish();
+      }
+      finally {
+        IOUtils.closeQuietly(out);
+      }
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+  }
+
+  /**
+   * Entry found while merging ZIP files.
+   */
+  private static final class MergeEntry {
+
+    /** Indexes of the archives containing the entry. */
+    final List<Integer> sources = new ArrayList<Integer>(1);
+    final List<ArchiveEntrySource> candidates = new ArrayList<ArchiveEntrySource>(1);
+
+    /** Index of the archive where the entry is written, -1 if the entry is skipped. */
+    int source;
+    /** Entry to be compressed into the result or <code>null</code> if the entry is copied from the archive. */
+    ZipEntrySource resolved;
+    boolean written;
+
+    MergeEntry(int source, ArchiveEntrySource candidate) {
+      this.source = source;
+      sources.add(source);
+      candidates.add(candidate);
+    }
+
+    void resolve(ZipMergeResolver resolver) throws IOException {
+      ArchiveEntrySource first = candidates.get(0);
+      if (first.getArchiveEntry().isDirectory()) {
+        return;
+      }
+      ZipEntrySource result = resolver.resolve(first.getPath(), candidates.toArray(new ZipEntrySource[candidates.size()]));
+      source = result == null ? -1 : sources.get(0);
+      for (int i = 0; i < candidates.size(); i++) {
+        if (candidates.get(i) == result) {
+          source = sources.get(i);
+          return;
+        }
+      }
+      resolved = result;
+    }
+
+  }
+
   /* Comparing two ZIP files. */
 
   /**
@@ -3095,6 +3858,7 @@ public final class ZipUtil {
       while (en.hasMoreElements()) {
         ZipEntry e1 = (ZipEntry) en.nextElement();
         String path = e1.getName();
+        ZipTask.checkpoint(path);
         ZipEntry e2 = zf2.getEntry(path);
 
         // Check meta data
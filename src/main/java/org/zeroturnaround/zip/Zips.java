@@ -15,9 +15,12 @@
  */
 package org.zeroturnaround.zip;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -30,7 +33,6 @@ import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -52,6 +54,11 @@ import org.zeroturnaround.zip.transform.ZipEntryTransformerEntry;
  */
 public class Zips {
 
+  /**
+   * Entries larger than this are decompressed into a temporary file when several destinations need them.
+   */
+  private static final long SHARED_IN_MEMORY_LIMIT = 8 * 1024 * 1024;
+
   /**
    * Source archive.
    */
@@ -99,6 +106,11 @@ public class Zips {
    */
   private boolean unpackedResult;
 
+  /**
+   * List<ZipsDestination>
+   */
+  private List<ZipsDestination> destinations = new ArrayList<ZipsDestination>();
+
   private Zips(File src) {
     this.src = src;
   }
@@ -307,11 +319,33 @@ public class Zips {
     return this;
   }
 
+  /**
+   * Adds one of several destinations written in a single pass over the source.
+   * Each destination has its own excluded entries, name mapper and transformers, so
+   * {@link #destination(File)}, {@link #unpack()}, {@link #nameMapper(NameMapper)} and
+   * {@link #addTransformer(String, ZipEntryTransformer)} must not be used together with this.
+   * Added and removed entries apply to all destinations.
+   *
+   * @param destination destination to write
+   * @return this Zips for fluent api
+   */
+  public Zips addDestination(ZipsDestination destination) {
+    this.destinations.add(destination);
+    return this;
+  }
+
   public Zips unpack() {
     this.unpackedResult = true;
     return this;
   }
 
+  /**
+   * @return source archive or <code>null</code> if not given.
+   */
+  File getSource() {
+    return src;
+  }
+
   /**
    * @return true if destination is not specified.
    */
@@ -328,6 +362,7 @@ public class Zips {
 
   /**
    * Registers a transformer for a given entry.
+   * Several transformers of the same entry are applied in the order they were registered, in a single pass.
    *
    * @param path entry to transform
    * @param transformer transformer for the entry
@@ -338,11 +373,28 @@ public class Zips {
     return this;
   }
 
+  /**
+   * Registers a transformer for all entries matching a given pattern.
+   * Transformers of the same entry are applied in the order they were registered, in a single pass.
+   *
+   * @param pattern pattern of the entries to transform, see {@link ZipEntryPattern}
+   * @param transformer transformer for each matching entry
+   * @return this Zips for fluent api
+   */
+  public Zips addTransformer(ZipEntryPattern pattern, ZipEntryTransformer transformer) {
+    this.transformers.add(new ZipEntryTransformerEntry(pattern, transformer));
+    return this;
+  }
+
   /**
    * Iterates through source Zip entries removing or changing them according to
    * set parameters.
    */
   public void process() {
+    if (!destinations.isEmpty()) {
+      processDestinations();
+      return;
+    }
     if (src == null && dest == null) {
       throw new IllegalArgumentException("Source and destination shouldn't be null together");
     }
@@ -379,6 +431,127 @@ public class Zips {
     }
   }
 
+  /**
+   * Writes all destinations reading and decompressing each entry at most once.
+   */
+  private void processDestinations() {
+    if (dest != null || unpackedResult || nameMapper != null || !transformers.isEmpty()) {
+      throw new IllegalStateException("Destination, name mapper and transformers must be set for each destination when several destinations are used");
+    }
+
+    List<Sink> sinks = new ArrayList<Sink>();
+    ZipArchive archive = null;
+    try {
+      for (ZipsDestination destination : destinations) {
+        sinks.add(new Sink(destination, charset, preserveTimestamps));
+      }
+
+      for (ZipEntrySource entrySource : changedEntries) {
+        ZipEntry entry = entrySource.getEntry();
+        for (Sink sink : sinks) {
+          ZipEntry mapped = sink.map(entry);
+          if (mapped == null) {
+            continue;
+          }
+          InputStream in = entrySource.getInputStream();
+          try {
+            sink.process(in, mapped);
+          }
+          finally {
+            IOUtils.closeQuietly(in);
+          }
+        }
+      }
+
+      if (src != null) {
+        final Set<String> removedDirs = ZipUtil.filterDirEntries(src, removedEntries);
+        archive = ZipArchive.open(src, charset);
+        for (Sink sink : sinks) {
+          sink.setSource(archive);
+        }
+        List<Sink> readers = new ArrayList<Sink>();
+        List<String> names = new ArrayList<String>();
+        for (ZipArchiveEntry e : archive.entries()) {
+          if (removedEntries.contains(e.name) || isEntryInDir(removedDirs, e.name)) {
+            continue;
+          }
+          readers.clear();
+          names.clear();
+          for (Sink sink : sinks) {
+            String name = sink.accept(e.name);
+            if (name != null && !sink.copyRaw(archive, e, name)) {
+              readers.add(sink);
+              names.add(name);
+            }
+          }
+          if (!readers.isEmpty()) {
+            processShared(archive, e, readers, names);
+          }
+        }
+      }
+
+      for (Sink sink : sinks) {
+        sink.finish();
+      }
+    }
+    catch (IOException e) {
+      throw ZipExceptionUtil.rethrow(e);
+    }
+    finally {
+      for (Sink sink : sinks) {
+        sink.close();
+      }
+      IOUtils.closeQuietly(archive);
+    }
+  }
+
+  /**
+   * Passes the contents of the entry to all given sinks decompressing it only once.
+   */
+  private static void processShared(ZipArchive archive, ZipArchiveEntry e, List<Sink> readers, List<String> names) throws IOException {
+    if (readers.size() == 1) {
+      InputStream in = archive.getInputStream(e);
+      try {
+        readers.get(0).process(in, e.toZipEntry(names.get(0)));
+      }
+      finally {
+        IOUtils.closeQuietly(in);
+      }
+      return;
+    }
+
+    byte[] bytes = null;
+    File tmp = null;
+    try {
+      InputStream in = archive.getInputStream(e);
+      try {
+        if (e.size <= SHARED_IN_MEMORY_LIMIT) {
+          bytes = IOUtils.toByteArray(in, e.size);
+        }
+        else {
+          tmp = File.createTempFile("zips", null);
+          FileUtils.copy(in, tmp);
+        }
+      }
+      finally {
+        IOUtils.closeQuietly(in);
+      }
+
+      for (int i = 0; i < readers.size(); i++) {
+        InputStream shared = bytes != null ? new ByteArrayInputStream(bytes) : new BufferedInputStream(new FileInputStream(tmp));
+        try {
+          readers.get(i).process(shared, e.toZipEntry(names.get(i)));
+        }
+        finally {
+          IOUtils.closeQuietly(shared);
+        }
+      }
+    }
+    finally {
+      FileUtils.deleteQuietly(tmp);
+    }
+  }
+
   private void processAllEntries(ZipEntryOrInfoAdapter zipEntryAdapter) {
     iterateChangedAndAdded(zipEntryAdapter);
     iterateExistingExceptRemoved(zipEntryAdapter);
@@ -628,18 +801,111 @@ public class Zips {
     return ZipFileUtil.getZipFile(src, charset);
   }
 
+  /**
+   * One of several destinations being written.
+   */
+  private static class Sink {
+
+    private final ZipsDestination destination;
+    /** Output of a destination ZIP file, <code>null</code> when unpacking. */
+    private final RawZipOutputStream out;
+    /** Callback writing a destination ZIP file, <code>null</code> when unpacking. */
+    private final CopyingCallback copying;
+    private final ZipEntryCallback callback;
+    private final NameSet visitedNames = new NameSet();
+
+    private Sink(ZipsDestination destination, Charset charset, boolean preserveTimestamps) throws IOException {
+      this.destination = destination;
+      File file = destination.getFile();
+      if (destination.isUnpack()) {
+        FileUtils.forceMkdir(file);
+        out = null;
+        copying = null;
+        callback = new UnpackingCallback(destination.getTransformers(), file);
+      }
+      else {
+        out = new RawZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)), charset);
+        copying = new CopyingCallback(destination.getTransformers(), out, preserveTimestamps);
+        callback = copying;
+      }
+    }
+
+    /**
+     * @return name of the entry in this destination or <code>null</code> if it is left out or already written.
+     */
+    String accept(String name) {
+      String mapped = destination.map(name);
+      if (mapped == null || !visitedNames.add(mapped)) {
+        return null;
+      }
+      return mapped;
+    }
+
+    /**
+     * @return entry as it is written to this destination or <code>null</code> if it is left out or already written.
+     */
+    ZipEntry map(ZipEntry entry) {
+      String mapped = accept(entry.getName());
+      if (mapped == null) {
+        return null;
+      }
+      return mapped.equals(entry.getName()) ? entry : ZipEntryUtil.copy(entry, mapped);
+    }
+
+    void setSource(ZipArchive archive) {
+      if (out != null) {
+        out.setSource(archive);
+      }
+    }
+
+    /**
+     * Copies the entry without decompressing it if {@link CopyingCallback} would copy it as it is.
+     *
+     * @return <code>true</code> if the entry was copied.
+     */
+    boolean copyRaw(ZipArchive archive, ZipArchiveEntry e, String name) throws IOException {
+      if (copying == null || !copying.copiesAsIs(name)) {
+        return false;
+      }
+      out.putRawEntry(archive, e, name);
+      return true;
+    }
+
+    void process(InputStream in, ZipEntry entry) throws IOException {
+      callback.process(in, entry);
+    }
+
+    void finish() throws IOException {
+      if (out != null) {
+        out.finish();
+      }
+    }
+
+    void close() {
+      IOUtils.closeQuietly(out);
+    }
+
+  }
+
   private static class CopyingCallback implements ZipEntryCallback {
 
-    private final Map<String, ZipEntryTransformer> entryByPath;
+    private final TransformerIndex transformers;
     private final ZipOutputStream out;
-    private final Set<String> visitedNames;
+    private final NameSet visitedNames;
     private final boolean preserveTimestapms;
 
     private CopyingCallback(List<ZipEntryTransformerEntry> transformerEntries, ZipOutputStream out, boolean preserveTimestapms) {
       this.out = out;
       this.preserveTimestapms = preserveTimestapms;
-      entryByPath = ZipUtil.transformersByPath(transformerEntries);
-      visitedNames = new HashSet<String>();
+      transformers = new TransformerIndex(transformerEntries);
+      visitedNames = new NameSet();
+    }
+
+    /**
+     * @return <code>true</code> if the entry is neither transformed nor given a new timestamp.
+     */
+    boolean copiesAsIs(String entryName) {
+      return preserveTimestapms && transformers.get(entryName) == null;
     }
 
     public void process(InputStream in, ZipEntry zipEntry) throws IOException {
@@ -650,7 +916,7 @@ public class Zips {
       }
       visitedNames.add(entryName);
 
-      ZipEntryTransformer transformer = (ZipEntryTransformer) entryByPath.remove(entryName);
+      ZipEntryTransformer transformer = transformers.get(entryName);
       if (transformer == null) { // no transformer
         ZipEntryUtil.copyEntry(zipEntry, in, out, preserveTimestapms);
       }
@@ -662,14 +928,14 @@ public class Zips {
 
   private static class UnpackingCallback implements ZipEntryCallback {
 
-    private final Map<String, ZipEntryTransformer> entryByPath;
-    private final Set<String> visitedNames;
+    private final TransformerIndex transformers;
+    private final NameSet visitedNames;
     private final File destination;
 
     private UnpackingCallback(List<ZipEntryTransformerEntry> entries, File destination) {
       this.destination = destination;
-      this.entryByPath = ZipUtil.transformersByPath(entries);
-      visitedNames = new HashSet<String>();
+      this.transformers = new TransformerIndex(entries);
+      visitedNames = new NameSet();
     }
 
     public void process(InputStream in, ZipEntry zipEntry) throws IOException {
@@ -690,7 +956,7 @@ public class Zips {
         file.createNewFile();
       }
 
-      ZipEntryTransformer transformer = (ZipEntryTransformer) entryByPath.remove(entryName);
+      ZipEntryTransformer transformer = transformers.get(entryName);
       if (transformer == null) { // no transformer
         FileUtils.copy(in, file);
       }
@@ -0,0 +1,149 @@
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.zeroturnaround.zip;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.zeroturnaround.zip.transform.ZipEntryTransformer;
+import org.zeroturnaround.zip.transform.ZipEntryTransformerEntry;
+
+/**
+ * One of several destinations written by {@link Zips} in a single pass over the source.
+ * <p>
+ * Each destination has its own excluded entries, {@link NameMapper} and transformers. If timestamps are preserved
+ * (see {@link Zips#preserveTimestamps()}), entries that are not transformed for a destination ZIP file are copied into
+ * it without decompressing them. Otherwise they get the current time like with a single destination. Entries that
+ * several destinations need to decompress are decompressed only once.
+ * </p>
+ *
+ * <pre>
+ * Zips.get(src)
+ *     .addDestination(ZipsDestination.toFile(full))
+ *     .addDestination(ZipsDestination.toFile(lite).exclude(ZipEntryPattern.glob("docs/**")))
+ *     .addDestination(ZipsDestination.toDirectory(dir).addTransformer("config.xml", transformer))
+ *     .process();
+ * </pre>
+ *
+ * @see Zips#addDestination(ZipsDestination)
+ */
+public final class ZipsDestination {
+
+  private final File file;
+  private final boolean unpack;
+  private final List<ZipEntryPattern> excluded = new ArrayList<ZipEntryPattern>();
+  private final List<ZipEntryTransformerEntry> transformers = new ArrayList<ZipEntryTransformerEntry>();
+  private NameMapper nameMapper;
+
+  private ZipsDestination(File file, boolean unpack) {
+    if (file == null) {
+      throw new IllegalArgumentException("Destination must not be null");
+    }
+    this.file = file;
+    this.unpack = unpack;
+  }
+
+  /**
+   * @param file ZIP file to be created.
+   * @return destination writing the given ZIP file
+   */
+  public static ZipsDestination toFile(File file) {
+    return new ZipsDestination(file, false);
+  }
+
+  /**
+   * @param dir directory to unpack the entries into.
+   * @return destination unpacking the entries into the given directory
+   */
+  public static ZipsDestination toDirectory(File dir) {
+    return new ZipsDestination(dir, true);
+  }
+
+  /**
+   * Leaves out the entries matching the given pattern.
+   * The pattern is matched against the original entry names, before the {@link NameMapper} is applied.
+   *
+   * @param pattern pattern of the entries to leave out, see {@link ZipEntryPattern}
+   * @return this destination for fluent api
+   */
+  public ZipsDestination exclude(ZipEntryPattern pattern) {
+    this.excluded.add(pattern);
+    return this;
+  }
+
+  /**
+   * @param nameMapper to use for the entries of this destination
+   * @return this destination for fluent api
+   */
+  public ZipsDestination nameMapper(NameMapper nameMapper) {
+    this.nameMapper = nameMapper;
+    return this;
+  }
+
+  /**
+   * Registers a transformer for a given entry of this destination.
+   *
+   * @param path entry to transform (after the {@link NameMapper} is applied)
+   * @param transformer transformer for the entry
+   * @return this destination for fluent api
+   */
+  public ZipsDestination addTransformer(String path, ZipEntryTransformer transformer) {
+    this.transformers.add(new ZipEntryTransformerEntry(path, transformer));
+    return this;
+  }
+
+  /**
+   * Registers a transformer for all entries of this destination matching a given pattern.
+   *
+   * @param pattern pattern of the entries to transform (after the {@link NameMapper} is applied)
+   * @param transformer transformer for each matching entry
+   * @return this destination for fluent api
+   */
+  public ZipsDestination addTransformer(ZipEntryPattern pattern, ZipEntryTransformer transformer) {
+    this.transformers.add(new ZipEntryTransformerEntry(pattern, transformer));
+    return this;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  boolean isUnpack() {
+    return unpack;
+  }
+
+  List<ZipEntryTransformerEntry> getTransformers() {
+    return transformers;
+  }
+
+  /**
+   * @return name of the entry in this destination or <code>null</code> if it is left out.
+   */
+  String map(String name) {
+    for (ZipEntryPattern pattern : excluded) {
+      if (pattern.matches(name)) {
+        return null;
+      }
+    }
+    return nameMapper == null ? name : nameMapper.map(name);
+  }
+
+  public String toString() {
+    return "ZipsDestination[" + (unpack ? "dir=" : "file=") + file + "]";
+  }
+
+}
@@ -226,6 +226,37 @@ public class IOUtils {
     return output.toByteArray();
   }
 
+  /**
+   * Get contents of an <code>InputStream</code> as a <code>byte[]</code>.
+   * Use this method instead of <code>toByteArray(InputStream)</code>
+   * when <code>InputStream</code> size is known.
+   * The result is read directly into an array of the given size.
+   *
+   * @param input the <code>InputStream</code> to read from
+   * @param size the size of <code>InputStream</code>
+   * @return the requested byte array
+   * @throws IOException if an I/O error occurs or <code>InputStream</code> size differ from parameter size
+   * @throws IllegalArgumentException if size is less than zero or greater than Integer.MAX_VALUE
+   */
+  public static byte[] toByteArray(InputStream input, long size) throws IOException {
+    if (size < 0 || size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Size must be between zero and Integer max value: " + size);
+    }
+    byte[] data = new byte[(int) size];
+    int offset = 0;
+    int read;
+    while (offset < data.length && (read = input.read(data, offset, data.length - offset)) != -1) {
+      offset += read;
+    }
+    if (offset != data.length) {
+      throw new IOException("Unexpected read size. current: " + offset + ", expected: " + size);
+    }
+    if (input.read() != -1) {
+      throw new IOException("Unexpected read size. current: more than " + size + ", expected: " + size);
+    }
+    return data;
+  }
+
   /**
    * Get the contents of an <code>InputStream</code> as a String
    * using the specified character encoding.
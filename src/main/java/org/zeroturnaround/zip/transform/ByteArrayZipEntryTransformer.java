@@ -1,11 +1,11 @@
 package org.zeroturnaround.zip.transform;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
-import org.zeroturnaround.zip.ByteSource;
 import org.zeroturnaround.zip.commons.IOUtils;
 
 public abstract class ByteArrayZipEntryTransformer implements ZipEntryTransformer {
@@ -37,19 +37,46 @@ public abstract class ByteArrayZipEntryTransformer implements ZipEntryTransforme
 
    */
   public void transform(InputStream in, ZipEntry zipEntry, ZipOutputStream out) throws IOException {
-    byte[] bytes = IOUtils.toByteArray(in);
-    bytes = transform(zipEntry, bytes);
+    byte[] bytes = transform(zipEntry, toByteArray(in, zipEntry.getSize()));
 
-    ByteSource source;
+    // write the result as it is without copying it into a ByteSource
+    ZipEntry entry = new ZipEntry(zipEntry.getName());
+    entry.setSize(bytes.length);
+    entry.setTime(preserveTimestamps() ? zipEntry.getTime() : System.currentTimeMillis());
+    out.putNextEntry(entry);
+    out.write(bytes);
+    out.closeEntry();
+  }
 
-    if (preserveTimestamps()) {
-      source = new ByteSource(zipEntry.getName(), bytes, zipEntry.getTime());
+  /**
+   * Reads the whole stream straight into an array of the expected size if it is known. The size is only a hint,
+   * e.g. an earlier transformer in a chain may have kept the size of the original entry, so the stream is still
+   * read until its end.
+   */
+  private static byte[] toByteArray(InputStream in, long size) throws IOException {
+    if (size < 0 || size > Integer.MAX_VALUE) {
+      return IOUtils.toByteArray(in);
     }
-    else {
-      source = new ByteSource(zipEntry.getName(), bytes);
+    byte[] data = new byte[(int) size];
+    int offset = 0;
+    int read;
+    while (offset < data.length && (read = in.read(data, offset, data.length - offset)) != -1) {
+      offset += read;
     }
-
-    ZipEntrySourceZipEntryTransformer.addEntry(source, out);
+    if (offset < data.length) {
+      byte[] result = new byte[offset];
+      System.arraycopy(data, 0, result, 0, offset);
+      return result;
+    }
+    int next = in.read();
+    if (next == -1) {
+      return data;
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 2 + 1);
+    out.write(data);
+    out.write(next);
+    IOUtils.copy(in, out);
+    return out.toByteArray();
   }
 
   /**
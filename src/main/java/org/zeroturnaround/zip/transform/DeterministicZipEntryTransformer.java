@@ -0,0 +1,19 @@
+package org.zeroturnaround.zip.transform;
+
+/**
+ * Transformer which always produces the same result for the same entry.
+ * <p>
+ * The result may depend only on the name and contents of the entry, not on its modification time or anything else.
+ * Results of such transformers can be cached and copied as they are into other archives containing the same entry
+ * instead of transforming it again.
+ *
+ * @see org.zeroturnaround.zip.ZipEntryTransformerCache
+ */
+public interface DeterministicZipEntryTransformer extends ZipEntryTransformer {
+
+  /**
+   * @return identifier of this transformer, the same for all instances producing the same results.
+   */
+  String getId();
+
+}
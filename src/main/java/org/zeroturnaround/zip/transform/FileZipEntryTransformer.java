@@ -15,8 +15,29 @@ import org.zeroturnaround.zip.commons.IOUtils;
 
 public abstract class FileZipEntryTransformer implements ZipEntryTransformer {
 
+  private final File scratchDir;
+
+  /**
+   * Creates a transformer using the default temporary-file directory for its scratch files.
+   */
+  public FileZipEntryTransformer() {
+    this(null);
+  }
+
+  /**
+   * Creates a transformer using the given directory for its scratch files
+   * (e.g. a directory on a memory based file system).
+   *
+   * @param scratchDir directory for scratch files, null means the default temporary-file directory
+   */
+  public FileZipEntryTransformer(File scratchDir) {
+    this.scratchDir = scratchDir;
+  }
+
   /**
    * Copies and transforms the given file into the output file.
+   * <p>
+   * The output file is created empty before this method is called.
    *
    * @param zipEntry
    *          zip entry metadata
@@ -30,6 +51,25 @@ public abstract class FileZipEntryTransformer implements ZipEntryTransformer {
    */
   protected abstract void transform(ZipEntry zipEntry, File in, File out) throws IOException;
 
+  /**
+   * Tells whether the last call of {@link #transform(ZipEntry, File, File)} left the entry unchanged. An unchanged
+   * entry is written from the input file, or copied from the source archive without compressing it again if
+   * possible. The default implementation returns <code>false</code>, so the output file is always written.
+   *
+   * @param zipEntry
+   *          zip entry metadata
+   * @param in
+   *          file with the original contents
+   * @param out
+   *          file with the transformed contents
+   * @return <code>true</code> if the output file should be ignored and the original entry kept
+   *
+   * @throws IOException if reading the files fails
+   */
+  protected boolean isUnchanged(ZipEntry zipEntry, File in, File out) throws IOException {
+    return false;
+  }
+
   /**
    * Copies the input stream to the file, then transforms the file.
    * FileSource is added then to the output stream.
@@ -47,12 +87,17 @@ public abstract class FileZipEntryTransformer implements ZipEntryTransformer {
     File inFile = null;
     File outFile = null;
     try {
-      inFile = File.createTempFile("zip", null);
-      outFile = File.createTempFile("zip", null);
+      inFile = File.createTempFile("zip", null, scratchDir);
+      outFile = File.createTempFile("zip", null, scratchDir);
       copy(in, inFile);
       transform(zipEntry, inFile, outFile);
-      FileSource source = new FileSource(zipEntry.getName(), outFile);
-      ZipEntrySourceZipEntryTransformer.addEntry(source, out);
+      if (!isUnchanged(zipEntry, inFile, outFile)) {
+        ZipEntrySourceZipEntryTransformer.addEntry(new FileSource(zipEntry.getName(), outFile), out);
+      }
+      else if (!(out instanceof RawEntryCopier) || !((RawEntryCopier) out).copyRawEntry(zipEntry)) {
+        // unchanged but the original can not be copied as it is
+        ZipEntrySourceZipEntryTransformer.addEntry(new FileSource(zipEntry.getName(), inFile), out);
+      }
     }
     finally {
       FileUtils.deleteQuietly(inFile);
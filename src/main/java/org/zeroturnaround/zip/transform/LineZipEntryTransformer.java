@@ -0,0 +1,111 @@
+package org.zeroturnaround.zip.transform;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Transforms a text entry line by line.
+ * <p>
+ * Unlike {@link StringZipEntryTransformer} the entry is never held in memory as a whole. It is decoded in chunks,
+ * each line is passed to {@link #transform(ZipEntry, String)} and the result is encoded straight into the ZIP
+ * stream, so the memory used only depends on the length of the longest line.
+ * </p>
+ * <p>
+ * Lines are separated by <code>"\n"</code> or <code>"\r\n"</code>. The separator is not passed to the
+ * transformation and is written back as it was.
+ * </p>
+ */
+public abstract class LineZipEntryTransformer implements ZipEntryTransformer {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final String encoding;
+
+  public LineZipEntryTransformer() {
+    this(null);
+  }
+
+  /**
+   * @param encoding the encoding to use, null means platform default
+   */
+  public LineZipEntryTransformer(String encoding) {
+    this.encoding = encoding;
+  }
+
+  /**
+   * Transforms a single line of the entry.
+   *
+   * @param zipEntry
+   *          zip entry metadata
+   * @param line
+   *          line without the line separator
+   *
+   * @return transformed line or <code>null</code> to leave out the line together with its separator
+   *
+   * @throws IOException if transformation cannot be completed succesfully
+   */
+  protected abstract String transform(ZipEntry zipEntry, String line) throws IOException;
+
+  public void transform(InputStream in, ZipEntry zipEntry, ZipOutputStream out) throws IOException {
+    Charset charset = encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+    // malformed input is replaced the same way as when decoding a whole String
+    Reader reader = new InputStreamReader(in, charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE));
+
+    ZipEntry entry = new ZipEntry(zipEntry.getName());
+    entry.setTime(System.currentTimeMillis());
+    out.putNextEntry(entry);
+    Writer writer = new OutputStreamWriter(out, charset.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE));
+
+    char[] buffer = new char[BUFFER_SIZE];
+    StringBuilder line = new StringBuilder();
+    int n;
+    while ((n = reader.read(buffer)) != -1) {
+      int start = 0;
+      for (int i = 0; i < n; i++) {
+        if (buffer[i] == '\n') {
+          line.append(buffer, start, i - start);
+          writeLine(zipEntry, line, true, writer);
+          line.setLength(0);
+          start = i + 1;
+        }
+      }
+      line.append(buffer, start, n - start);
+    }
+    if (line.length() > 0) {
+      writeLine(zipEntry, line, false, writer);
+    }
+
+    writer.flush();
+    out.closeEntry();
+  }
+
+  private void writeLine(ZipEntry zipEntry, StringBuilder line, boolean terminated, Writer writer) throws IOException {
+    String separator = "";
+    if (terminated) {
+      separator = "\n";
+      int last = line.length() - 1;
+      if (last >= 0 && line.charAt(last) == '\r') {
+        line.setLength(last);
+        separator = "\r\n";
+      }
+    }
+    String result = transform(zipEntry, line.toString());
+    if (result != null) {
+      writer.write(result);
+      writer.write(separator);
+    }
+  }
+
+}
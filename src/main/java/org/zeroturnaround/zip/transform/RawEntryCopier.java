@@ -0,0 +1,25 @@
+package org.zeroturnaround.zip.transform;
+
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+
+/**
+ * ZIP output stream which can copy the entry being transformed from its source archive as it is.
+ * <p>
+ * A transformer which finds that an entry does not need any changes can check whether the output stream passed to
+ * it implements this interface and copy the original compressed data instead of compressing the same contents again.
+ */
+public interface RawEntryCopier {
+
+  /**
+   * Copies the given entry from the source archive without decompressing it.
+   *
+   * @param zipEntry entry being transformed.
+   * @return <code>true</code> if the entry was copied,
+   *         <code>false</code> if there is no source archive or it does not contain the entry.
+   *
+   * @throws IOException if reading or writing fails
+   */
+  boolean copyRawEntry(ZipEntry zipEntry) throws IOException;
+
+}
@@ -2,10 +2,11 @@ package org.zeroturnaround.zip.transform;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
-import org.zeroturnaround.zip.ByteSource;
 import org.zeroturnaround.zip.commons.IOUtils;
 
 public abstract class StringZipEntryTransformer implements ZipEntryTransformer {
@@ -40,9 +41,15 @@ public abstract class StringZipEntryTransformer implements ZipEntryTransformer {
   public void transform(InputStream in, ZipEntry zipEntry, ZipOutputStream out) throws IOException {
     String data = IOUtils.toString(in, encoding);
     data = transform(zipEntry, data);
-    byte[] bytes = encoding == null ? data.getBytes() : data.getBytes(encoding);
-    ByteSource source = new ByteSource(zipEntry.getName(), bytes);
-    ZipEntrySourceZipEntryTransformer.addEntry(source, out);
+
+    // encode straight into the ZIP stream instead of an intermediate array
+    ZipEntry entry = new ZipEntry(zipEntry.getName());
+    entry.setTime(System.currentTimeMillis());
+    out.putNextEntry(entry);
+    Writer writer = encoding == null ? new OutputStreamWriter(out) : new OutputStreamWriter(out, encoding);
+    writer.write(data);
+    writer.flush();
+    out.closeEntry();
   }
 
 }
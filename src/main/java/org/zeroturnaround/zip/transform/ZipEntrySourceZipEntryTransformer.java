@@ -6,7 +6,7 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import org.zeroturnaround.zip.ZipEntrySource;
-import org.zeroturnaround.zip.commons.IOUtils;
+import org.zeroturnaround.zip.ZipUtil;
 
 public class ZipEntrySourceZipEntryTransformer implements ZipEntryTransformer {
 
@@ -29,17 +29,7 @@ public class ZipEntrySourceZipEntryTransformer implements ZipEntryTransformer {
    *          target ZIP stream.
    */
   static void addEntry(ZipEntrySource entry, ZipOutputStream out) throws IOException {
-    out.putNextEntry(entry.getEntry());
-    InputStream in = entry.getInputStream();
-    if (in != null) {
-      try {
-        IOUtils.copy(in, out);
-      }
-      finally {
-        IOUtils.closeQuietly(in);
-      }
-    }
-    out.closeEntry();
+    ZipUtil.addEntry(entry, out);
   }
 
 }
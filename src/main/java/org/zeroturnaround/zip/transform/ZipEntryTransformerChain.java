@@ -0,0 +1,200 @@
+package org.zeroturnaround.zip.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Applies several transformers to the same entry in one pass.
+ * <p>
+ * Each transformer except the last one writes into a ZIP stream which only captures the uncompressed contents of
+ * the entries in memory. They are then passed to the next transformer together with their meta-data. Only the last
+ * transformer writes into the actual ZIP stream, so the entry is compressed once no matter how many transformers
+ * there are. A transformer which writes no entries ends the chain and the entry is left out.
+ * </p>
+ */
+public class ZipEntryTransformerChain implements ZipEntryTransformer {
+
+  private final List<ZipEntryTransformer> transformers;
+
+  public ZipEntryTransformerChain(ZipEntryTransformer... transformers) {
+    this(Arrays.asList(transformers));
+  }
+
+  /**
+   * @param transformers transformers in the order they are applied
+   */
+  public ZipEntryTransformerChain(List<ZipEntryTransformer> transformers) {
+    if (transformers.isEmpty()) {
+      throw new IllegalArgumentException("No transformers given");
+    }
+    this.transformers = Collections.unmodifiableList(new ArrayList<ZipEntryTransformer>(transformers));
+  }
+
+  /**
+   * @return a chain applying the given transformer after the ones of this chain
+   */
+  public ZipEntryTransformerChain append(ZipEntryTransformer transformer) {
+    List<ZipEntryTransformer> list = new ArrayList<ZipEntryTransformer>(transformers);
+    list.add(transformer);
+    return new ZipEntryTransformerChain(list);
+  }
+
+  public List<ZipEntryTransformer> getTransformers() {
+    return transformers;
+  }
+
+  public void transform(InputStream in, ZipEntry zipEntry, ZipOutputStream out) throws IOException {
+    int last = transformers.size() - 1;
+    if (last == 0) {
+      transformers.get(0).transform(in, zipEntry, out);
+      return;
+    }
+
+    CapturingZipOutputStream capture = new CapturingZipOutputStream();
+    try {
+      transformers.get(0).transform(in, zipEntry, capture);
+    }
+    finally {
+      capture.close();
+    }
+    List<CapturedEntry> entries = capture.entries;
+
+    for (int i = 1; i < last && !entries.isEmpty(); i++) {
+      List<CapturedEntry> next = new ArrayList<CapturedEntry>();
+      for (CapturedEntry entry : entries) {
+        capture = new CapturingZipOutputStream();
+        try {
+          transformers.get(i).transform(entry.getInputStream(), entry.entry, capture);
+        }
+        finally {
+          capture.close();
+        }
+        next.addAll(capture.entries);
+      }
+      entries = next;
+    }
+
+    // the contents have changed so the last transformer must not copy the original entry
+    ZipOutputStream shield = new EntryShieldZipOutputStream(out);
+    for (CapturedEntry entry : entries) {
+      transformers.get(last).transform(entry.getInputStream(), entry.entry, shield);
+    }
+    shield.close();
+  }
+
+  public String toString() {
+    return "ZipEntryTransformerChain" + transformers;
+  }
+
+  private static class CapturedEntry {
+
+    final ZipEntry entry;
+    final ByteArrayOutputStream contents = new ByteArrayOutputStream();
+
+    CapturedEntry(ZipEntry entry) {
+      this.entry = entry;
+    }
+
+    InputStream getInputStream() {
+      return new ByteArrayInputStream(contents.toByteArray());
+    }
+
+  }
+
+  /**
+   * Keeps the uncompressed contents of the entries written into it.
+   */
+  private static class CapturingZipOutputStream extends ZipOutputStream {
+
+    final List<CapturedEntry> entries = new ArrayList<CapturedEntry>();
+    private CapturedEntry current;
+
+    CapturingZipOutputStream() {
+      super(new ByteArrayOutputStream(0));
+      def.end(); // never used
+    }
+
+    public void putNextEntry(ZipEntry e) {
+      current = new CapturedEntry(e);
+      entries.add(current);
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (current == null) {
+        throw new java.util.zip.ZipException("no current ZIP entry");
+      }
+      current.contents.write(b, off, len);
+    }
+
+    public void closeEntry() {
+      current = null;
+    }
+
+    public void finish() {
+      current = null;
+    }
+
+    public void close() {
+      current = null;
+    }
+
+  }
+
+  /**
+   * Passes entries on to another ZIP stream without finishing or closing it.
+   */
+  private static class EntryShieldZipOutputStream extends ZipOutputStream {
+
+    private final ZipOutputStream out;
+
+    EntryShieldZipOutputStream(ZipOutputStream out) {
+      super(new ByteArrayOutputStream(0));
+      def.end(); // never used
+      this.out = out;
+    }
+
+    public void setComment(String comment) {
+      out.setComment(comment);
+    }
+
+    public void setMethod(int method) {
+      out.setMethod(method);
+    }
+
+    public void setLevel(int level) {
+      out.setLevel(level);
+    }
+
+    public void putNextEntry(ZipEntry e) throws IOException {
+      out.putNextEntry(e);
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    public void closeEntry() throws IOException {
+      out.closeEntry();
+    }
+
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    public void finish() {
+    }
+
+    public void close() {
+    }
+
+  }
+
+}
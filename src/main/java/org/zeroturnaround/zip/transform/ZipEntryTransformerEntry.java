@@ -1,31 +1,56 @@
 package org.zeroturnaround.zip.transform;
 
+import org.zeroturnaround.zip.ZipEntryPattern;
+
 /**
- * A transformer assigned to a certain ZIP entry.
+ * A transformer assigned to a certain ZIP entry or to all entries matching a pattern.
  * 
  * @author Rein Raudjärv
  */
 public class ZipEntryTransformerEntry {
 
   private final String path;
+
+  private final ZipEntryPattern pattern;
   
   private final ZipEntryTransformer transformer;
 
   public ZipEntryTransformerEntry(String path, ZipEntryTransformer transformer) {
     this.path = path;
+    this.pattern = null;
+    this.transformer = transformer;
+  }
+
+  /**
+   * @param pattern pattern of the entries to transform
+   * @param transformer transformer for each matching entry
+   */
+  public ZipEntryTransformerEntry(ZipEntryPattern pattern, ZipEntryTransformer transformer) {
+    this.path = null;
+    this.pattern = pattern;
     this.transformer = transformer;
   }
   
+  /**
+   * @return path of the entry or <code>null</code> if a pattern is used instead
+   */
   public String getPath() {
     return path;
   }
+
+  /**
+   * @return pattern of the entries or <code>null</code> if an exact path is used instead
+   */
+  public ZipEntryPattern getPattern() {
+    return pattern;
+  }
   
   public ZipEntryTransformer getTransformer() {
     return transformer;
   }
 
   public String toString() {
-    return path + "=" + transformer;
+    return (pattern == null ? path : pattern.toString()) + "=" + transformer;
   }
 
 }
@@ -0,0 +1,66 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.commons.IOUtils;
+
+import junit.framework.TestCase;
+
+public class ByteBufferSourceTest extends TestCase {
+
+  private static final byte[] BYTES = "0123456789".getBytes();
+
+  public void testNoCopy() throws Exception {
+    ByteBuffer buf = ByteBuffer.wrap(BYTES);
+    buf.position(2);
+    buf.limit(8);
+    ByteBufferSource source = new ByteBufferSource("a.txt", buf);
+    assertEquals(6, source.getEntry().getSize());
+    assertEquals(-1, source.getEntry().getCrc()); // not needed for DEFLATED
+    assertEquals("234567", new String(IOUtils.toByteArray(source.getInputStream())));
+    assertTrue(source.getByteBuffer().isReadOnly());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    source.writeTo(out);
+    assertEquals("234567", out.toString());
+    // the buffer itself is not touched
+    assertEquals(2, buf.position());
+  }
+
+  public void testStoredDirect() throws Exception {
+    ByteBuffer direct = ByteBuffer.allocateDirect(BYTES.length);
+    direct.put(BYTES);
+    direct.flip();
+    ByteBufferSource source = new ByteBufferSource("b.txt", direct, ZipEntry.STORED);
+    CRC32 crc = new CRC32();
+    crc.update(BYTES);
+    assertEquals(crc.getValue(), source.getEntry().getCrc());
+
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    ZipUtil.pack(new ZipEntrySource[] { source, new ByteBufferSource("c.txt", ByteBuffer.wrap(BYTES)) }, zip);
+    byte[] bytes = zip.toByteArray();
+    assertTrue(Arrays.equals(BYTES, ZipUtil.unpackEntry(new ByteArrayInputStream(bytes), "b.txt")));
+    assertTrue(Arrays.equals(BYTES, ZipUtil.unpackEntry(new ByteArrayInputStream(bytes), "c.txt")));
+  }
+
+}
@@ -0,0 +1,191 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.commons.IOUtils;
+
+import junit.framework.TestCase;
+
+public class ConcurrentZipFileTest extends TestCase {
+
+  private static final int ENTRIES = 20;
+
+  private File zip;
+  private byte[][] contents;
+
+  protected void setUp() throws Exception {
+    zip = File.createTempFile("concurrent", ".zip");
+    Random random = new Random(1);
+    contents = new byte[ENTRIES][];
+    ZipEntrySource[] sources = new ZipEntrySource[ENTRIES + 1];
+    for (int i = 0; i < ENTRIES; i++) {
+      contents[i] = new byte[10000 + random.nextInt(50000)];
+      // half random and half compressible
+      for (int j = 0; j < contents[i].length; j++) {
+        contents[i][j] = (byte) (j < contents[i].length / 2 ? random.nextInt() : j % 7);
+      }
+      sources[i] = new ByteSource("entry" + i + ".bin", contents[i]);
+    }
+    sources[ENTRIES] = new ByteSource("dir/", new byte[0]);
+    ZipUtil.pack(sources, zip);
+  }
+
+  protected void tearDown() throws Exception {
+    FileUtils.deleteQuietly(zip);
+  }
+
+  public void testEntries() throws Exception {
+    ConcurrentZipFile zf = new ConcurrentZipFile(zip);
+    try {
+      assertEquals(ENTRIES + 1, zf.size());
+      assertEquals("entry0.bin", zf.getEntryNames().get(0));
+      assertTrue(zf.containsEntry("entry3.bin"));
+      assertFalse(zf.containsEntry("missing"));
+      assertNull(zf.getEntry("missing"));
+      assertNull(zf.unpackEntry("missing"));
+      assertNull(zf.getInputStream("missing"));
+      assertEquals(contents[3].length, zf.getEntry("entry3.bin").getSize());
+
+      InputStream in = zf.getInputStream("entry5.bin");
+      try {
+        assertTrue(Arrays.equals(contents[5], IOUtils.toByteArray(in)));
+      }
+      finally {
+        in.close();
+      }
+    }
+    finally {
+      zf.close();
+    }
+  }
+
+  public void testUnpackToFile() throws Exception {
+    ConcurrentZipFile zf = new ConcurrentZipFile(zip);
+    File target = File.createTempFile("target", ".bin");
+    File dir = File.createTempFile("target", "dir");
+    try {
+      assertTrue(zf.unpackEntry("entry1.bin", target));
+      InputStream in = new FileInputStream(target);
+      try {
+        assertTrue(Arrays.equals(contents[1], IOUtils.toByteArray(in)));
+      }
+      finally {
+        in.close();
+      }
+      assertTrue(zf.unpackEntry("dir/", dir));
+      assertTrue(dir.isDirectory());
+      assertFalse(zf.unpackEntry("missing", target));
+    }
+    finally {
+      zf.close();
+      FileUtils.deleteQuietly(target);
+      FileUtils.deleteQuietly(dir);
+    }
+  }
+
+  public void testConcurrentReads() throws Exception {
+    final ConcurrentZipFile zf = new ConcurrentZipFile(zip);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+      for (int i = 0; i < 200; i++) {
+        final int index = i % ENTRIES;
+        results.add(executor.submit(new Callable<Boolean>() {
+          public Boolean call() {
+            return Boolean.valueOf(Arrays.equals(contents[index], zf.unpackEntry("entry" + index + ".bin")));
+          }
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get().booleanValue());
+      }
+    }
+    finally {
+      executor.shutdown();
+      zf.close();
+    }
+  }
+
+  public void testInterruptedReader() throws Exception {
+    final ConcurrentZipFile zf = new ConcurrentZipFile(zip);
+    try {
+      Thread.currentThread().interrupt();
+      try {
+        zf.unpackEntry("entry0.bin");
+        fail();
+      }
+      catch (ZipException e) {
+        // expected
+      }
+      finally {
+        assertTrue(Thread.interrupted());
+      }
+      // the channel closed by the interrupt is opened again
+      assertTrue(Arrays.equals(contents[1], zf.unpackEntry("entry1.bin")));
+
+      final InputStream in = zf.getInputStream("entry2.bin");
+      try {
+        Thread thread = new Thread() {
+          public void run() {
+            interrupt();
+            try {
+              zf.unpackEntry("entry3.bin");
+            }
+            catch (ZipException e) {
+              // expected
+            }
+          }
+        };
+        thread.start();
+        thread.join();
+        // a stream opened before reads the new channel
+        assertTrue(Arrays.equals(contents[2], IOUtils.toByteArray(in)));
+      }
+      finally {
+        in.close();
+      }
+    }
+    finally {
+      zf.close();
+    }
+  }
+
+  public void testClosed() throws Exception {
+    ConcurrentZipFile zf = new ConcurrentZipFile(zip);
+    zf.close();
+    try {
+      zf.unpackEntry("entry0.bin");
+      fail();
+    }
+    catch (ZipException e) {
+      // expected
+    }
+  }
+
+}
@@ -0,0 +1,110 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.transform.StringZipEntryTransformer;
+
+import junit.framework.TestCase;
+
+public class InMemoryZipTest extends TestCase {
+
+  public void testEmpty() {
+    InMemoryZip zip = new InMemoryZip();
+    assertEquals(0, zip.size());
+    assertTrue(zip.length() > 0);
+    zip.addEntry(new ByteSource("a.txt", "a".getBytes()));
+    assertEquals("a", new String(zip.unpackEntry("a.txt")));
+  }
+
+  public void testChanges() {
+    InMemoryZip zip = new InMemoryZip(16, false); // many small slabs
+    zip.addEntries(new ZipEntrySource[] {
+        new ByteSource("a.txt", "a".getBytes()),
+        new ByteSource("dir/", new byte[0]),
+        new ByteSource("dir/b.txt", "b".getBytes()),
+        new ByteSource("c.txt", "c".getBytes())
+    });
+    assertEquals(Arrays.asList("a.txt", "dir/", "dir/b.txt", "c.txt"), zip.getEntryNames());
+
+    assertTrue(zip.replaceEntry(new ByteSource("a.txt", "A".getBytes())));
+    assertFalse(zip.replaceEntry(new ByteSource("missing.txt", "x".getBytes())));
+    assertEquals("A", new String(zip.unpackEntry("a.txt")));
+    assertEquals("a.txt", zip.getEntryNames().get(0));
+
+    zip.removeEntry("dir/");
+    assertEquals(Arrays.asList("a.txt", "c.txt"), zip.getEntryNames());
+
+    zip.addOrReplaceEntries(new ZipEntrySource[] {
+        new ByteSource("c.txt", "C".getBytes()),
+        new ByteSource("d.txt", "d".getBytes())
+    });
+    assertEquals(Arrays.asList("a.txt", "c.txt", "d.txt"), zip.getEntryNames());
+    assertEquals("C", new String(zip.unpackEntry("c.txt")));
+
+    assertTrue(zip.transformEntry("d.txt", new StringZipEntryTransformer() {
+      protected String transform(ZipEntry zipEntry, String input) {
+        return input + input;
+      }
+    }));
+    assertEquals("dd", new String(zip.unpackEntry("d.txt")));
+    assertNull(zip.unpackEntry("missing.txt"));
+  }
+
+  public void testRoundTrip() throws Exception {
+    byte[] random = new byte[200000];
+    new Random(3).nextBytes(random);
+    File file = File.createTempFile("memory", ".zip");
+    try {
+      ZipUtil.pack(new ZipEntrySource[] {
+          new ByteSource("random.bin", random),
+          new ByteSource("text.txt", "hello".getBytes())
+      }, file);
+
+      InMemoryZip zip = new InMemoryZip(file);
+      zip.removeEntry("text.txt");
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      zip.writeTo(Channels.newChannel(out));
+      assertTrue(zip.toByteBuffers().length > 1);
+
+      ByteBuffer buf = zip.toByteBuffer();
+      assertTrue(buf.isReadOnly());
+      assertEquals(out.size(), buf.remaining());
+
+      InMemoryZip copy = new InMemoryZip(out.toByteArray());
+      assertEquals(1, copy.size());
+      assertTrue(Arrays.equals(random, copy.unpackEntry("random.bin")));
+      assertTrue(Arrays.equals(random, ZipUtil.unpackEntry(new ByteArrayInputStream(zip.toByteArray()), "random.bin")));
+
+      // still usable after joining the buffers
+      zip.addEntry(new ByteSource("new.txt", "new".getBytes()));
+      assertEquals("new", new String(zip.unpackEntry("new.txt")));
+    }
+    finally {
+      FileUtils.deleteQuietly(file);
+    }
+  }
+
+}
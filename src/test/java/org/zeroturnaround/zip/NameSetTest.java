@@ -0,0 +1,61 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import junit.framework.TestCase;
+
+public class NameSetTest extends TestCase {
+
+  public void testAdd() {
+    NameSet names = new NameSet();
+    assertTrue(names.add("a.txt"));
+    assertTrue(names.add("dir/a.txt"));
+    assertFalse(names.add("a.txt"));
+    assertTrue(names.add(""));
+    assertFalse(names.add(""));
+    assertEquals(3, names.size());
+    assertTrue(names.contains("dir/a.txt"));
+    assertFalse(names.contains("dir/b.txt"));
+  }
+
+  public void testNonAscii() {
+    NameSet names = new NameSet();
+    assertTrue(names.add("\u00e4.txt"));
+    assertTrue(names.add("\u4e2d\u6587.txt"));
+    assertTrue(names.add("\ud83d\ude00"));
+    assertTrue(names.add("?"));
+    assertTrue(names.add("\ud83d"));
+    assertFalse(names.add("\u00e4.txt"));
+    assertFalse(names.add("\u4e2d\u6587.txt"));
+    assertFalse(names.add("\ud83d\ude00"));
+    assertTrue(names.contains("\ud83d"));
+    assertFalse(names.contains("\u00e5.txt"));
+    assertEquals(5, names.size());
+  }
+
+  public void testGrow() {
+    NameSet names = new NameSet();
+    for (int i = 0; i < 100000; i++) {
+      assertTrue(names.add("dir" + (i % 100) + "/entry" + i + ".class"));
+    }
+    assertEquals(100000, names.size());
+    for (int i = 0; i < 100000; i++) {
+      assertFalse(names.add("dir" + (i % 100) + "/entry" + i + ".class"));
+    }
+    assertFalse(names.contains("dir0/entry1.class"));
+  }
+
+}
@@ -0,0 +1,166 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.commons.IOUtils;
+
+import junit.framework.TestCase;
+
+public class NestedArchivesTest extends TestCase {
+
+  private File inner;
+  private File outer;
+
+  protected void setUp() throws Exception {
+    inner = File.createTempFile("inner", ".jar");
+    outer = File.createTempFile("outer", ".war");
+    ZipUtil.pack(new ZipEntrySource[] {
+        new ByteSource("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes()),
+        new ByteSource("x.class", "x".getBytes())
+    }, inner);
+    byte[] jar = toByteArray(inner);
+
+    File deepest = File.createTempFile("deepest", ".zip");
+    try {
+      ZipUtil.pack(new ZipEntrySource[] {
+          new ByteSource("WEB-INF/lib/a.jar", jar, ZipEntry.STORED),
+          new ByteSource("WEB-INF/lib/b.jar", jar, ZipEntry.DEFLATED)
+      }, deepest);
+      ZipUtil.pack(new ZipEntrySource[] {
+          new ByteSource("WEB-INF/lib/a.jar", jar, ZipEntry.STORED),
+          new ByteSource("WEB-INF/lib/b.jar", jar, ZipEntry.DEFLATED),
+          new ByteSource("nested.zip", toByteArray(deepest), ZipEntry.DEFLATED)
+      }, outer);
+    }
+    finally {
+      FileUtils.deleteQuietly(deepest);
+    }
+  }
+
+  protected void tearDown() throws Exception {
+    FileUtils.deleteQuietly(inner);
+    FileUtils.deleteQuietly(outer);
+  }
+
+  public void testContainsEntry() {
+    assertTrue(ZipUtil.containsEntry(outer, "WEB-INF/lib/a.jar!/x.class"));
+    assertTrue(ZipUtil.containsEntry(outer, "WEB-INF/lib/b.jar!/x.class"));
+    assertFalse(ZipUtil.containsEntry(outer, "WEB-INF/lib/a.jar!/y.class"));
+    assertFalse(ZipUtil.containsEntry(outer, "WEB-INF/lib/c.jar!/x.class"));
+  }
+
+  public void testUnpackEntry() {
+    assertEquals("x", new String(ZipUtil.unpackEntry(outer, "WEB-INF/lib/a.jar!/x.class")));
+    assertEquals("x", new String(ZipUtil.unpackEntry(outer, "WEB-INF/lib/b.jar!/x.class")));
+    assertEquals("x", new String(ZipUtil.unpackEntry(outer, "nested.zip!/WEB-INF/lib/a.jar!/x.class")));
+    assertEquals("x", new String(ZipUtil.unpackEntry(outer, "nested.zip!/WEB-INF/lib/b.jar!/x.class")));
+    assertNull(ZipUtil.unpackEntry(outer, "nested.zip!/WEB-INF/lib/b.jar!/y.class"));
+  }
+
+  public void testUnpackEntryToFile() throws IOException {
+    File file = File.createTempFile("manifest", ".mf");
+    try {
+      assertTrue(ZipUtil.unpackEntry(outer, "WEB-INF/lib/b.jar!/META-INF/MANIFEST.MF", file));
+      assertEquals("Manifest-Version: 1.0\n", new String(toByteArray(file)));
+    }
+    finally {
+      FileUtils.deleteQuietly(file);
+    }
+  }
+
+  public void testIterate() {
+    final List<String> names = new ArrayList<String>();
+    ZipUtil.iterate(outer, new String[] { "WEB-INF/lib/a.jar", "WEB-INF/lib/a.jar!/x.class", "missing.jar!/x.class" }, new ZipEntryCallback() {
+      public void process(InputStream in, ZipEntry zipEntry) throws IOException {
+        names.add(zipEntry.getName());
+      }
+    });
+    assertEquals("[WEB-INF/lib/a.jar, WEB-INF/lib/a.jar!/x.class]", names.toString());
+  }
+
+  public void testCacheInMemory() {
+    NestedArchiveCache cache = new NestedArchiveCache(1024 * 1024, 0);
+    NestedArchiveCache.setDefault(cache);
+    try {
+      assertEquals("x", new String(ZipUtil.unpackEntry(outer, "WEB-INF/lib/b.jar!/x.class")));
+      assertTrue(ZipUtil.containsEntry(outer, "WEB-INF/lib/b.jar!/x.class"));
+      assertEquals(1, cache.getMissCount());
+      assertEquals(1, cache.getHitCount());
+      assertTrue(cache.getSize() > 0);
+      assertEquals(0, cache.getDiskSize());
+      cache.clear();
+      assertEquals(0, cache.getSize());
+    }
+    finally {
+      NestedArchiveCache.setDefault(new NestedArchiveCache(NestedArchiveCache.DEFAULT_MAX_SIZE, NestedArchiveCache.DEFAULT_MAX_DISK_SIZE));
+    }
+  }
+
+  public void testCacheOnDisk() {
+    NestedArchiveCache cache = new NestedArchiveCache(0, 1024 * 1024);
+    NestedArchiveCache.setDefault(cache);
+    try {
+      assertEquals("x", new String(ZipUtil.unpackEntry(outer, "WEB-INF/lib/b.jar!/x.class")));
+      assertEquals("x", new String(ZipUtil.unpackEntry(outer, "nested.zip!/WEB-INF/lib/b.jar!/x.class")));
+      assertEquals("x", new String(ZipUtil.unpackEntry(outer, "nested.zip!/WEB-INF/lib/b.jar!/x.class")));
+      assertEquals(3, cache.getMissCount());
+      assertEquals(2, cache.getHitCount());
+      assertEquals(0, cache.getSize());
+      assertTrue(cache.getDiskSize() > 0);
+      cache.clear();
+      assertEquals(0, cache.getDiskSize());
+      assertEquals("x", new String(ZipUtil.unpackEntry(outer, "WEB-INF/lib/b.jar!/x.class")));
+    }
+    finally {
+      NestedArchiveCache.setDefault(new NestedArchiveCache(NestedArchiveCache.DEFAULT_MAX_SIZE, NestedArchiveCache.DEFAULT_MAX_DISK_SIZE));
+    }
+  }
+
+  public void testCacheDisabled() {
+    NestedArchiveCache cache = new NestedArchiveCache(0, 0);
+    NestedArchiveCache.setDefault(cache);
+    try {
+      assertEquals("x", new String(ZipUtil.unpackEntry(outer, "WEB-INF/lib/b.jar!/x.class")));
+      assertEquals("x", new String(ZipUtil.unpackEntry(outer, "WEB-INF/lib/b.jar!/x.class")));
+      assertEquals(2, cache.getMissCount());
+      assertEquals(0, cache.getHitCount());
+      assertEquals(0, cache.getDiskSize());
+    }
+    finally {
+      NestedArchiveCache.setDefault(new NestedArchiveCache(NestedArchiveCache.DEFAULT_MAX_SIZE, NestedArchiveCache.DEFAULT_MAX_DISK_SIZE));
+    }
+  }
+
+  private static byte[] toByteArray(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      return IOUtils.toByteArray(in);
+    }
+    finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+}
@@ -0,0 +1,153 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.commons.IOUtils;
+
+import junit.framework.TestCase;
+
+public class NestedIteratorTest extends TestCase {
+
+  private File zip;
+
+  protected void setUp() throws Exception {
+    File inner = File.createTempFile("inner", ".jar");
+    File middle = File.createTempFile("middle", ".jar");
+    zip = File.createTempFile("outer", ".zip");
+    try {
+      ZipUtil.pack(new ZipEntrySource[] {
+          new ByteSource("x.class", "x".getBytes())
+      }, inner);
+      ZipUtil.pack(new ZipEntrySource[] {
+          new ByteSource("y.class", "y".getBytes()),
+          new ByteSource("lib/inner.jar", toByteArray(inner))
+      }, middle);
+      ZipUtil.pack(new ZipEntrySource[] {
+          new ByteSource("a.txt", "a".getBytes()),
+          new ByteSource("lib/middle.jar", toByteArray(middle), ZipEntry.STORED),
+          new ByteSource("lib/inner.jar", toByteArray(inner))
+      }, zip);
+    }
+    finally {
+      FileUtils.deleteQuietly(inner);
+      FileUtils.deleteQuietly(middle);
+    }
+  }
+
+  protected void tearDown() throws Exception {
+    FileUtils.deleteQuietly(zip);
+  }
+
+  public void testIterateNested() {
+    assertEquals("[a.txt=a, lib/inner.jar!/x.class=x, lib/middle.jar!/lib/inner.jar!/x.class=x, lib/middle.jar!/y.class=y]",
+        iterate(2, null).toString());
+  }
+
+  public void testDepthLimit() {
+    assertEquals("[a.txt=a, lib/inner.jar!/x.class=x, lib/middle.jar!/lib/inner.jar=PK, lib/middle.jar!/y.class=y]",
+        iterate(1, null).toString());
+    assertEquals("[a.txt=a, lib/inner.jar=PK, lib/middle.jar=PK]", iterate(0, null).toString());
+  }
+
+  public void testIterateNestedInParallel() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      assertEquals(iterate(2, null), iterate(2, executor));
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testBoundedInParallel() throws IOException {
+    File many = File.createTempFile("many", ".zip");
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    try {
+      byte[] jar = ZipUtil.unpackEntry(zip, "lib/inner.jar");
+      ZipEntrySource[] entries = new ZipEntrySource[NestedIterator.MAX_IN_FLIGHT * 3];
+      for (int i = 0; i < entries.length; i++) {
+        entries[i] = new ByteSource("lib/inner" + i + ".jar", jar);
+      }
+      ZipUtil.pack(entries, many);
+
+      final AtomicInteger count = new AtomicInteger();
+      final AtomicInteger maxQueued = new AtomicInteger();
+      ZipUtil.iterateNested(many, 1, new ZipEntryCallback() {
+        public void process(InputStream in, ZipEntry zipEntry) throws IOException {
+          if (count.incrementAndGet() == 1) {
+            // gives the iterating thread time to submit the other archives
+            try {
+              Thread.sleep(200);
+            }
+            catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+          int queued = executor.getQueue().size();
+          if (queued > maxQueued.get()) {
+            maxQueued.set(queued);
+          }
+        }
+      }, executor);
+
+      assertEquals(entries.length, count.get());
+      assertTrue("Queued " + maxQueued.get(), maxQueued.get() < NestedIterator.MAX_IN_FLIGHT);
+    }
+    finally {
+      executor.shutdown();
+      FileUtils.deleteQuietly(many);
+    }
+  }
+
+  private List<String> iterate(int depth, ExecutorService executor) {
+    final List<String> result = Collections.synchronizedList(new ArrayList<String>());
+    ZipUtil.iterateNested(zip, depth, new ZipEntryCallback() {
+      public void process(InputStream in, ZipEntry zipEntry) throws IOException {
+        String contents = new String(IOUtils.toByteArray(in), "ISO-8859-1");
+        result.add(zipEntry.getName() + "=" + (contents.startsWith("PK") ? "PK" : contents));
+      }
+    }, executor);
+    Collections.sort(result);
+    return result;
+  }
+
+  private static byte[] toByteArray(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      return IOUtils.toByteArray(in);
+    }
+    finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+}
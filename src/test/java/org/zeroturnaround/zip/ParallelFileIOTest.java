@@ -0,0 +1,143 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.commons.IOUtils;
+
+import junit.framework.TestCase;
+
+public class ParallelFileIOTest extends TestCase {
+
+  private ExecutorService executor;
+  private File dir;
+  private File zip;
+  private File expectedZip;
+  private File outputDir;
+
+  protected void setUp() throws Exception {
+    executor = ZipExecutors.newIoExecutor();
+    dir = createTempDir("src");
+    zip = File.createTempFile("parallel", ".zip");
+    expectedZip = File.createTempFile("sequential", ".zip");
+    outputDir = createTempDir("out");
+
+    for (int i = 0; i < 300; i++) {
+      write(new File(dir, "dir" + (i % 7) + "/file" + i + ".txt"), ("file" + i).getBytes());
+    }
+    byte[] large = new byte[ParallelFileIO.SMALL_ENTRY_SIZE * 3];
+    new Random(1).nextBytes(large);
+    write(new File(dir, "large.bin"), large);
+    new File(dir, "empty").mkdirs();
+  }
+
+  protected void tearDown() throws Exception {
+    executor.shutdown();
+    FileUtils.deleteQuietly(dir);
+    FileUtils.deleteQuietly(zip);
+    FileUtils.deleteQuietly(expectedZip);
+    FileUtils.deleteQuietly(outputDir);
+  }
+
+  public void testPackInSameOrder() {
+    ZipUtil.pack(dir, zip, executor);
+    ZipUtil.pack(dir, expectedZip);
+    assertTrue(ZipUtil.archiveEquals(expectedZip, zip));
+    assertEquals(names(expectedZip), names(zip));
+  }
+
+  public void testUnpack() throws IOException {
+    ZipUtil.pack(dir, zip);
+    ZipUtil.unpack(zip, outputDir, executor);
+    for (int i = 0; i < 300; i++) {
+      String path = "dir" + (i % 7) + "/file" + i + ".txt";
+      assertEquals("file" + i, FileUtils.readFileToString(new File(outputDir, path)));
+    }
+    assertTrue(FileUtils.contentEquals(new File(dir, "large.bin"), new File(outputDir, "large.bin")));
+    assertTrue(new File(outputDir, "empty").isDirectory());
+  }
+
+  public void testUnpackSameFileLastWins() throws Exception {
+    byte[] large = new byte[ParallelFileIO.SMALL_ENTRY_SIZE * 2];
+    new Random(2).nextBytes(large);
+    ZipUtil.pack(new ZipEntrySource[] {
+        new ByteSource("small.txt", "small".getBytes()),
+        new ByteSource("large.bin", large)
+    }, zip);
+
+    // delay the write of the small entry
+    ExecutorService slow = Executors.newSingleThreadExecutor();
+    try {
+      slow.submit(new Callable<Void>() {
+        public Void call() throws InterruptedException {
+          Thread.sleep(300);
+          return null;
+        }
+      });
+      ZipUtil.unpack(zip, outputDir, new NameMapper() {
+        public String map(String name) {
+          return "same";
+        }
+      }, slow);
+    }
+    finally {
+      slow.shutdown();
+    }
+    assertTrue(slow.awaitTermination(30, TimeUnit.SECONDS));
+    assertEquals(large.length, new File(outputDir, "same").length());
+  }
+
+  private static List<String> names(File file) {
+    final List<String> result = new ArrayList<String>();
+    ZipUtil.iterate(file, new ZipInfoCallback() {
+      public void process(ZipEntry zipEntry) throws IOException {
+        result.add(zipEntry.getName());
+      }
+    });
+    return result;
+  }
+
+  private static File createTempDir(String prefix) throws IOException {
+    File result = File.createTempFile(prefix, null);
+    FileUtils.deleteQuietly(result);
+    result.mkdirs();
+    return result;
+  }
+
+  private static void write(File file, byte[] data) throws IOException {
+    file.getParentFile().mkdirs();
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(data);
+    }
+    finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+}
@@ -0,0 +1,153 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.commons.IOUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+public class RangeReaderTest extends TestCase {
+
+  private File zip;
+  private byte[] bytes;
+  private byte[] big;
+  private HttpServer server;
+  private URL url;
+  private long served;
+
+  protected void setUp() throws Exception {
+    zip = File.createTempFile("remote", ".zip");
+    big = new byte[1000000];
+    new Random(1).nextBytes(big);
+    ZipUtil.pack(new ZipEntrySource[] {
+        new ByteSource("first.txt", "first".getBytes()),
+        new ByteSource("big.bin", big),
+        new ByteSource("last.txt", "last".getBytes())
+    }, zip);
+    FileInputStream in = new FileInputStream(zip);
+    try {
+      bytes = IOUtils.toByteArray(in);
+    }
+    finally {
+      IOUtils.closeQuietly(in);
+    }
+
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/remote.zip", new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+          exchange.getResponseHeaders().set("Content-Length", String.valueOf(bytes.length));
+          exchange.sendResponseHeaders(200, -1);
+        }
+        else if (range == null) {
+          exchange.sendResponseHeaders(200, bytes.length);
+          exchange.getResponseBody().write(bytes);
+        }
+        else {
+          String[] parts = range.substring("bytes=".length()).split("-");
+          int start = Integer.parseInt(parts[0]);
+          int end = Math.min(Integer.parseInt(parts[1]), bytes.length - 1);
+          exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + bytes.length);
+          exchange.sendResponseHeaders(206, end - start + 1);
+          OutputStream out = exchange.getResponseBody();
+          out.write(bytes, start, end - start + 1);
+          synchronized (RangeReaderTest.this) {
+            served += end - start + 1;
+          }
+        }
+        exchange.close();
+      }
+    });
+    server.start();
+    url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/remote.zip");
+  }
+
+  protected void tearDown() throws Exception {
+    server.stop(0);
+    FileUtils.deleteQuietly(zip);
+  }
+
+  public void testUnpackEntryOverHttp() throws IOException {
+    CachingRangeReader reader = new CachingRangeReader(new HttpRangeReader(url), 16 * 1024, 16);
+    try {
+      assertTrue(ZipUtil.containsEntry(reader, "big.bin"));
+      assertEquals("last", new String(ZipUtil.unpackEntry(reader, "last.txt")));
+      assertEquals("first", new String(ZipUtil.unpackEntry(reader, "first.txt")));
+      assertNull(ZipUtil.unpackEntry(reader, "missing.txt"));
+    }
+    finally {
+      reader.close();
+    }
+    assertTrue(served < bytes.length / 10);
+  }
+
+  public void testIterateOverHttp() throws IOException {
+    final List<String> names = new ArrayList<String>();
+    RangeReader reader = new CachingRangeReader(new HttpRangeReader(url));
+    try {
+      ZipUtil.iterate(reader, new ZipEntryCallback() {
+        public void process(InputStream in, ZipEntry zipEntry) throws IOException {
+          byte[] data = IOUtils.toByteArray(in);
+          if (zipEntry.getName().equals("big.bin")) {
+            assertTrue(Arrays.equals(big, data));
+          }
+          names.add(zipEntry.getName());
+        }
+      });
+    }
+    finally {
+      reader.close();
+    }
+    assertEquals("[first.txt, big.bin, last.txt]", names.toString());
+  }
+
+  public void testCachingCoalescesReads() throws IOException {
+    CachingRangeReader reader = new CachingRangeReader(new FileRangeReader(zip), 1024, 8);
+    try {
+      byte[] b = new byte[3000];
+      assertEquals(3000, reader.read(100, b, 0, b.length));
+      assertTrue(Arrays.equals(Arrays.copyOfRange(bytes, 100, 3100), b));
+      assertEquals(1, reader.getFetchCount());
+      assertEquals(3000, reader.read(100, b, 0, b.length));
+      assertEquals(1, reader.getFetchCount());
+      assertEquals(4, reader.getHitCount());
+      assertEquals(-1, reader.read(bytes.length, b, 0, b.length));
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+}
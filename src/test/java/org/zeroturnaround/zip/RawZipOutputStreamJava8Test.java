@@ -0,0 +1,154 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.commons.IOUtils;
+import org.zeroturnaround.zip.transform.ByteArrayZipEntryTransformer;
+import org.zeroturnaround.zip.transform.ZipEntryTransformerEntry;
+
+public class RawZipOutputStreamJava8Test {
+
+  /** 1974-05-31 in any time zone. */
+  private static final long BEFORE_1980 = 139276800000L;
+
+  @ClassRule
+  public final static SkipIfZipEntryFileTimeNotAvailableRule skipRule = new SkipIfZipEntryFileTimeNotAvailableRule();
+
+  private File expected;
+  private File actual;
+
+  @Before
+  public void setUp() throws IOException {
+    expected = File.createTempFile("expected", ".zip");
+    actual = File.createTempFile("actual", ".zip");
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(expected);
+    FileUtils.deleteQuietly(actual);
+  }
+
+  @Test
+  public void testSameTimeFieldsAsZipOutputStream() throws IOException {
+    write(new ZipOutputStream(new FileOutputStream(expected)));
+    write(new RawZipOutputStream(new FileOutputStream(actual)));
+
+    ZipArchive expectedArchive = ZipArchive.open(expected);
+    ZipArchive actualArchive = ZipArchive.open(actual);
+    try {
+      for (ZipArchiveEntry e : expectedArchive.entries()) {
+        ZipArchiveEntry a = actualArchive.getEntry(e.name);
+        Assert.assertArrayEquals(e.name, e.extra, a.extra);
+        Assert.assertArrayEquals(e.name, expectedArchive.getLocalExtra(e), actualArchive.getLocalExtra(a));
+        Assert.assertEquals(e.name, e.dosTime, a.dosTime);
+      }
+    }
+    finally {
+      IOUtils.closeQuietly(expectedArchive);
+      IOUtils.closeQuietly(actualArchive);
+    }
+  }
+
+  @Test
+  public void testTimeBefore1980() throws IOException {
+    ZipUtil.pack(new ZipEntrySource[] { new ByteSource("old.txt", "old".getBytes(), BEFORE_1980) }, expected);
+    ZipUtil.transformEntries(expected, new ZipEntryTransformerEntry[] {
+        new ZipEntryTransformerEntry("old.txt", new ByteArrayZipEntryTransformer() {
+          protected byte[] transform(ZipEntry zipEntry, byte[] input) {
+            return input;
+          }
+          protected boolean preserveTimestamps() {
+            return true;
+          }
+        })
+    }, actual);
+
+    ZipFile zf = new ZipFile(actual);
+    try {
+      Assert.assertEquals(BEFORE_1980, zf.getEntry("old.txt").getTime());
+    }
+    finally {
+      zf.close();
+    }
+  }
+
+  private static void write(ZipOutputStream out) throws IOException {
+    byte[] extendedTimestamp = new byte[] { 0x55, 0x54, 5, 0, 1, 0, 0x20, 0x71, 0x53 }; // 2014-05-12
+    try {
+      ZipEntry e = new ZipEntry("old.txt");
+      e.setTime(BEFORE_1980);
+      add(out, e);
+
+      e = new ZipEntry("now.txt");
+      e.setTime(1500000000000L);
+      add(out, e);
+
+      e = new ZipEntry("times.txt");
+      e.setTime(1500000000000L);
+      e.setLastAccessTime(FileTime.fromMillis(1500000100000L));
+      e.setCreationTime(FileTime.fromMillis(1400000000000L));
+      add(out, e);
+
+      e = new ZipEntry("future.txt");
+      e.setLastModifiedTime(FileTime.fromMillis(7258118400000L)); // 2200
+      add(out, e);
+
+      e = new ZipEntry("read.txt");
+      e.setTime(1399922688000L);
+      e.setExtra(extendedTimestamp);
+      add(out, e);
+
+      e = new ZipEntry("changed.txt");
+      e.setExtra(extendedTimestamp);
+      e.setTime(1500000000000L);
+      add(out, e);
+
+      e = new ZipEntry("other.txt");
+      byte[] extra = Arrays.copyOf(extendedTimestamp, extendedTimestamp.length + 6);
+      extra[9] = (byte) 0xfe;
+      extra[10] = (byte) 0xca;
+      extra[11] = 2;
+      e.setExtra(extra);
+      e.setTime(1500000000000L);
+      add(out, e);
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  private static void add(ZipOutputStream out, ZipEntry e) throws IOException {
+    out.putNextEntry(e);
+    out.write(e.getName().getBytes());
+    out.closeEntry();
+  }
+
+}
@@ -0,0 +1,191 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+
+import junit.framework.TestCase;
+
+public class ZipAsyncTest extends TestCase {
+
+  private ExecutorService executor;
+  private File zip;
+  private File dir;
+
+  protected void setUp() throws Exception {
+    executor = Executors.newSingleThreadExecutor();
+    zip = File.createTempFile("async", ".zip");
+    dir = File.createTempFile("async", null);
+    FileUtils.deleteQuietly(dir);
+    ZipEntrySource[] entries = new ZipEntrySource[20];
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = new ByteSource("entry" + i + ".txt", ("entry" + i).getBytes());
+    }
+    ZipUtil.pack(entries, zip);
+  }
+
+  protected void tearDown() throws Exception {
+    executor.shutdownNow();
+    FileUtils.deleteQuietly(zip);
+    FileUtils.deleteQuietly(dir);
+  }
+
+  public void testUnpackWithProgress() throws Exception {
+    CountingListener listener = new CountingListener();
+    ZipTask<Void> task = ZipAsync.unpack(zip, dir, executor, listener);
+    task.get(30, TimeUnit.SECONDS);
+
+    assertTrue(listener.finished.await(30, TimeUnit.SECONDS));
+    assertEquals(20, task.getEntryCount());
+    assertEquals(20, listener.count);
+    assertEquals("entry19.txt", task.getCurrentEntry());
+    assertEquals("entry7", FileUtils.readFileToString(new File(dir, "entry7.txt")));
+  }
+
+  public void testReplaceEntriesCountsEachEntryOnce() throws Exception {
+    File dest = File.createTempFile("async", ".zip");
+    try {
+      ZipEntrySource[] entries = new ZipEntrySource[] { new ByteSource("entry3.txt", "replaced".getBytes()) };
+      ZipTask<Boolean> task = ZipAsync.replaceEntries(zip, entries, dest, executor, null);
+      assertEquals(Boolean.TRUE, task.get(30, TimeUnit.SECONDS));
+      assertEquals(20, task.getEntryCount());
+    }
+    finally {
+      FileUtils.deleteQuietly(dest);
+    }
+  }
+
+  public void testAddEntriesCountsNewEntries() throws Exception {
+    File dest = File.createTempFile("async", ".zip");
+    try {
+      ZipEntrySource[] entries = new ZipEntrySource[] { new ByteSource("added.txt", "added".getBytes()) };
+      ZipTask<Void> task = ZipAsync.addEntries(zip, entries, dest, executor, null);
+      task.get(30, TimeUnit.SECONDS);
+      assertEquals(21, task.getEntryCount());
+      assertEquals("added.txt", task.getCurrentEntry());
+    }
+    finally {
+      FileUtils.deleteQuietly(dest);
+    }
+  }
+
+  public void testArchiveEquals() throws Exception {
+    File copy = File.createTempFile("async", ".zip");
+    try {
+      ZipUtil.repack(zip, copy, 1);
+      assertEquals(Boolean.TRUE, ZipAsync.archiveEquals(zip, copy, executor, null).get(30, TimeUnit.SECONDS));
+    }
+    finally {
+      FileUtils.deleteQuietly(copy);
+    }
+  }
+
+  public void testCancel() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch cancelled = new CountDownLatch(1);
+    CountingListener listener = new CountingListener() {
+      public void entryStarted(String name, long count) {
+        super.entryStarted(name, count);
+        started.countDown();
+        // keeps working after the interrupt of cancel(true)
+        boolean interrupted = false;
+        while (cancelled.getCount() > 0) {
+          try {
+            cancelled.await();
+          }
+          catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    ZipTask<Void> task = ZipAsync.unpack(zip, dir, executor, listener);
+    assertTrue(started.await(30, TimeUnit.SECONDS));
+    assertTrue(task.cancel(true));
+    // the worker is still inside the task
+    assertFalse(listener.finished.await(100, TimeUnit.MILLISECONDS));
+    cancelled.countDown();
+
+    assertTrue(listener.finished.await(30, TimeUnit.SECONDS));
+    try {
+      task.get();
+      fail();
+    }
+    catch (CancellationException e) {
+      // expected
+    }
+    // the task stops before the next entry
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    assertEquals(1, task.getEntryCount());
+  }
+
+  public void testCancelBeforeStart() throws Exception {
+    final CountDownLatch blocked = new CountDownLatch(1);
+    executor.submit(new Runnable() {
+      public void run() {
+        try {
+          blocked.await();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    CountingListener listener = new CountingListener();
+    ZipTask<Void> task = ZipAsync.unpack(zip, dir, executor, listener);
+    try {
+      assertTrue(task.cancel(true));
+      assertTrue(listener.finished.await(30, TimeUnit.SECONDS));
+    }
+    finally {
+      blocked.countDown();
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    assertEquals(0, task.getEntryCount());
+    assertEquals(1, listener.finishedCount.get());
+  }
+
+  private static class CountingListener implements ZipProgressListener {
+
+    final CountDownLatch finished = new CountDownLatch(1);
+    final AtomicInteger finishedCount = new AtomicInteger();
+    volatile long count;
+
+    public void entryStarted(String name, long count) {
+      this.count = count;
+    }
+
+    public void finished(ZipTask<?> task) {
+      finishedCount.incrementAndGet();
+      finished.countDown();
+    }
+
+  }
+
+}
@@ -0,0 +1,159 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+
+import junit.framework.TestCase;
+
+public class ZipBatchTest extends TestCase {
+
+  public void testZipsJobs() throws Exception {
+    ZipBatch batch = new ZipBatch();
+    List<File> files = new ArrayList<File>();
+    try {
+      for (int i = 0; i < 10; i++) {
+        File file = File.createTempFile("batch", ".zip");
+        files.add(file);
+        ZipUtil.pack(new ZipEntrySource[] {
+            new ByteSource("a.txt", "a".getBytes()),
+            new ByteSource("docs/b.txt", "b".getBytes())
+        }, file);
+        batch.submit(Zips.get(file).removeEntry("docs/b.txt"));
+      }
+      assertTrue(batch.awaitCompletion(30, TimeUnit.SECONDS));
+
+      assertEquals(10, batch.getSubmittedCount());
+      assertEquals(10, batch.getCompletedCount());
+      assertEquals(0, batch.getFailedCount());
+      assertEquals(batch.getSubmittedBytes(), batch.getProcessedBytes());
+      for (File file : files) {
+        assertTrue(ZipUtil.containsEntry(file, "a.txt"));
+        assertFalse(ZipUtil.containsEntry(file, "docs/b.txt"));
+      }
+    }
+    finally {
+      batch.shutdown();
+      for (File file : files) {
+        FileUtils.deleteQuietly(file);
+      }
+    }
+  }
+
+  public void testFailedJob() throws Exception {
+    ZipBatch batch = new ZipBatch();
+    try {
+      Future<?> failed = batch.submit(new Runnable() {
+        public void run() {
+          ZipUtil.unpackEntry(new File("does-not-exist.zip"), "a.txt");
+        }
+      }, ZipBatch.Lane.IO, 0);
+      batch.submit(new Runnable() {
+        public void run() {
+          // nothing
+        }
+      }, ZipBatch.Lane.IO, 0);
+      batch.awaitCompletion();
+
+      assertEquals(1, batch.getCompletedCount());
+      assertEquals(1, batch.getFailedCount());
+      try {
+        failed.get();
+        fail();
+      }
+      catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof ZipException);
+      }
+    }
+    finally {
+      batch.shutdown();
+    }
+  }
+
+  public void testSmallJobsFirst() throws Exception {
+    ZipBatch batch = new ZipBatch(1, 1, 1);
+    try {
+      final CountDownLatch blocked = new CountDownLatch(1);
+      batch.submit(new Runnable() {
+        public void run() {
+          try {
+            blocked.await();
+          }
+          catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }, ZipBatch.Lane.CPU, 0);
+
+      final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+      batch.submit(new Record(order, "large"), ZipBatch.Lane.CPU, 1000000);
+      batch.submit(new Record(order, "small1"), ZipBatch.Lane.CPU, 1000);
+      batch.submit(new Record(order, "small2"), ZipBatch.Lane.CPU, 1000);
+      blocked.countDown();
+      batch.awaitCompletion();
+
+      assertEquals(3, order.size());
+      assertEquals("small1", order.get(0));
+      assertEquals("small2", order.get(1));
+      assertEquals("large", order.get(2));
+    }
+    finally {
+      batch.shutdown();
+    }
+  }
+
+  public void testSubmitAfterShutdown() throws Exception {
+    ZipBatch batch = new ZipBatch();
+    batch.shutdown();
+    try {
+      batch.submit(new Record(new ArrayList<String>(), "job"), ZipBatch.Lane.IO, 100);
+      fail();
+    }
+    catch (RejectedExecutionException e) {
+      // expected
+    }
+    assertEquals(0, batch.getSubmittedCount());
+    assertEquals(0, batch.getSubmittedBytes());
+    assertTrue(batch.awaitCompletion(1, TimeUnit.SECONDS));
+  }
+
+  private static class Record implements Runnable {
+
+    private final List<String> order;
+    private final String name;
+
+    Record(List<String> order, String name) {
+      this.order = order;
+      this.name = name;
+    }
+
+    public void run() {
+      order.add(name);
+    }
+
+  }
+
+}
@@ -0,0 +1,96 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+
+import junit.framework.TestCase;
+
+public class ZipDiffTest extends TestCase {
+
+  private static final long TIME = 1500000000000L;
+
+  private File oldZip;
+  private File newZip;
+
+  protected void setUp() throws Exception {
+    oldZip = File.createTempFile("old", ".zip");
+    newZip = File.createTempFile("new", ".zip");
+    ZipUtil.pack(new ZipEntrySource[] {
+        new ByteSource("a.txt", "a".getBytes(), TIME),
+        new ByteSource("b.txt", "b".getBytes(), TIME),
+        new ByteSource("c.txt", "c".getBytes(), TIME),
+        new ByteSource("d.txt", "d".getBytes(), TIME)
+    }, oldZip);
+    ZipUtil.pack(new ZipEntrySource[] {
+        new ByteSource("e.txt", "e".getBytes(), TIME),
+        new ByteSource("d.txt", "d".getBytes(), TIME + 60000),
+        new ByteSource("c.txt", "C".getBytes(), TIME),
+        new ByteSource("a.txt", "a".getBytes(), TIME)
+    }, newZip);
+  }
+
+  protected void tearDown() throws Exception {
+    FileUtils.deleteQuietly(oldZip);
+    FileUtils.deleteQuietly(newZip);
+  }
+
+  public void testDiff() {
+    List<ZipEntryDiff> diffs = ZipDiff.diff(oldZip, newZip);
+    assertEquals("[REMOVED b.txt, CHANGED c.txt, METADATA_CHANGED d.txt, ADDED e.txt]", diffs.toString());
+  }
+
+  public void testDiffSameArchive() {
+    assertTrue(ZipDiff.diff(oldZip, oldZip).isEmpty());
+  }
+
+  public void testDiffWithVerifier() {
+    final List<ZipEntryDiff> diffs = new ArrayList<ZipEntryDiff>();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      ZipDiff.diff(oldZip, newZip, new ZipDiffCallback() {
+        public void process(ZipEntryDiff diff) throws IOException {
+          diffs.add(diff);
+        }
+      }, executor);
+    }
+    finally {
+      executor.shutdown();
+    }
+    assertEquals("[REMOVED b.txt, CHANGED c.txt, METADATA_CHANGED d.txt, ADDED e.txt]", diffs.toString());
+    assertNull(diffs.get(0).getNewEntry());
+    assertNull(diffs.get(3).getOldEntry());
+  }
+
+  public void testDiffBreak() {
+    final List<ZipEntryDiff> diffs = new ArrayList<ZipEntryDiff>();
+    ZipDiff.diff(oldZip, newZip, new ZipDiffCallback() {
+      public void process(ZipEntryDiff diff) throws IOException {
+        diffs.add(diff);
+        throw new ZipBreakException();
+      }
+    });
+    assertEquals(1, diffs.size());
+  }
+
+}
@@ -0,0 +1,174 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+
+import junit.framework.TestCase;
+
+public class ZipEntryCacheTest extends TestCase {
+
+  private File zip;
+
+  protected void setUp() throws Exception {
+    zip = File.createTempFile("cache", ".zip");
+    ZipUtil.pack(new ZipEntrySource[] {
+        new ByteSource("a.txt", "aaaa".getBytes()),
+        new ByteSource("b.txt", "bbbb".getBytes()),
+        new ByteSource("c.txt", "cccc".getBytes())
+    }, zip);
+  }
+
+  protected void tearDown() throws Exception {
+    FileUtils.deleteQuietly(zip);
+  }
+
+  public void testHitAndMiss() {
+    ZipEntryCache cache = new ZipEntryCache(1024);
+    assertEquals("aaaa", new String(cache.unpackEntry(zip, "a.txt")));
+    assertEquals("aaaa", new String(cache.unpackEntry(zip, "a.txt")));
+    assertNull(cache.unpackEntry(zip, "missing.txt"));
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getEntryCount());
+    assertEquals(4, cache.getSize());
+  }
+
+  public void testEviction() {
+    ZipEntryCache cache = new ZipEntryCache(8);
+    cache.unpackEntry(zip, "a.txt");
+    cache.unpackEntry(zip, "b.txt");
+    cache.unpackEntry(zip, "a.txt");
+    cache.unpackEntry(zip, "c.txt"); // evicts b.txt
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(8, cache.getSize());
+
+    cache.unpackEntry(zip, "a.txt");
+    assertEquals(2, cache.getHitCount());
+    cache.unpackEntry(zip, "b.txt");
+    assertEquals(4, cache.getMissCount());
+  }
+
+  public void testTooLargeNotCached() {
+    ZipEntryCache cache = new ZipEntryCache(3);
+    assertEquals("aaaa", new String(cache.unpackEntry(zip, "a.txt")));
+    assertEquals(0, cache.getEntryCount());
+    assertEquals(0, cache.getEvictionCount());
+    assertEquals(1, cache.getFileCount());
+  }
+
+  public void testRepeatedMisses() {
+    ZipEntryCache cache = new ZipEntryCache(3);
+    for (int i = 0; i < 3; i++) {
+      assertNull(cache.unpackEntry(zip, "missing.txt"));
+      assertEquals("aaaa", new String(cache.unpackEntry(zip, "a.txt")));
+      assertEquals(1, cache.getFileCount());
+    }
+    assertEquals(0, cache.getEntryCount());
+  }
+
+  public void testFilesBounded() throws Exception {
+    ZipEntryCache cache = new ZipEntryCache(1024);
+    cache.unpackEntry(zip, "a.txt");
+    File[] others = new File[ZipEntryCache.MAX_FILES];
+    try {
+      for (int i = 0; i < others.length; i++) {
+        others[i] = File.createTempFile("cache", ".zip");
+        ZipUtil.pack(new ZipEntrySource[] { new ByteSource("x.txt", "xxxx".getBytes()) }, others[i]);
+        cache.unpackEntry(others[i], "x.txt");
+      }
+      // the first file is forgotten with its contents
+      assertEquals(ZipEntryCache.MAX_FILES, cache.getFileCount());
+      assertEquals(ZipEntryCache.MAX_FILES, cache.getEntryCount());
+      assertEquals(ZipEntryCache.MAX_FILES * 4, cache.getSize());
+      cache.invalidate(others[0]);
+      assertEquals(ZipEntryCache.MAX_FILES - 1, cache.getFileCount());
+    }
+    finally {
+      for (int i = 0; i < others.length; i++) {
+        FileUtils.deleteQuietly(others[i]);
+      }
+    }
+  }
+
+  public void testConcurrentLoading() throws Exception {
+    final ZipEntryCache cache = new ZipEntryCache(1024);
+    final String[] names = { "a.txt", "missing.txt", "b.txt", "c.txt" };
+    final String[] contents = { "aaaa", null, "bbbb", "cccc" };
+    final AtomicReference<String> failure = new AtomicReference<String>();
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      final int offset = i;
+      threads[i] = new Thread() {
+        public void run() {
+          for (int j = 0; j < 100; j++) {
+            int k = (offset + j) % names.length;
+            byte[] bytes = cache.unpackEntry(zip, names[k]);
+            String actual = bytes == null ? null : new String(bytes);
+            if (contents[k] == null ? actual != null : !contents[k].equals(actual)) {
+              failure.set(names[k] + ": " + actual);
+            }
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].join();
+    }
+    assertNull(failure.get());
+    assertEquals(1, cache.getFileCount());
+    assertEquals(3, cache.getEntryCount());
+    assertEquals(12, cache.getSize());
+    assertEquals(600, cache.getHitCount() + cache.getMissCount());
+  }
+
+  public void testInvalidatedWhenChanged() throws Exception {
+    ZipEntryCache cache = new ZipEntryCache(1024);
+    assertEquals("aaaa", new String(cache.unpackEntry(zip, "a.txt")));
+    ZipUtil.replaceEntry(zip, new ByteSource("a.txt", "changed".getBytes()));
+    zip.setLastModified(zip.lastModified() + 2000);
+    assertEquals("changed", new String(cache.unpackEntry(zip, "a.txt")));
+    assertEquals(0, cache.getHitCount());
+    assertEquals(1, cache.getEntryCount());
+  }
+
+  public void testDirectBuffer() {
+    ZipEntryCache cache = new ZipEntryCache(1024, true);
+    ByteBuffer buf = cache.getEntryBuffer(zip, "b.txt");
+    assertTrue(buf.isReadOnly());
+    assertEquals(4, buf.remaining());
+    assertEquals('b', buf.get(0));
+    assertEquals("bbbb", new String(cache.unpackEntry(zip, "b.txt")));
+    assertEquals(1, cache.getHitCount());
+  }
+
+  public void testClear() {
+    ZipEntryCache cache = new ZipEntryCache(1024);
+    cache.unpackEntry(zip, "a.txt");
+    cache.invalidate(zip);
+    assertEquals(0, cache.getEntryCount());
+    cache.unpackEntry(zip, "a.txt");
+    cache.clear();
+    assertEquals(0, cache.getSize());
+    assertEquals(2, cache.getMissCount());
+  }
+
+}
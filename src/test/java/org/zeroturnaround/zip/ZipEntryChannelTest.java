@@ -0,0 +1,88 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+
+import junit.framework.TestCase;
+
+public class ZipEntryChannelTest extends TestCase {
+
+  private File zip;
+  private byte[] data;
+
+  protected void setUp() throws Exception {
+    zip = File.createTempFile("channel", ".zip");
+    data = new byte[100000];
+    new Random(1).nextBytes(data);
+    ZipUtil.pack(new ZipEntrySource[] {
+        new ByteSource("stored.bin", data, ZipEntry.STORED),
+        new ByteSource("deflated.bin", data, ZipEntry.DEFLATED)
+    }, zip);
+  }
+
+  protected void tearDown() throws Exception {
+    FileUtils.deleteQuietly(zip);
+  }
+
+  public void testReadEntryRange() {
+    assertRange("stored.bin");
+    assertRange("deflated.bin");
+    assertNull(ZipUtil.readEntryRange(zip, "missing.bin", 0, 10));
+  }
+
+  private void assertRange(String name) {
+    byte[] range = ZipUtil.readEntryRange(zip, name, 50000, 1000);
+    assertTrue(Arrays.equals(Arrays.copyOfRange(data, 50000, 51000), range));
+    range = ZipUtil.readEntryRange(zip, name, data.length - 10, 1000);
+    assertTrue(Arrays.equals(Arrays.copyOfRange(data, data.length - 10, data.length), range));
+    assertEquals(0, ZipUtil.readEntryRange(zip, name, data.length + 10, 1000).length);
+  }
+
+  public void testSeekBackwards() throws IOException {
+    ZipEntryChannel channel = ZipUtil.openEntryChannel(zip, "deflated.bin");
+    try {
+      assertEquals(data.length, channel.size());
+      ByteBuffer buf = ByteBuffer.allocateDirect(100);
+      channel.position(90000);
+      while (buf.hasRemaining()) {
+        channel.read(buf);
+      }
+      assertEquals(90100, channel.position());
+      assertEquals(data[90000], buf.get(0));
+
+      buf.clear();
+      channel.position(10);
+      channel.read(buf);
+      assertEquals(data[10], buf.get(0));
+
+      channel.position(data.length);
+      assertEquals(-1, channel.read(buf));
+    }
+    finally {
+      channel.close();
+    }
+    assertFalse(channel.isOpen());
+  }
+
+}
@@ -0,0 +1,128 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.transform.StringZipEntryTransformer;
+import org.zeroturnaround.zip.transform.ZipEntryTransformer;
+import org.zeroturnaround.zip.transform.ZipEntryTransformerEntry;
+
+import junit.framework.TestCase;
+
+public class ZipEntryPatternTest extends TestCase {
+
+  public void testGlob() {
+    ZipEntryPattern properties = ZipEntryPattern.glob("**/*.properties");
+    assertTrue(properties.matches("a.properties"));
+    assertTrue(properties.matches("x/y/a.properties"));
+    assertFalse(properties.matches("a.properties.bak"));
+
+    ZipEntryPattern acme = ZipEntryPattern.glob("com/acme/**");
+    assertTrue(acme.matches("com/acme/A.class"));
+    assertTrue(acme.matches("com/acme/x/B.class"));
+    assertFalse(acme.matches("com/other/A.class"));
+
+    ZipEntryPattern classes = ZipEntryPattern.glob("com/acme/**/*.class");
+    assertTrue(classes.matches("com/acme/A.class"));
+    assertTrue(classes.matches("com/acme/x/B.class"));
+    assertFalse(classes.matches("com/acme/x/B.txt"));
+
+    ZipEntryPattern single = ZipEntryPattern.glob("META-INF/*.SF");
+    assertTrue(single.matches("META-INF/A.SF"));
+    assertFalse(single.matches("META-INF/x/A.SF"));
+
+    ZipEntryPattern question = ZipEntryPattern.glob("file?.txt");
+    assertTrue(question.matches("file1.txt"));
+    assertFalse(question.matches("file12.txt"));
+    assertFalse(question.matches("filex.txt.gz"));
+
+    assertTrue(ZipEntryPattern.glob("a+b(1).txt").matches("a+b(1).txt"));
+    assertTrue(ZipEntryPattern.regex(".*/v\\d+/.*").matches("api/v2/x.json"));
+  }
+
+  public void testIndex() {
+    final ZipEntryTransformer a = new Named("a");
+    final ZipEntryTransformer b = new Named("b");
+    final ZipEntryTransformer c = new Named("c");
+    TransformerIndex index = new TransformerIndex(new ArrayList<ZipEntryTransformerEntry>(Arrays.asList(
+        new ZipEntryTransformerEntry(ZipEntryPattern.glob("**/*.properties"), a),
+        new ZipEntryTransformerEntry(ZipEntryPattern.glob("conf/**"), b),
+        new ZipEntryTransformerEntry("conf/app.properties", c))));
+    assertNull(index.get("Main.class"));
+    assertFalse(index.found());
+    assertSame(a, index.get("x.properties"));
+    assertSame(b, index.get("conf/logback.xml"));
+    assertEquals("ZipEntryTransformerChain[a, b, c]", index.get("conf/app.properties").toString());
+    assertTrue(index.found());
+  }
+
+  public void testTransformByPattern() throws IOException {
+    File src = File.createTempFile("pattern", ".zip");
+    File dest = File.createTempFile("pattern", ".zip");
+    try {
+      ZipUtil.pack(new ZipEntrySource[] {
+          new ByteSource("a.properties", "a".getBytes()),
+          new ByteSource("dir/b.properties", "b".getBytes()),
+          new ByteSource("c.txt", "c".getBytes())
+      }, src);
+      ZipEntryTransformer upperCase = new StringZipEntryTransformer() {
+        protected String transform(ZipEntry zipEntry, String input) {
+          return input.toUpperCase();
+        }
+      };
+
+      assertTrue(ZipUtil.transformEntries(src, new ZipEntryTransformerEntry[] {
+          new ZipEntryTransformerEntry(ZipEntryPattern.glob("**/*.properties"), upperCase)
+      }, dest));
+      assertEquals("A", new String(ZipUtil.unpackEntry(dest, "a.properties")));
+      assertEquals("B", new String(ZipUtil.unpackEntry(dest, "dir/b.properties")));
+      assertEquals("c", new String(ZipUtil.unpackEntry(dest, "c.txt")));
+
+      Zips.get(src).addTransformer(ZipEntryPattern.regex("[^/]*\\.txt"), upperCase).destination(dest).process();
+      assertEquals("C", new String(ZipUtil.unpackEntry(dest, "c.txt")));
+      assertEquals("a", new String(ZipUtil.unpackEntry(dest, "a.properties")));
+    }
+    finally {
+      FileUtils.deleteQuietly(src);
+      FileUtils.deleteQuietly(dest);
+    }
+  }
+
+  private static class Named extends StringZipEntryTransformer {
+
+    private final String name;
+
+    Named(String name) {
+      this.name = name;
+    }
+
+    protected String transform(ZipEntry zipEntry, String input) {
+      return input;
+    }
+
+    public String toString() {
+      return name;
+    }
+
+  }
+
+}
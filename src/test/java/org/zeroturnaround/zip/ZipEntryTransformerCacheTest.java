@@ -0,0 +1,121 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.commons.IOUtils;
+import org.zeroturnaround.zip.transform.DeterministicZipEntryTransformer;
+import org.zeroturnaround.zip.transform.ZipEntryTransformer;
+
+import junit.framework.TestCase;
+
+public class ZipEntryTransformerCacheTest extends TestCase {
+
+  private File zip1;
+  private File zip2;
+  private File result;
+
+  protected void setUp() throws Exception {
+    zip1 = File.createTempFile("cache1", ".zip");
+    zip2 = File.createTempFile("cache2", ".zip");
+    result = File.createTempFile("result", ".zip");
+    ZipUtil.pack(new ZipEntrySource[] {
+        new ByteSource("a.txt", "same".getBytes()),
+        new ByteSource("b.txt", "b".getBytes())
+    }, zip1);
+    ZipUtil.pack(new ZipEntrySource[] {
+        new ByteSource("c.txt", "c".getBytes()),
+        new ByteSource("a.txt", "same".getBytes())
+    }, zip2);
+  }
+
+  protected void tearDown() throws Exception {
+    FileUtils.deleteQuietly(zip1);
+    FileUtils.deleteQuietly(zip2);
+    FileUtils.deleteQuietly(result);
+  }
+
+  public void testSameEntryTransformedOnce() {
+    UpperCase upperCase = new UpperCase();
+    ZipEntryTransformerCache cache = new ZipEntryTransformerCache(1024 * 1024);
+    ZipEntryTransformer transformer = cache.wrap(upperCase);
+
+    assertTrue(ZipUtil.transformEntry(zip1, "a.txt", transformer, result));
+    assertEquals("SAME", new String(ZipUtil.unpackEntry(result, "a.txt")));
+    assertEquals("b", new String(ZipUtil.unpackEntry(result, "b.txt")));
+
+    assertTrue(ZipUtil.transformEntry(zip2, "a.txt", transformer, result));
+    assertEquals("SAME", new String(ZipUtil.unpackEntry(result, "a.txt")));
+    assertEquals("c", new String(ZipUtil.unpackEntry(result, "c.txt")));
+
+    assertEquals(1, upperCase.calls);
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getEntryCount());
+    assertTrue(cache.getSize() > 0);
+  }
+
+  public void testChangedEntryTransformedAgain() {
+    UpperCase upperCase = new UpperCase();
+    ZipEntryTransformerCache cache = new ZipEntryTransformerCache(1024 * 1024);
+    ZipEntryTransformer transformer = cache.wrap(upperCase);
+
+    ZipUtil.transformEntry(zip1, "a.txt", transformer, result);
+    ZipUtil.replaceEntry(zip2, "a.txt", "other".getBytes());
+    ZipUtil.transformEntry(zip2, "a.txt", transformer, result);
+    assertEquals("OTHER", new String(ZipUtil.unpackEntry(result, "a.txt")));
+    assertEquals(2, upperCase.calls);
+    assertEquals(0, cache.getHitCount());
+  }
+
+  public void testResultsLargerThanLimitNotCached() {
+    UpperCase upperCase = new UpperCase();
+    ZipEntryTransformerCache cache = new ZipEntryTransformerCache(0);
+    ZipEntryTransformer transformer = cache.wrap(upperCase);
+
+    ZipUtil.transformEntry(zip1, "a.txt", transformer, result);
+    ZipUtil.transformEntry(zip2, "a.txt", transformer, result);
+    assertEquals("SAME", new String(ZipUtil.unpackEntry(result, "a.txt")));
+    assertEquals(2, upperCase.calls);
+    assertEquals(0, cache.getEntryCount());
+    assertEquals(0, cache.getSize());
+  }
+
+  private static class UpperCase implements DeterministicZipEntryTransformer {
+
+    int calls;
+
+    public String getId() {
+      return "upper-case";
+    }
+
+    public void transform(InputStream in, ZipEntry zipEntry, ZipOutputStream out) throws IOException {
+      calls++;
+      byte[] bytes = new String(IOUtils.toByteArray(in)).toUpperCase().getBytes();
+      out.putNextEntry(new ZipEntry(zipEntry.getName()));
+      out.write(bytes);
+      out.closeEntry();
+    }
+
+  }
+
+}
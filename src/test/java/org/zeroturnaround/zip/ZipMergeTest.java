@@ -0,0 +1,107 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.commons.IOUtils;
+
+import junit.framework.TestCase;
+
+public class ZipMergeTest extends TestCase {
+
+  private static final String SERVICE = "META-INF/services/foo.Bar";
+
+  private File first;
+  private File second;
+  private File dest;
+
+  protected void setUp() throws Exception {
+    first = File.createTempFile("first", ".zip");
+    second = File.createTempFile("second", ".zip");
+    dest = File.createTempFile("merged", ".zip");
+    ZipUtil.pack(new ZipEntrySource[] {
+        new ByteSource("META-INF/", new byte[0]),
+        new ByteSource("a.txt", "a".getBytes()),
+        new ByteSource("c.txt", "c1".getBytes()),
+        new ByteSource(SERVICE, "foo.A\n".getBytes())
+    }, first);
+    ZipUtil.pack(new ZipEntrySource[] {
+        new ByteSource("META-INF/", new byte[0]),
+        new ByteSource("b.txt", "b".getBytes()),
+        new ByteSource("c.txt", "c2".getBytes()),
+        new ByteSource(SERVICE, "foo.B\n".getBytes())
+    }, second);
+  }
+
+  protected void tearDown() throws Exception {
+    FileUtils.deleteQuietly(first);
+    FileUtils.deleteQuietly(second);
+    FileUtils.deleteQuietly(dest);
+  }
+
+  public void testMergeFirstWins() {
+    ZipUtil.merge(new File[] { first, second }, dest);
+    assertEquals("a", new String(ZipUtil.unpackEntry(dest, "a.txt")));
+    assertEquals("b", new String(ZipUtil.unpackEntry(dest, "b.txt")));
+    assertEquals("c1", new String(ZipUtil.unpackEntry(dest, "c.txt")));
+    assertTrue(ZipUtil.containsEntry(dest, "META-INF/"));
+  }
+
+  public void testMergeLastWins() {
+    ZipUtil.merge(new File[] { first, second }, dest, ZipMergeResolver.LAST_WINS);
+    assertEquals("c2", new String(ZipUtil.unpackEntry(dest, "c.txt")));
+    assertEquals("foo.B\n", new String(ZipUtil.unpackEntry(dest, SERVICE)));
+  }
+
+  public void testMergeFail() {
+    try {
+      ZipUtil.merge(new File[] { first, second }, dest, ZipMergeResolver.FAIL);
+      fail();
+    }
+    catch (ZipException e) {
+      // expected
+    }
+  }
+
+  public void testMergeCustom() {
+    ZipUtil.merge(new File[] { first, second }, dest, new ZipMergeResolver() {
+      public ZipEntrySource resolve(String path, ZipEntrySource[] candidates) throws IOException {
+        if (!path.startsWith("META-INF/services/")) {
+          return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (ZipEntrySource candidate : candidates) {
+          InputStream in = candidate.getInputStream();
+          try {
+            sb.append(new String(IOUtils.toByteArray(in)));
+          }
+          finally {
+            IOUtils.closeQuietly(in);
+          }
+        }
+        return new ByteSource(path, sb.toString().getBytes());
+      }
+    });
+    assertEquals("foo.A\nfoo.B\n", new String(ZipUtil.unpackEntry(dest, SERVICE)));
+    assertFalse(ZipUtil.containsEntry(dest, "c.txt"));
+    assertEquals("a", new String(ZipUtil.unpackEntry(dest, "a.txt")));
+  }
+
+}
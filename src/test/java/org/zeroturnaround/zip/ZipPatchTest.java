@@ -0,0 +1,94 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+
+import junit.framework.TestCase;
+
+public class ZipPatchTest extends TestCase {
+
+  private static final long TIME = 1500000000000L;
+
+  private File oldZip;
+  private File newZip;
+  private File patch;
+  private File result;
+
+  protected void setUp() throws Exception {
+    oldZip = File.createTempFile("old", ".zip");
+    newZip = File.createTempFile("new", ".zip");
+    patch = File.createTempFile("patch", ".zip");
+    result = File.createTempFile("result", ".zip");
+    ZipUtil.pack(new ZipEntrySource[] {
+        new ByteSource("a.txt", "a".getBytes(), TIME),
+        new ByteSource("b.txt", "b".getBytes(), TIME),
+        new ByteSource("c.txt", "c".getBytes(), TIME),
+        new ByteSource("d.txt", "d".getBytes(), TIME)
+    }, oldZip);
+    ZipUtil.pack(new ZipEntrySource[] {
+        new ByteSource("e.txt", "e".getBytes(), TIME),
+        new ByteSource("d.txt", "d".getBytes(), TIME + 60000),
+        new ByteSource("c.txt", "C".getBytes(), TIME),
+        new ByteSource("dir/", new byte[0], TIME),
+        new ByteSource("a.txt", "a".getBytes(), TIME)
+    }, newZip);
+  }
+
+  protected void tearDown() throws Exception {
+    FileUtils.deleteQuietly(oldZip);
+    FileUtils.deleteQuietly(newZip);
+    FileUtils.deleteQuietly(patch);
+    FileUtils.deleteQuietly(result);
+  }
+
+  public void testCreateAndApply() {
+    ZipPatch.create(oldZip, newZip, patch);
+    assertFalse(ZipUtil.containsEntry(patch, "a.txt"));
+    assertFalse(ZipUtil.containsEntry(patch, "b.txt"));
+    assertTrue(ZipUtil.containsEntry(patch, "c.txt"));
+    assertTrue(ZipUtil.containsEntry(patch, ZipPatch.MANIFEST_NAME));
+
+    ZipPatch.apply(oldZip, patch, result);
+    assertTrue(ZipUtil.archiveEquals(newZip, result));
+    assertTrue(ZipDiff.diff(newZip, result).isEmpty());
+  }
+
+  public void testApplyToWrongArchive() {
+    ZipPatch.create(oldZip, newZip, patch);
+    ZipUtil.replaceEntry(oldZip, new ByteSource("a.txt", "x".getBytes(), TIME));
+    try {
+      ZipPatch.apply(oldZip, patch, result);
+      fail();
+    }
+    catch (ZipException e) {
+      // expected
+    }
+  }
+
+  public void testApplyNonPatch() {
+    try {
+      ZipPatch.apply(oldZip, newZip, result);
+      fail();
+    }
+    catch (ZipException e) {
+      // expected
+    }
+  }
+
+}
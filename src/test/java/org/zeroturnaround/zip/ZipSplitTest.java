@@ -0,0 +1,138 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+
+import junit.framework.TestCase;
+
+public class ZipSplitTest extends TestCase {
+
+  private File zip;
+  private File outputDir;
+
+  protected void setUp() throws Exception {
+    zip = File.createTempFile("big", ".zip");
+    outputDir = File.createTempFile("shards", null);
+    FileUtils.deleteQuietly(outputDir);
+    ZipEntrySource[] entries = new ZipEntrySource[10];
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = new ByteSource("file" + i + ".txt", new byte[1000], ZipEntry.STORED);
+    }
+    ZipUtil.pack(entries, zip);
+  }
+
+  protected void tearDown() throws Exception {
+    FileUtils.deleteQuietly(zip);
+    FileUtils.deleteQuietly(outputDir);
+  }
+
+  public void testSplitByCount() {
+    File[] shards = ZipSplit.splitByCount(zip, outputDir, 4);
+    assertEquals(3, shards.length);
+    assertTrue(shards[0].getName().endsWith("-1.zip"));
+    assertTrue(ZipUtil.containsEntry(shards[0], "file3.txt"));
+    assertTrue(ZipUtil.containsEntry(shards[1], "file4.txt"));
+    assertTrue(ZipUtil.containsEntry(shards[2], "file9.txt"));
+    assertEquals(10, names(shards).size());
+  }
+
+  public void testSplitBySize() {
+    File[] shards = ZipSplit.splitBySize(zip, outputDir, 2500);
+    assertEquals(5, shards.length);
+    for (File shard : shards) {
+      assertTrue(shard.length() <= 2500);
+    }
+    assertEquals(10, names(shards).size());
+  }
+
+  public void testSplitBySizeWithExtraFields() throws IOException {
+    File withExtra = File.createTempFile("extra", ".zip");
+    try {
+      // the extra field is in both the local and the central header
+      byte[] extra = new byte[1000];
+      extra[0] = (byte) 0xfe;
+      extra[1] = (byte) 0xca;
+      extra[2] = (byte) ((extra.length - 4) & 0xff);
+      extra[3] = (byte) ((extra.length - 4) >> 8);
+      byte[] data = new byte[1000];
+      CRC32 crc = new CRC32();
+      crc.update(data);
+      ZipOutputStream out = new ZipOutputStream(new FileOutputStream(withExtra));
+      try {
+        for (int i = 0; i < 6; i++) {
+          ZipEntry entry = new ZipEntry("file" + i + ".txt");
+          entry.setMethod(ZipEntry.STORED);
+          entry.setSize(data.length);
+          entry.setCrc(crc.getValue());
+          entry.setExtra(extra);
+          out.putNextEntry(entry);
+          out.write(data);
+          out.closeEntry();
+        }
+      }
+      finally {
+        out.close();
+      }
+
+      File[] shards = ZipSplit.splitBySize(withExtra, outputDir, 7000);
+      assertEquals(3, shards.length);
+      for (File shard : shards) {
+        assertTrue(shard.getName() + " is " + shard.length() + " bytes", shard.length() <= 7000);
+      }
+      assertEquals(6, names(shards).size());
+    }
+    finally {
+      FileUtils.deleteQuietly(withExtra);
+    }
+  }
+
+  public void testSplitByMapper() {
+    File[] shards = ZipSplit.split(zip, outputDir, 3, new ZipShardMapper() {
+      public int shard(String name) {
+        return name.equals("file0.txt") ? -1 : name.charAt(4) % 2;
+      }
+    });
+    assertEquals(3, shards.length);
+    assertFalse(ZipUtil.containsEntry(shards[0], "file0.txt"));
+    assertTrue(ZipUtil.containsEntry(shards[0], "file2.txt"));
+    assertTrue(ZipUtil.containsEntry(shards[1], "file1.txt"));
+    assertFalse(ZipUtil.containsAnyEntry(shards[2], new String[] { "file1.txt", "file2.txt" }));
+    assertEquals(9, names(shards).size());
+  }
+
+  private static Set<String> names(File[] shards) {
+    final Set<String> names = Collections.synchronizedSet(new HashSet<String>());
+    ZipSplit.iterate(shards, new ZipEntryCallback() {
+      public void process(InputStream in, ZipEntry zipEntry) throws IOException {
+        names.add(zipEntry.getName());
+      }
+    });
+    return names;
+  }
+
+}
@@ -0,0 +1,146 @@
+package org.zeroturnaround.zip;
+/**
+ *    Copyright (C) 2012 ZeroTurnaround LLC <support@zeroturnaround.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+
+import org.zeroturnaround.zip.commons.FileUtils;
+import org.zeroturnaround.zip.commons.IOUtils;
+
+import junit.framework.TestCase;
+
+public class ZipStreamReaderTest extends TestCase {
+
+  private File zip;
+  private File rawCopy;
+  private byte[] big;
+
+  protected void setUp() throws Exception {
+    zip = File.createTempFile("stream", ".zip");
+    rawCopy = File.createTempFile("stream-raw", ".zip");
+    big = new byte[200000];
+    new Random(1).nextBytes(big);
+    // entries compressed by ZipOutputStream have their sizes in data descriptors
+    ZipUtil.pack(new ZipEntrySource[] {
+        new ByteSource("big.bin", big),
+        new ByteSource("stored.txt", "stored".getBytes(), ZipEntry.STORED),
+        new ByteSource("dir/", new byte[0]),
+        new ByteSource("small.txt", "small".getBytes())
+    }, zip);
+    // raw copies have the sizes in local headers
+    ZipUtil.merge(new File[] { zip }, rawCopy);
+  }
+
+  protected void tearDown() throws Exception {
+    FileUtils.deleteQuietly(zip);
+    FileUtils.deleteQuietly(rawCopy);
+  }
+
+  public void testUnpackEntryWithDataDescriptors() throws IOException {
+    byte[] bytes = readFile(zip);
+    assertEquals("small", new String(ZipUtil.unpackEntry(new ByteArrayInputStream(bytes), "small.txt")));
+    assertEquals("stored", new String(ZipUtil.unpackEntry(new ByteArrayInputStream(bytes), "stored.txt")));
+    assertTrue(Arrays.equals(big, ZipUtil.unpackEntry(new ByteArrayInputStream(bytes), "big.bin")));
+    assertNull(ZipUtil.unpackEntry(new ByteArrayInputStream(bytes), "missing.txt"));
+  }
+
+  public void testUnpackEntrySkipsData() throws IOException {
+    CountingInputStream in = new CountingInputStream(readFile(rawCopy));
+    assertEquals("small", new String(ZipUtil.unpackEntry(in, "small.txt")));
+    assertTrue(in.read < 20000);
+    assertTrue(in.skipped > big.length / 2);
+  }
+
+  public void testIterateSelectedEntries() throws IOException {
+    byte[] bytes = readFile(rawCopy);
+    final List<String> names = new ArrayList<String>();
+    ZipUtil.iterate(new ByteArrayInputStream(bytes), new String[] { "small.txt", "stored.txt", "dir/" }, new ZipEntryCallback() {
+      public void process(InputStream in, ZipEntry zipEntry) throws IOException {
+        names.add(zipEntry.getName() + "=" + new String(IOUtils.toByteArray(in)));
+      }
+    });
+    assertEquals("[stored.txt=stored, dir/=, small.txt=small]", names.toString());
+  }
+
+  public void testUnpackEntryFromFileStream() throws IOException {
+    FileInputStream in = new FileInputStream(zip);
+    try {
+      assertEquals("small", new String(ZipUtil.unpackEntry(in, "small.txt")));
+      assertEquals(0, in.getChannel().position());
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  public void testCorruptedEntry() throws IOException {
+    byte[] bytes = readFile(rawCopy);
+    String s = new String(bytes, "ISO-8859-1");
+    // first occurrence is the name in the local header
+    int idx = s.indexOf("stored", s.indexOf("stored") + 1);
+    bytes[idx] = 'S';
+    try {
+      ZipUtil.unpackEntry(new ByteArrayInputStream(bytes), "stored.txt");
+      fail();
+    }
+    catch (ZipException e) {
+      // expected
+    }
+  }
+
+  private static byte[] readFile(File file) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      return IOUtils.toByteArray(in);
+    }
+    finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  private static class CountingInputStream extends ByteArrayInputStream {
+    long read;
+    long skipped;
+
+    CountingInputStream(byte[] buf) {
+      super(buf);
+    }
+
+    public synchronized int read(byte[] b, int off, int len) {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        read += n;
+      }
+      return n;
+    }
+
+    public synchronized long skip(long n) {
+      long result = super.skip(n);
+      skipped += result;
+      return result;
+    }
+  }
+
+}
@@ -14,6 +14,8 @@ package org.zeroturnaround.zip;
  *    See the License for the specific language governing permissions and
  *    limitations under the License.
  */
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -21,7 +23,13 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import junit.framework.TestCase;
@@ -30,8 +38,11 @@ import org.zeroturnaround.zip.commons.FileUtils;
 import org.zeroturnaround.zip.commons.IOUtils;
 import org.zeroturnaround.zip.transform.ByteArrayZipEntryTransformer;
 import org.zeroturnaround.zip.transform.FileZipEntryTransformer;
+import org.zeroturnaround.zip.transform.LineZipEntryTransformer;
 import org.zeroturnaround.zip.transform.StreamZipEntryTransformer;
 import org.zeroturnaround.zip.transform.StringZipEntryTransformer;
+import org.zeroturnaround.zip.transform.ZipEntryTransformer;
+import org.zeroturnaround.zip.transform.ZipEntryTransformerEntry;
 
 public class ZipTransformTest extends TestCase {
 
@@ -307,4 +318,259 @@ public class ZipTransformTest extends TestCase {
       FileUtils.deleteQuietly(file2);
     }
   }
+
+  public void testLineZipEntryTransformer() throws IOException {
+    final String name = "app.properties";
+    String contents = "a=1\r\n# comment\nb=\u00e4\n\nlast=2";
+
+    File file1 = File.createTempFile("temp", null);
+    File file2 = File.createTempFile("temp", null);
+    try {
+      ZipUtil.pack(new ZipEntrySource[] { new ByteSource(name, contents.getBytes("UTF-8")) }, file1);
+
+      boolean transformed = ZipUtil.transformEntry(file1, name, new LineZipEntryTransformer("UTF-8") {
+        protected String transform(ZipEntry zipEntry, String line) throws IOException {
+          return line.startsWith("#") ? null : line.toUpperCase();
+        }
+      }, file2);
+      assertTrue(transformed);
+
+      byte[] actual = ZipUtil.unpackEntry(file2, name);
+      assertEquals("A=1\r\nB=\u00c4\n\nLAST=2", new String(actual, "UTF-8"));
+    }
+    finally {
+      FileUtils.deleteQuietly(file1);
+      FileUtils.deleteQuietly(file2);
+    }
+  }
+
+
+  public void testFileZipEntryTransformerUnchanged() throws IOException {
+    final long time = 1500000000000L;
+    File file1 = File.createTempFile("temp", null);
+    File file2 = File.createTempFile("temp", null);
+    File scratch = File.createTempFile("scratch", null);
+    try {
+      FileUtils.forceDelete(scratch);
+      assertTrue(scratch.mkdir());
+      ZipUtil.pack(new ZipEntrySource[] {
+          new ByteSource("keep.txt", "keep".getBytes(), time),
+          new ByteSource("change.txt", "change".getBytes(), time)
+      }, file1);
+
+      ZipUtil.transformEntries(file1, new ZipEntryTransformerEntry[] {
+          new ZipEntryTransformerEntry("keep.txt", new FileZipEntryTransformer(scratch) {
+            protected void transform(ZipEntry zipEntry, File in, File out) {
+              // nothing to change
+            }
+            protected boolean isUnchanged(ZipEntry zipEntry, File in, File out) {
+              return true;
+            }
+          }),
+          new ZipEntryTransformerEntry("change.txt", new FileZipEntryTransformer(scratch) {
+            protected void transform(ZipEntry zipEntry, File in, File out) throws IOException {
+              FileWriter fw = new FileWriter(out);
+              fw.write("changed");
+              fw.close();
+            }
+          })
+      }, file2);
+
+      assertEquals("keep", new String(ZipUtil.unpackEntry(file2, "keep.txt")));
+      assertEquals("changed", new String(ZipUtil.unpackEntry(file2, "change.txt")));
+      // copied as it was
+      ZipFile zf = new ZipFile(file2);
+      try {
+        assertEquals(time, zf.getEntry("keep.txt").getTime());
+      }
+      finally {
+        zf.close();
+      }
+      assertEquals(0, scratch.list().length);
+    }
+    finally {
+      FileUtils.deleteQuietly(file1);
+      FileUtils.deleteQuietly(file2);
+      FileUtils.deleteQuietly(scratch);
+    }
+  }
+
+  public void testFileZipEntryTransformerEmptyOutput() throws IOException {
+    File file1 = File.createTempFile("temp", null);
+    File file2 = File.createTempFile("temp", null);
+    try {
+      ZipUtil.pack(new ZipEntrySource[] { new ByteSource("a.txt", "a".getBytes()) }, file1);
+
+      ZipUtil.transformEntry(file1, "a.txt", new FileZipEntryTransformer() {
+        protected void transform(ZipEntry zipEntry, File in, File out) {
+          // the output stays empty
+        }
+      }, file2);
+
+      assertEquals(0, ZipUtil.unpackEntry(file2, "a.txt").length);
+    }
+    finally {
+      FileUtils.deleteQuietly(file1);
+      FileUtils.deleteQuietly(file2);
+    }
+  }
+
+
+  public void testTransformerChain() throws IOException {
+    final String name = "foo.txt";
+    File file1 = File.createTempFile("temp", null);
+    File file2 = File.createTempFile("temp", null);
+    File file3 = File.createTempFile("temp", null);
+    try {
+      ZipUtil.pack(new ZipEntrySource[] { new ByteSource(name, "bar".getBytes()) }, file1);
+      ZipEntryTransformer upperCase = new StringZipEntryTransformer() {
+        protected String transform(ZipEntry zipEntry, String input) {
+          return input.toUpperCase();
+        }
+      };
+      ZipEntryTransformer reverse = new ByteArrayZipEntryTransformer() {
+        protected byte[] transform(ZipEntry zipEntry, byte[] input) {
+          return new StringBuilder(new String(input)).reverse().append('!').toString().getBytes();
+        }
+      };
+
+      // several transformers for the same path are chained
+      assertTrue(ZipUtil.transformEntries(file1, new ZipEntryTransformerEntry[] {
+          new ZipEntryTransformerEntry(name, upperCase),
+          new ZipEntryTransformerEntry(name, reverse),
+          new ZipEntryTransformerEntry(name, reverse)
+      }, file2));
+      assertEquals("!BAR!", new String(ZipUtil.unpackEntry(file2, name)));
+
+      Zips.get(file1).addTransformer(name, reverse).addTransformer(name, upperCase).destination(file3).process();
+      assertEquals("RAB!", new String(ZipUtil.unpackEntry(file3, name)));
+    }
+    finally {
+      FileUtils.deleteQuietly(file1);
+      FileUtils.deleteQuietly(file2);
+      FileUtils.deleteQuietly(file3);
+    }
+  }
+
+  public void testTransformEntriesInParallel() throws IOException {
+    File file1 = File.createTempFile("temp", ".zip");
+    File file2 = File.createTempFile("temp", ".zip");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      ZipEntrySource[] sources = new ZipEntrySource[50];
+      for (int i = 0; i < sources.length; i++) {
+        sources[i] = new ByteSource("dir/entry" + i + (i % 3 == 0 ? ".txt" : ".bin"), ("entry" + i).getBytes());
+      }
+      ZipUtil.pack(sources, file1);
+
+      ZipEntryTransformer upperCase = new StringZipEntryTransformer() {
+        protected String transform(ZipEntry zipEntry, String input) {
+          return input.toUpperCase();
+        }
+      };
+      assertTrue(ZipUtil.transformEntries(file1, new ZipEntryTransformerEntry[] {
+          new ZipEntryTransformerEntry(ZipEntryPattern.glob("**/*.txt"), upperCase)
+      }, file2, executor));
+
+      // the order of the entries is kept
+      final List<String> names = new ArrayList<String>();
+      ZipUtil.iterate(file2, new ZipInfoCallback() {
+        public void process(ZipEntry zipEntry) throws IOException {
+          names.add(zipEntry.getName());
+        }
+      });
+      assertEquals(sources.length, names.size());
+      for (int i = 0; i < sources.length; i++) {
+        String name = sources[i].getPath();
+        assertEquals(name, names.get(i));
+        String expected = i % 3 == 0 ? "ENTRY" + i : "entry" + i;
+        assertEquals(expected, new String(ZipUtil.unpackEntry(file2, name)));
+      }
+    }
+    finally {
+      executor.shutdown();
+      FileUtils.deleteQuietly(file1);
+      FileUtils.deleteQuietly(file2);
+    }
+  }
+
+  public void testByteArrayTransformerKnownSize() throws IOException {
+    File file1 = File.createTempFile("temp", ".zip");
+    File file2 = File.createTempFile("temp", ".zip");
+    try {
+      ZipUtil.pack(new ZipEntrySource[] {
+          new ByteSource("a.txt", "hello".getBytes()),
+          new ByteSource("b.txt", "world".getBytes())
+      }, file1);
+      assertTrue(ZipUtil.transformEntries(file1, new ZipEntryTransformerEntry[] {
+          new ZipEntryTransformerEntry("a.txt", new ByteArrayZipEntryTransformer() {
+            protected byte[] transform(ZipEntry zipEntry, byte[] input) {
+              return new StringBuilder(new String(input)).reverse().toString().getBytes();
+            }
+          }),
+          new ZipEntryTransformerEntry("b.txt", new StringZipEntryTransformer("UTF-8") {
+            protected String transform(ZipEntry zipEntry, String input) {
+              return input + " \u00e4";
+            }
+          })
+      }, file2));
+      assertEquals("olleh", new String(ZipUtil.unpackEntry(file2, "a.txt")));
+      assertEquals("world \u00e4", new String(ZipUtil.unpackEntry(file2, "b.txt"), "UTF-8"));
+    }
+    finally {
+      FileUtils.deleteQuietly(file1);
+      FileUtils.deleteQuietly(file2);
+    }
+  }
+
+  public void testByteArrayTransformerUnknownSize() throws IOException {
+    ZipEntry entry = new ZipEntry("a.txt");
+    assertEquals(-1, entry.getSize());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ZipOutputStream out = new ZipOutputStream(bytes);
+    new ByteArrayZipEntryTransformer() {
+      protected byte[] transform(ZipEntry zipEntry, byte[] input) {
+        assertEquals("hello world", new String(input));
+        return new String(input).toUpperCase().getBytes();
+      }
+    }.transform(new ByteArrayInputStream("hello world".getBytes()), entry, out);
+    out.close();
+
+    ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEquals("a.txt", in.getNextEntry().getName());
+    assertEquals("HELLO WORLD", new String(IOUtils.toByteArray(in)));
+  }
+
+  public void testByteArrayTransformerStaleSize() throws IOException {
+    File file1 = File.createTempFile("temp", ".zip");
+    File file2 = File.createTempFile("temp", ".zip");
+    try {
+      ZipUtil.pack(new ZipEntrySource[] { new ByteSource("a.txt", "hello".getBytes()) }, file1);
+      // keeps the size of the original entry while writing more content
+      ZipEntryTransformer append = new ZipEntryTransformer() {
+        public void transform(InputStream in, ZipEntry zipEntry, ZipOutputStream out) throws IOException {
+          ZipEntry entry = new ZipEntry(zipEntry);
+          entry.setCompressedSize(-1);
+          out.putNextEntry(entry);
+          out.write((new String(IOUtils.toByteArray(in)) + " world").getBytes());
+          out.closeEntry();
+        }
+      };
+      ZipEntryTransformer exclaim = new ByteArrayZipEntryTransformer() {
+        protected byte[] transform(ZipEntry zipEntry, byte[] input) {
+          return (new String(input) + "!!").getBytes();
+        }
+      };
+      assertTrue(ZipUtil.transformEntries(file1, new ZipEntryTransformerEntry[] {
+          new ZipEntryTransformerEntry("a.txt", append),
+          new ZipEntryTransformerEntry("a.txt", exclaim)
+      }, file2));
+      assertEquals("hello world!!", new String(ZipUtil.unpackEntry(file2, "a.txt")));
+    }
+    finally {
+      FileUtils.deleteQuietly(file1);
+      FileUtils.deleteQuietly(file2);
+    }
+  }
+
 }
@@ -602,4 +602,101 @@ public class ZipsTest extends TestCase {
       FileUtils.deleteQuietly(dest);
     }
   }
+
+  public void testSeveralDestinations() throws IOException {
+    File src = File.createTempFile("src", ".zip");
+    File full = File.createTempFile("full", ".zip");
+    File lite = File.createTempFile("lite", ".zip");
+    File dir = File.createTempFile("dir", null);
+    FileUtils.deleteQuietly(dir);
+    try {
+      ZipUtil.pack(new ZipEntrySource[] {
+          new ByteSource("a.txt", "a".getBytes()),
+          new ByteSource("docs/readme.txt", "readme".getBytes()),
+          new ByteSource("config.txt", "config".getBytes())
+      }, src);
+
+      ZipEntryTransformer upperCase = new ByteArrayZipEntryTransformer() {
+        protected byte[] transform(ZipEntry zipEntry, byte[] input) throws IOException {
+          return new String(input).toUpperCase().getBytes();
+        }
+      };
+      Zips.get(src)
+          .addEntry(new ByteSource("added.txt", "added".getBytes()))
+          .removeEntry("a.txt")
+          .addDestination(ZipsDestination.toFile(full))
+          .addDestination(ZipsDestination.toFile(lite).exclude(ZipEntryPattern.glob("docs/**")).addTransformer("config.txt", upperCase))
+          .addDestination(ZipsDestination.toDirectory(dir).addTransformer("config.txt", upperCase))
+          .process();
+
+      assertFalse(ZipUtil.containsEntry(full, "a.txt"));
+      assertEquals("added", new String(ZipUtil.unpackEntry(full, "added.txt")));
+      assertEquals("readme", new String(ZipUtil.unpackEntry(full, "docs/readme.txt")));
+      assertEquals("config", new String(ZipUtil.unpackEntry(full, "config.txt")));
+
+      assertFalse(ZipUtil.containsEntry(lite, "docs/readme.txt"));
+      assertEquals("added", new String(ZipUtil.unpackEntry(lite, "added.txt")));
+      assertEquals("CONFIG", new String(ZipUtil.unpackEntry(lite, "config.txt")));
+
+      assertFalse(new File(dir, "a.txt").exists());
+      assertEquals("readme", FileUtils.readFileToString(new File(dir, "docs/readme.txt")));
+      assertEquals("CONFIG", FileUtils.readFileToString(new File(dir, "config.txt")));
+    }
+    finally {
+      FileUtils.deleteQuietly(src);
+      FileUtils.deleteQuietly(full);
+      FileUtils.deleteQuietly(lite);
+      FileUtils.deleteQuietly(dir);
+    }
+  }
+
+  public void testSeveralDestinationsTimestamps() throws IOException {
+    File src = File.createTempFile("src", ".zip");
+    File current = File.createTempFile("current", ".zip");
+    File preserved = File.createTempFile("preserved", ".zip");
+    long time = 1500000000000L;
+    try {
+      ZipUtil.pack(new ZipEntrySource[] { new ByteSource("a.txt", "a".getBytes(), time) }, src);
+
+      Zips.get(src).addDestination(ZipsDestination.toFile(current)).process();
+      Zips.get(src).preserveTimestamps().addDestination(ZipsDestination.toFile(preserved)).process();
+
+      assertTrue("Timestamp was carried over", getEntryTime(current, "a.txt") > time);
+      assertEquals(time, getEntryTime(preserved, "a.txt"));
+    }
+    finally {
+      FileUtils.deleteQuietly(src);
+      FileUtils.deleteQuietly(current);
+      FileUtils.deleteQuietly(preserved);
+    }
+  }
+
+  private static long getEntryTime(File zip, String name) throws IOException {
+    ZipFile zf = new ZipFile(zip);
+    try {
+      return zf.getEntry(name).getTime();
+    }
+    finally {
+      zf.close();
+    }
+  }
+
+  public void testSeveralDestinationsWithGlobalTransformer() throws IOException {
+    File src = new File("src/test/resources/demo.zip");
+    File dest = File.createTempFile("temp", ".zip");
+    try {
+      Zips.get(src).nameMapper(new NameMapper() {
+        public String map(String name) {
+          return name;
+        }
+      }).addDestination(ZipsDestination.toFile(dest)).process();
+      fail();
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+    finally {
+      FileUtils.deleteQuietly(dest);
+    }
+  }
 }